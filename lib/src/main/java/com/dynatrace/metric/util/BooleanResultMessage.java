@@ -13,20 +13,19 @@
  */
 package com.dynatrace.metric.util;
 
-import java.util.function.Supplier;
-
 /**
- * A type that represents if an operation failed or succeeded. It contains the result if it failed
- * or succeeded and error/warning that might have occurred during the process.
+ * A type that represents if an operation failed or succeeded. Invalid results are shared constants
+ * that act as status codes: they only hold the message format, which is formatted with the raw
+ * inputs of the operation when the message is actually needed.
  */
 final class BooleanResultMessage {
   private static final BooleanResultMessage VALID = new BooleanResultMessage(true, null);
 
-  private final Supplier<String> message;
+  private final String messageFormat;
   private final boolean isValid;
 
-  private BooleanResultMessage(boolean isValid, Supplier<String> message) {
-    this.message = message;
+  private BooleanResultMessage(boolean isValid, String messageFormat) {
+    this.messageFormat = messageFormat;
     this.isValid = isValid;
   }
 
@@ -34,15 +33,24 @@ final class BooleanResultMessage {
     return VALID;
   }
 
-  static BooleanResultMessage newInvalid(Supplier<String> message) {
-    return new BooleanResultMessage(false, message);
+  /**
+   * @param messageFormat The format of the error message, see {@link #getMessage(Object...)}.
+   * @return A new invalid result, which is meant to be held in a constant.
+   */
+  static BooleanResultMessage newInvalid(String messageFormat) {
+    return new BooleanResultMessage(false, messageFormat);
   }
 
   boolean isValid() {
     return isValid;
   }
 
-  String getMessage() {
-    return message.get();
+  /**
+   * @param args The raw inputs of the operation. Arguments that are not referenced by the format
+   *     are ignored.
+   * @return The formatted message, or {@code null} for valid results.
+   */
+  String getMessage(Object... args) {
+    return messageFormat == null ? null : String.format(messageFormat, args);
   }
 }
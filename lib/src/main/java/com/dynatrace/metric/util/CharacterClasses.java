@@ -0,0 +1,212 @@
+/**
+ * Copyright 2023 Dynatrace LLC
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dynatrace.metric.util;
+
+import com.dynatrace.metric.util.spi.BulkCharacterScanner;
+import com.dynatrace.metric.util.spi.BulkCharacterScannerProvider;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.logging.Logger;
+
+/**
+ * Classifies ASCII characters with a single table lookup. Each entry of the table holds the flags
+ * of the character classes the character belongs to. Code points outside of the ASCII range belong
+ * to none of the classes and have to be handled by the callers.
+ */
+final class CharacterClasses {
+  /** Valid start of a metric key section: letters and underscore. */
+  static final int METRIC_KEY_START = 1;
+  /** Valid metric key section character: letters, digits, hyphen and underscore. */
+  static final int METRIC_KEY_SECTION = 1 << 1;
+  /** Valid start of a dimension key section: lowercase letters and underscore. */
+  static final int DIMENSION_KEY_START = 1 << 2;
+  /** Valid dimension key section character: lowercase letters, digits, -, _ and :. */
+  static final int DIMENSION_KEY_SECTION = 1 << 3;
+  /** Characters that have to be escaped in unquoted dimension values. */
+  static final int VALUE_ESCAPE = 1 << 4;
+  /** Characters that have to be escaped in quoted dimension values. */
+  static final int QUOTED_VALUE_ESCAPE = 1 << 5;
+  /** Control characters, which are not allowed in dimension values. */
+  static final int VALUE_INVALID = 1 << 6;
+  /** Valid unit characters: letters, digits, %, [, ], {, }, / and _. */
+  static final int UNIT = 1 << 7;
+
+  private static final int ASCII_LIMIT = 128;
+  // the number of combinations of the classes above
+  private static final int CLASS_COMBINATIONS = 1 << 8;
+  private static final int[] FLAGS = new int[ASCII_LIMIT];
+
+  // shorter strings are scanned faster by the scalar loop
+  private static final int BULK_SCAN_MIN_LENGTH = 64;
+
+  static {
+    for (int c = CodePoints.A_LOWERCASE; c <= CodePoints.Z_LOWERCASE; c++) {
+      FLAGS[c] |= METRIC_KEY_START | METRIC_KEY_SECTION | DIMENSION_KEY_START;
+      FLAGS[c] |= DIMENSION_KEY_SECTION | UNIT;
+    }
+    for (int c = CodePoints.A_UPPERCASE; c <= CodePoints.Z_UPPERCASE; c++) {
+      FLAGS[c] |= METRIC_KEY_START | METRIC_KEY_SECTION | UNIT;
+    }
+    for (int c = CodePoints.ZERO; c <= CodePoints.NINE; c++) {
+      FLAGS[c] |= METRIC_KEY_SECTION | DIMENSION_KEY_SECTION | UNIT;
+    }
+    FLAGS[CodePoints.UNDERSCORE] |= METRIC_KEY_START | METRIC_KEY_SECTION | DIMENSION_KEY_START;
+    FLAGS[CodePoints.UNDERSCORE] |= DIMENSION_KEY_SECTION | UNIT;
+    FLAGS[CodePoints.HYPHEN] |= METRIC_KEY_SECTION | DIMENSION_KEY_SECTION;
+    FLAGS[CodePoints.COLON] |= DIMENSION_KEY_SECTION;
+
+    FLAGS[CodePoints.COMMA] |= VALUE_ESCAPE;
+    FLAGS[CodePoints.EQUALS] |= VALUE_ESCAPE;
+    FLAGS[CodePoints.BLANK] |= VALUE_ESCAPE;
+    FLAGS[CodePoints.BACKSLASH] |= VALUE_ESCAPE | QUOTED_VALUE_ESCAPE;
+    FLAGS[CodePoints.QUOTE] |= VALUE_ESCAPE | QUOTED_VALUE_ESCAPE;
+
+    for (int c = 0; c < ASCII_LIMIT; c++) {
+      if (Character.getType(c) == Character.CONTROL) {
+        FLAGS[c] |= VALUE_INVALID;
+      }
+    }
+
+    FLAGS[CodePoints.PERCENT_SIGN] |= UNIT;
+    FLAGS[CodePoints.OPEN_SQUARE_BRACKET] |= UNIT;
+    FLAGS[CodePoints.CLOSED_SQUARE_BRACKET] |= UNIT;
+    FLAGS[CodePoints.OPEN_CURLY_BRACKET] |= UNIT;
+    FLAGS[CodePoints.CLOSED_CURLY_BRACKET] |= UNIT;
+    FLAGS[CodePoints.FORWARD_SLASH] |= UNIT;
+  }
+
+  private CharacterClasses() {}
+
+  /**
+   * Holds the bulk scanners per combination of character classes, which are loaded on the first
+   * scan of a long string. {@code null} if no {@link BulkCharacterScannerProvider} is available.
+   */
+  private static final class Bulk {
+    static final BulkCharacterScanner[] SCANNERS = loadScanners();
+  }
+
+  private static BulkCharacterScanner[] loadScanners() {
+    final Logger logger = Logger.getLogger(CharacterClasses.class.getName());
+    try {
+      final ServiceLoader<BulkCharacterScannerProvider> providers =
+          ServiceLoader.load(
+              BulkCharacterScannerProvider.class, CharacterClasses.class.getClassLoader());
+      for (BulkCharacterScannerProvider provider : providers) {
+        final BulkCharacterScanner[] scanners = createScanners(provider);
+        logger.fine(() -> "Using bulk character scanner provider " + provider.getClass().getName());
+        return scanners;
+      }
+    } catch (ServiceConfigurationError | LinkageError e) {
+      // e.g. the implementation requires a newer JVM or a module that was not added
+      logger.fine(() -> "Bulk character scanner not available: " + e);
+    }
+    return null;
+  }
+
+  /**
+   * @param provider The provider.
+   * @return The scanners created by the provider per combination of character classes.
+   */
+  static BulkCharacterScanner[] createScanners(BulkCharacterScannerProvider provider) {
+    final BulkCharacterScanner[] scanners = new BulkCharacterScanner[CLASS_COMBINATIONS];
+    for (int classes = 0; classes < CLASS_COMBINATIONS; classes++) {
+      final boolean[] forbidden = new boolean[ASCII_LIMIT];
+      for (int c = 0; c < ASCII_LIMIT; c++) {
+        forbidden[c] = (FLAGS[c] & classes) != 0;
+      }
+      scanners[classes] = provider.create(forbidden);
+    }
+    return scanners;
+  }
+
+  /**
+   * @param codePoint The codepoint.
+   * @return true if the codepoint is in the ASCII range, false otherwise.
+   */
+  static boolean isAscii(int codePoint) {
+    return codePoint >= 0 && codePoint < ASCII_LIMIT;
+  }
+
+  /**
+   * Checks if the codepoint is an ASCII character belonging to any of the given classes.
+   *
+   * @param codePoint The codepoint.
+   * @param classes The flags of the character classes, combined with {@code |}.
+   * @return true if the codepoint is ASCII and belongs to at least one of the classes.
+   */
+  static boolean is(int codePoint, int classes) {
+    return isAscii(codePoint) && (FLAGS[codePoint] & classes) != 0;
+  }
+
+  /**
+   * Scans the string for the first character that is either not ASCII or belongs to any of the
+   * given classes. Strings that consist of clean ASCII characters only are fully classified by this
+   * single pass. Long strings are scanned by a {@link BulkCharacterScanner}, if one is available.
+   *
+   * @param value The string to scan.
+   * @param from The index to start at (inclusive).
+   * @param to The index to stop at (exclusive).
+   * @param forbiddenClasses The flags of the character classes that are not allowed.
+   * @return The index of the first character that is not ASCII or belongs to any of the forbidden
+   *     classes, or {@code to} if there is none.
+   */
+  static int indexOfNonCleanAscii(CharSequence value, int from, int to, int forbiddenClasses) {
+    if (to - from >= BULK_SCAN_MIN_LENGTH
+        && forbiddenClasses >= 0
+        && forbiddenClasses < CLASS_COMBINATIONS
+        && Bulk.SCANNERS != null) {
+      final BulkCharacterScanner scanner = Bulk.SCANNERS[forbiddenClasses];
+      if (scanner != null) {
+        return scanner.indexOfNonCleanAscii(value, from, to);
+      }
+    }
+    return scalarIndexOfNonCleanAscii(value, from, to, forbiddenClasses);
+  }
+
+  /**
+   * Same as {@link #indexOfNonCleanAscii(CharSequence, int, int, int)}, but never uses a {@link
+   * BulkCharacterScanner}.
+   *
+   * @param value The string to scan.
+   * @param from The index to start at (inclusive).
+   * @param to The index to stop at (exclusive).
+   * @param forbiddenClasses The flags of the character classes that are not allowed.
+   * @return The index of the first character that is not ASCII or belongs to any of the forbidden
+   *     classes, or {@code to} if there is none.
+   */
+  static int scalarIndexOfNonCleanAscii(
+      CharSequence value, int from, int to, int forbiddenClasses) {
+    int i = from;
+    // check groups of four chars with a single branch, the chars of the group that contains a
+    // forbidden char are then checked one by one below.
+    for (; i + 4 <= to; i += 4) {
+      final char c0 = value.charAt(i);
+      final char c1 = value.charAt(i + 1);
+      final char c2 = value.charAt(i + 2);
+      final char c3 = value.charAt(i + 3);
+      if ((c0 | c1 | c2 | c3) >= ASCII_LIMIT
+          || ((FLAGS[c0] | FLAGS[c1] | FLAGS[c2] | FLAGS[c3]) & forbiddenClasses) != 0) {
+        break;
+      }
+    }
+
+    for (; i < to; i++) {
+      final char c = value.charAt(i);
+      if (c >= ASCII_LIMIT || (FLAGS[c] & forbiddenClasses) != 0) {
+        return i;
+      }
+    }
+    return to;
+  }
+}
@@ -0,0 +1,92 @@
+/**
+ * Copyright 2023 Dynatrace LLC
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dynatrace.metric.util;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntPredicate;
+
+/**
+ * A set of Unicode code points, stored as a two-level bitmap. The code point range is split into
+ * blocks of 256 code points. The first level maps each block to its 256-bit bitmap in the second
+ * level, so a lookup is two array accesses and a shift.
+ *
+ * <p>Evaluating the predicate for the whole Unicode range takes up to several hundred milliseconds
+ * on a cold JVM, so each block is computed once, when the first code point of that block is looked
+ * up. Blocks that contain either none or all code points share one bitmap.
+ */
+final class CodePointBitmap {
+  private static final int BLOCK_SHIFT = 8;
+  private static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+  private static final int LONGS_PER_BLOCK = BLOCK_SIZE / Long.SIZE;
+  private static final int BLOCK_COUNT = (Character.MAX_CODE_POINT + 1) >> BLOCK_SHIFT;
+
+  private static final long[] NONE = new long[LONGS_PER_BLOCK];
+  private static final long[] ALL = {-1L, -1L, -1L, -1L};
+
+  private final IntPredicate predicate;
+  private final AtomicReferenceArray<long[]> blocks = new AtomicReferenceArray<>(BLOCK_COUNT);
+
+  private CodePointBitmap(IntPredicate predicate) {
+    this.predicate = predicate;
+  }
+
+  /**
+   * @param predicate Decides which code points are contained in the set. It is evaluated at most
+   *     once per code point and must always return the same result for the same code point.
+   * @return The set of all code points the predicate is true for.
+   */
+  static CodePointBitmap of(IntPredicate predicate) {
+    return new CodePointBitmap(predicate);
+  }
+
+  /**
+   * @param codePoint The codepoint.
+   * @return true if the codepoint is contained in the set, false otherwise (also for values that
+   *     are not valid code points).
+   */
+  boolean contains(int codePoint) {
+    if (codePoint < 0 || codePoint > Character.MAX_CODE_POINT) {
+      return false;
+    }
+    final int blockIndex = codePoint >>> BLOCK_SHIFT;
+    long[] block = blocks.get(blockIndex);
+    if (block == null) {
+      block = computeBlock(blockIndex);
+      // concurrent callers may compute the same block, which is fine as the result is the same
+      blocks.set(blockIndex, block);
+    }
+    // the shift only uses the lowest 6 bits of the code point
+    return (block[(codePoint >>> 6) & (LONGS_PER_BLOCK - 1)] & (1L << codePoint)) != 0;
+  }
+
+  private long[] computeBlock(int blockIndex) {
+    final long[] bits = new long[LONGS_PER_BLOCK];
+    final int first = blockIndex << BLOCK_SHIFT;
+    int count = 0;
+    for (int i = 0; i < BLOCK_SIZE; i++) {
+      if (predicate.test(first + i)) {
+        bits[i >>> 6] |= 1L << i;
+        count++;
+      }
+    }
+
+    if (count == 0) {
+      return NONE;
+    }
+    if (count == BLOCK_SIZE) {
+      return ALL;
+    }
+    return bits;
+  }
+}
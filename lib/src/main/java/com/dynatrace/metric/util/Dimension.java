@@ -0,0 +1,134 @@
+/**
+ * Copyright 2023 Dynatrace LLC
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dynatrace.metric.util;
+
+import com.dynatrace.metric.util.MetricLineConstants.ValidationMessages;
+import java.util.logging.Logger;
+
+/**
+ * An immutable, normalized dimension. Key and value are normalized (and the value is escaped) once
+ * on creation, so that metric lines created via {@link
+ * MetricLineBuilder.TypeStep#dimension(Dimension)} do not have to validate them again. This is
+ * useful for dimensions that are used for many lines.
+ */
+public final class Dimension {
+  private static final Logger logger = Logger.getLogger(Dimension.class.getName());
+  private static final NormalizationWarnThenDebugLogger normalizationLogger =
+      new NormalizationWarnThenDebugLogger(logger);
+  private static final String CLASS_NAME_FOR_LOGGING =
+      String.format("{%s}", Dimension.class.getSimpleName());
+
+  private final String key;
+  private final String value;
+  // the serialized dimension (',key=value'), or null if the value is empty and not serialized
+  private final String segment;
+
+  private Dimension(String key, String value) {
+    this.key = key;
+    this.value = value;
+    this.segment =
+        value.isEmpty()
+            ? null
+            : new StringBuilder(Character.charCount(CodePoints.COMMA) + length())
+                .appendCodePoint(CodePoints.COMMA)
+                .append(key)
+                .appendCodePoint(CodePoints.EQUALS)
+                .append(value)
+                .toString();
+  }
+
+  /**
+   * Create a new {@link Dimension}. Key and value are normalized in the same way as by {@link
+   * MetricLineBuilder.TypeStep#dimension(String, String)}.
+   *
+   * @param key The dimension key.
+   * @param value The dimension value.
+   * @return The {@link Dimension} holding the normalized key and value.
+   * @throws MetricException if the key is empty, or empty after normalization.
+   */
+  public static Dimension of(String key, String value) throws MetricException {
+    if (StringValueValidator.isNullOrEmpty(key)) {
+      throw new MetricException(ValidationMessages.DIMENSION_DROPPED_KEY_EMPTY_MESSAGE);
+    }
+
+    String normalizedKey = key;
+    if (DimensionKeyValidator.normalizationRequired(key)) {
+      NormalizationResult normalizeKeyResult = Normalizer.normalizeDimensionKey(key);
+      normalizedKey = normalizeKeyResult.getResult();
+      if (StringValueValidator.isNullOrEmpty(normalizedKey)) {
+        throw new MetricException(ValidationMessages.DIMENSION_DROPPED_KEY_EMPTY_MESSAGE);
+      }
+      if (normalizeKeyResult.messageType() != NormalizationResult.MessageType.NONE) {
+        normalizationLogger.logDimensionKeyMessage(CLASS_NAME_FOR_LOGGING, normalizeKeyResult);
+      }
+    }
+
+    NormalizationResult normalizeValueResult =
+        Normalizer.normalizeDimensionValue(
+            value, MetricLineConstants.Limits.MAX_DIMENSION_VALUE_LENGTH);
+    if (normalizeValueResult.messageType() != NormalizationResult.MessageType.NONE) {
+      normalizationLogger.logDimensionValueMessage(
+          CLASS_NAME_FOR_LOGGING, normalizedKey, normalizeValueResult);
+    }
+
+    return new Dimension(normalizedKey, normalizeValueResult.getResult());
+  }
+
+  /** @return The normalized dimension key. */
+  public String getKey() {
+    return key;
+  }
+
+  /** @return The normalized and escaped dimension value. */
+  public String getValue() {
+    return value;
+  }
+
+  /** @return The serialized dimension ({@code ,key=value}), or {@code null} if it is empty. */
+  String segment() {
+    return segment;
+  }
+
+  /** @return The length of the serialized dimension ({@code key=value}). */
+  public int length() {
+    return key.length() + Character.charCount(CodePoints.EQUALS) + value.length();
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    Dimension other = (Dimension) o;
+    return key.equals(other.key) && value.equals(other.value);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * key.hashCode() + value.hashCode();
+  }
+
+  /** @return The serialized dimension ({@code key=value}). */
+  @Override
+  public String toString() {
+    return new StringBuilder(length())
+        .append(key)
+        .appendCodePoint(CodePoints.EQUALS)
+        .append(value)
+        .toString();
+  }
+}
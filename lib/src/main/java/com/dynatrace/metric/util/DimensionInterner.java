@@ -0,0 +1,211 @@
+/**
+ * Copyright 2023 Dynatrace LLC
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dynatrace.metric.util;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.logging.Logger;
+
+/**
+ * Interns normalized dimensions, so that recurring raw (key, value) pairs map to a shared,
+ * pre-serialized {@code ,key=value} segment without being normalized again. Only pairs that did not
+ * need any normalization are admitted, so that skipping the normalization for interned pairs does
+ * not skip any log messages.
+ *
+ * <p>The interner is bounded: at most {@code maxKeys} keys are tracked, and each key can have at
+ * most {@code maxValuesPerKey} values. Keys that exceed their value limit are considered high
+ * cardinality (e.g. request IDs): their values are dropped and no further values are admitted. The
+ * interner is {@link #reset() reset} periodically, so that keys that are no longer used free up
+ * their space and keys that were considered high cardinality get another chance.
+ */
+final class DimensionInterner {
+  private static final int DEFAULT_MAX_KEYS = 256;
+  private static final int DEFAULT_MAX_VALUES_PER_KEY = 128;
+  private static final Duration DEFAULT_RESET_INTERVAL = Duration.ofHours(1);
+  private static final Logger logger = Logger.getLogger(DimensionInterner.class.getName());
+
+  /** Interner shared by all metric line builders. */
+  static final DimensionInterner SHARED =
+      new DimensionInterner(DEFAULT_MAX_KEYS, DEFAULT_MAX_VALUES_PER_KEY);
+
+  private final ConcurrentHashMap<String, ValueTable> keys = new ConcurrentHashMap<>();
+  private final int maxKeys;
+  private final int maxValuesPerKey;
+  private final long resetIntervalNanos;
+  private final LongSupplier nanoTime;
+  private final AtomicLong nextResetAt;
+  // the key limit is only logged once per interval
+  private final AtomicBoolean keyLimitLogged = new AtomicBoolean();
+
+  /** A normalized dimension and its serialized form. */
+  static final class Segment {
+    private final String key;
+    private final String value;
+    private final String serialized;
+
+    Segment(String key, String value) {
+      this.key = key;
+      this.value = value;
+      this.serialized =
+          new StringBuilder(
+                  Character.charCount(CodePoints.COMMA)
+                      + key.length()
+                      + Character.charCount(CodePoints.EQUALS)
+                      + value.length())
+              .appendCodePoint(CodePoints.COMMA)
+              .append(key)
+              .appendCodePoint(CodePoints.EQUALS)
+              .append(value)
+              .toString();
+    }
+
+    /** @return The normalized dimension key. */
+    String key() {
+      return key;
+    }
+
+    /** @return The normalized dimension value. */
+    String value() {
+      return value;
+    }
+
+    /** @return The serialized dimension, {@code ,key=value}. */
+    String serialized() {
+      return serialized;
+    }
+  }
+
+  /** The interned values of a single raw key. */
+  private static final class ValueTable {
+    private final ConcurrentHashMap<String, Segment> values = new ConcurrentHashMap<>();
+    private volatile boolean highCardinality;
+  }
+
+  DimensionInterner(int maxKeys, int maxValuesPerKey) {
+    this(maxKeys, maxValuesPerKey, DEFAULT_RESET_INTERVAL, System::nanoTime);
+  }
+
+  DimensionInterner(
+      int maxKeys, int maxValuesPerKey, Duration resetInterval, LongSupplier nanoTime) {
+    this.maxKeys = maxKeys;
+    this.maxValuesPerKey = maxValuesPerKey;
+    this.resetIntervalNanos = resetInterval.toNanos();
+    this.nanoTime = nanoTime;
+    this.nextResetAt = new AtomicLong(nanoTime.getAsLong() + resetIntervalNanos);
+  }
+
+  /**
+   * @param rawKey The dimension key as passed to the builder.
+   * @param rawValue The dimension value as passed to the builder.
+   * @return The interned segment, or {@code null} if the pair has not been interned.
+   */
+  Segment get(String rawKey, String rawValue) {
+    if (rawValue == null) {
+      return null;
+    }
+    ValueTable table = keys.get(rawKey);
+    return table == null ? null : table.values.get(rawValue);
+  }
+
+  /**
+   * Offers a normalized pair to the interner. The pair is only admitted if the limits allow it. If
+   * the reset interval has elapsed, the interner is reset first.
+   *
+   * @param rawKey The dimension key as passed to the builder.
+   * @param rawValue The dimension value as passed to the builder.
+   * @param normalizedKey The normalized dimension key.
+   * @param normalizedValue The normalized dimension value.
+   * @return The interned segment, or {@code null} if the pair was not admitted.
+   */
+  Segment admit(String rawKey, String rawValue, String normalizedKey, String normalizedValue) {
+    if (StringValueValidator.isNullOrEmpty(rawValue)
+        || StringValueValidator.isNullOrEmpty(normalizedValue)) {
+      return null;
+    }
+
+    resetIfDue();
+    ValueTable table = keys.get(rawKey);
+    if (table == null) {
+      if (keys.size() >= maxKeys) {
+        if (keyLimitLogged.compareAndSet(false, true)) {
+          logger.info(
+              () ->
+                  String.format(
+                      "Dimension interning limit of %d keys reached, dimensions with other keys are"
+                          + " not interned until the next reset",
+                      maxKeys));
+        }
+        return null;
+      }
+      table = keys.computeIfAbsent(rawKey, k -> new ValueTable());
+    }
+    if (table.highCardinality) {
+      return null;
+    }
+    if (table.values.size() >= maxValuesPerKey) {
+      disable(rawKey, table);
+      return null;
+    }
+
+    Segment segment = new Segment(normalizedKey, normalizedValue);
+    Segment existing = table.values.putIfAbsent(rawValue, segment);
+    return existing != null ? existing : segment;
+  }
+
+  /** Stops interning values for a high cardinality key and frees their memory. */
+  private void disable(String rawKey, ValueTable table) {
+    synchronized (table) {
+      if (table.highCardinality) {
+        return;
+      }
+      table.highCardinality = true;
+    }
+    table.values.clear();
+    logger.info(
+        () ->
+            String.format(
+                "Dimension key '%s' has more than %d distinct values, its dimensions are not"
+                    + " interned until the next reset",
+                rawKey, maxValuesPerKey));
+  }
+
+  private void resetIfDue() {
+    final long now = nanoTime.getAsLong();
+    final long resetAt = nextResetAt.get();
+    if (now - resetAt >= 0 && nextResetAt.compareAndSet(resetAt, now + resetIntervalNanos)) {
+      reset();
+    }
+  }
+
+  /**
+   * Drops all interned segments and forgets which keys were considered high cardinality, so that
+   * the limits apply to the dimensions that are used from now on.
+   */
+  void reset() {
+    keys.clear();
+    keyLimitLogged.set(false);
+  }
+
+  /** @return The number of interned segments. */
+  int size() {
+    int size = 0;
+    for (ValueTable table : keys.values()) {
+      size += table.values.size();
+    }
+    return size;
+  }
+}
@@ -25,8 +25,7 @@ final class DimensionKeyValidator {
    * @return true if it's a valid character for the start of the dimension key, false otherwise.
    */
   static boolean isValidFirstSectionStartCharacter(int codePoint) {
-    return codePoint >= CodePoints.A_LOWERCASE && codePoint <= CodePoints.Z_LOWERCASE
-        || codePoint == CodePoints.UNDERSCORE;
+    return CharacterClasses.is(codePoint, CharacterClasses.DIMENSION_KEY_START);
   }
 
   /**
@@ -36,9 +35,7 @@ final class DimensionKeyValidator {
    * @return true if it's a valid character for the dimension key section, false otherwise.
    */
   static boolean isValidSection(int codePoint) {
-    return isValidFirstSectionStartCharacter(codePoint)
-        || isNumber(codePoint)
-        || isSpecialCharacter(codePoint);
+    return CharacterClasses.is(codePoint, CharacterClasses.DIMENSION_KEY_SECTION);
   }
 
   /**
@@ -57,63 +54,52 @@ final class DimensionKeyValidator {
    * @param key The dimension key.
    * @return true if it needs to be normalized (truncated or replaced), false otherwise.
    */
-  static boolean normalizationRequired(String key) {
-    if (key == null || key.isEmpty()) {
-      return true;
-    }
+  static boolean normalizationRequired(CharSequence key) {
+    return firstNormalizationIndex(key) >= 0;
+  }
 
-    final int length = key.length();
-    if (length > MetricLineConstants.Limits.MAX_DIMENSION_KEY_LENGTH) {
-      return true;
+  /**
+   * Iterates through the dimension key once to find the first position at which it needs to be
+   * normalized. Everything before that position is a valid dimension key prefix that is kept as is.
+   *
+   * @param key The dimension key.
+   * @return The index of the first character that needs to be normalized (or the maximum length, if
+   *     the key only has to be truncated), or -1 if the key does not need to be normalized.
+   */
+  static int firstNormalizationIndex(CharSequence key) {
+    if (key == null || key.length() == 0) {
+      return 0;
     }
 
+    final int length = Math.min(key.length(), MetricLineConstants.Limits.MAX_DIMENSION_KEY_LENGTH);
     State state = State.START;
-    for (int offset = 0; offset < length; ) {
-      final int codePoint = key.codePointAt(offset);
+    // all valid characters are ASCII, so the key can be checked char by char: any char that is
+    // part of a non-ASCII codepoint (including surrogates) is invalid.
+    for (int offset = 0; offset < length; offset++) {
+      final char codePoint = key.charAt(offset);
       switch (state) {
         case START:
           if (!isValidFirstSectionStartCharacter(codePoint)) {
-            return true;
+            return offset;
           }
           state = State.SECTION;
           break;
         case SECTION:
           if (isSectionSeparator(codePoint)) {
-            if (offset + Character.charCount(codePoint) == length) {
+            if (offset + 1 == length) {
               // if the separator char is the last char, we need to normalize it
-              return true;
+              return offset;
             }
             state = State.START;
             break;
           }
           if (!isValidSection(codePoint)) {
-            return true;
+            return offset;
           }
           break;
       }
-      offset += Character.charCount(codePoint);
     }
-    return false;
-  }
-
-  /**
-   * Checks if the codepoint is a number.
-   *
-   * @param codePoint The codepoint.
-   * @return true if it's a number, false otherwise.
-   */
-  private static boolean isNumber(int codePoint) {
-    return codePoint >= CodePoints.ZERO && codePoint <= CodePoints.NINE;
-  }
-
-  /**
-   * Checks if the codepoint is a special character (e.g.: ",:)
-   *
-   * @param codePoint The codepoint.
-   * @return true if it's a special character, false otherwise.
-   */
-  private static boolean isSpecialCharacter(int codePoint) {
-    return codePoint == CodePoints.HYPHEN || codePoint == CodePoints.COLON;
+    return length < key.length() ? length : -1;
   }
 
   enum State {
@@ -0,0 +1,129 @@
+/**
+ * Copyright 2023 Dynatrace LLC
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dynatrace.metric.util;
+
+import java.util.Arrays;
+
+/**
+ * Holds the dimensions of a single metric line in insertion order. Keys, values and (optional)
+ * pre-serialized {@code ,key=value} segments are stored in parallel arrays and looked up with a
+ * linear scan, which is cheaper than hashing for the at most {@value
+ * MetricLineConstants.Limits#MAX_DIMENSIONS_COUNT} dimensions of a line. After {@link #clear()},
+ * the arrays are reused for the next line.
+ */
+final class DimensionList {
+  private static final int INITIAL_CAPACITY = 8;
+
+  private String[] keys = new String[INITIAL_CAPACITY];
+  private CharSequence[] values = new CharSequence[INITIAL_CAPACITY];
+  private String[] segments = new String[INITIAL_CAPACITY];
+  private int size;
+
+  /** @return The number of dimensions. */
+  int size() {
+    return size;
+  }
+
+  /**
+   * @param index The index of the dimension, in insertion order.
+   * @return The key of the dimension.
+   */
+  String keyAt(int index) {
+    return keys[index];
+  }
+
+  /**
+   * @param index The index of the dimension, in insertion order.
+   * @return The value of the dimension.
+   */
+  CharSequence valueAt(int index) {
+    return values[index];
+  }
+
+  /**
+   * @param index The index of the dimension, in insertion order.
+   * @return The pre-serialized {@code ,key=value} segment of the dimension, or {@code null} if it
+   *     has to be serialized from key and value.
+   */
+  String segmentAt(int index) {
+    return segments[index];
+  }
+
+  /**
+   * @param key The dimension key.
+   * @return The index of the dimension with the given key, or -1 if there is none.
+   */
+  int indexOf(String key) {
+    for (int i = 0; i < size; i++) {
+      if (keys[i].equals(key)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @param key The dimension key.
+   * @return {@code true} if there is a dimension with the given key.
+   */
+  boolean containsKey(String key) {
+    return indexOf(key) >= 0;
+  }
+
+  /**
+   * Adds the dimension. If there already is a dimension with the same key, its value is replaced
+   * and it keeps its position.
+   *
+   * @param key The dimension key.
+   * @param value The dimension value.
+   */
+  void put(String key, CharSequence value) {
+    put(key, value, null);
+  }
+
+  /**
+   * Adds the dimension. If there already is a dimension with the same key, its value is replaced
+   * and it keeps its position.
+   *
+   * @param key The dimension key.
+   * @param value The dimension value.
+   * @param segment The pre-serialized {@code ,key=value} segment, or {@code null}.
+   */
+  void put(String key, CharSequence value, String segment) {
+    final int index = indexOf(key);
+    if (index >= 0) {
+      values[index] = value;
+      segments[index] = segment;
+      return;
+    }
+
+    if (size == keys.length) {
+      keys = Arrays.copyOf(keys, 2 * size);
+      values = Arrays.copyOf(values, 2 * size);
+      segments = Arrays.copyOf(segments, 2 * size);
+    }
+    keys[size] = key;
+    values[size] = value;
+    segments[size] = segment;
+    size++;
+  }
+
+  /** Removes all dimensions, but keeps the arrays for reuse. */
+  void clear() {
+    Arrays.fill(keys, 0, size, null);
+    Arrays.fill(values, 0, size, null);
+    Arrays.fill(segments, 0, size, null);
+    size = 0;
+  }
+}
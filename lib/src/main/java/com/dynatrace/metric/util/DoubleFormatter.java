@@ -0,0 +1,281 @@
+/**
+ * Copyright 2023 Dynatrace LLC
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dynatrace.metric.util;
+
+import java.math.BigInteger;
+
+/**
+ * Formats double values without creating intermediate {@link String} objects. Values without a
+ * fractional part are formatted like a long value, all other values are formatted with the shortest
+ * decimal that uniquely identifies the double, in the layout of {@link Double#toString(double)}.
+ *
+ * <p>The shortest decimal is found using the Schubfach algorithm by Raffaello Giulietti ("The
+ * Schubfach way to render doubles"), which is also used by {@link Double#toString(double)} since
+ * Java 19.
+ */
+final class DoubleFormatter {
+  // precision and exponent range of doubles
+  private static final int P = 53;
+  private static final int Q_MIN = -1074;
+  private static final long C_MIN = 1L << (P - 1);
+  private static final int BQ_MASK = (1 << 11) - 1;
+  private static final long T_MASK = (1L << (P - 1)) - 1;
+  // subnormal significands below this are scaled up to guarantee enough precision
+  private static final long C_TINY = 3;
+
+  // range of decimal exponents covered by the table of powers of 10
+  private static final int K_MIN = -324;
+  private static final int K_MAX = 292;
+
+  // max number of significant digits of the shortest decimal
+  private static final int H = 17;
+  private static final long MASK_63 = (1L << 63) - 1;
+
+  private static final long[] POW10 = new long[H + 1];
+
+  // The powers of 10^-k (k in [K_MIN, K_MAX]) as 126-bit approximations g, split into the higher
+  // (g1, even index) and the lower (g0, odd index) 63 bits.
+  private static final long[] G = new long[2 * (K_MAX - K_MIN + 1)];
+
+  static {
+    POW10[0] = 1;
+    for (int i = 1; i < POW10.length; i++) {
+      POW10[i] = 10 * POW10[i - 1];
+    }
+
+    final BigInteger mask63 = BigInteger.valueOf(MASK_63);
+    for (int k = K_MIN; k <= K_MAX; k++) {
+      // g = floor(10^-k * 2^-r) + 1, where r is chosen so that 2^125 <= 10^-k * 2^-r < 2^126
+      final int shift = 125 - flog2pow10(-k);
+      final BigInteger g;
+      if (k <= 0) {
+        final BigInteger pow10 = BigInteger.TEN.pow(-k);
+        g = (shift >= 0 ? pow10.shiftLeft(shift) : pow10.shiftRight(-shift)).add(BigInteger.ONE);
+      } else {
+        g = BigInteger.ONE.shiftLeft(shift).divide(BigInteger.TEN.pow(k)).add(BigInteger.ONE);
+      }
+      G[2 * (k - K_MIN)] = g.shiftRight(63).longValue();
+      G[2 * (k - K_MIN) + 1] = g.and(mask63).longValue();
+    }
+  }
+
+  private DoubleFormatter() {}
+
+  /**
+   * Appends the formatted double value to the {@link StringBuilder}. Values without a fractional
+   * part are appended as a long value, all other values are appended with as few digits as
+   * possible, in the same layout as {@link Double#toString(double)}.
+   *
+   * @param sb The {@link StringBuilder} that the value is appended to.
+   * @param value The double value to append.
+   * @return The {@link StringBuilder} that was passed in.
+   */
+  static StringBuilder append(StringBuilder sb, double value) {
+    if (value == (long) value) {
+      return sb.append((long) value);
+    }
+    if (Double.isNaN(value) || Double.isInfinite(value)) {
+      return sb.append(value);
+    }
+
+    final long bits = Double.doubleToRawLongBits(value);
+    if (bits < 0) {
+      sb.append('-');
+    }
+
+    final long t = bits & T_MASK;
+    final int bq = (int) (bits >>> (P - 1)) & BQ_MASK;
+    if (bq != 0) {
+      // normal value
+      return toDecimal(sb, Q_MIN - 1 + bq, C_MIN | t, 0);
+    }
+    // subnormal value (zero is handled as long value above)
+    if (t < C_TINY) {
+      return toDecimal(sb, Q_MIN, 10 * t, -1);
+    }
+    return toDecimal(sb, Q_MIN, t, 0);
+  }
+
+  /**
+   * Finds the shortest decimal in the rounding interval of the double c * 2^q, and appends it.
+   *
+   * @param sb The {@link StringBuilder} that the decimal is appended to.
+   * @param q The binary exponent.
+   * @param c The significand.
+   * @param dk Correction of the decimal exponent for scaled significands.
+   * @return The {@link StringBuilder} that was passed in.
+   */
+  private static StringBuilder toDecimal(StringBuilder sb, int q, long c, int dk) {
+    final int out = (int) c & 0x1;
+    final long cb = c << 2;
+    final long cbr = cb + 2;
+    final long cbl;
+    final int k;
+    // the rounding interval is asymmetric for powers of 2, except for the smallest exponent
+    if (c != C_MIN | q == Q_MIN) {
+      cbl = cb - 2;
+      k = flog10pow2(q);
+    } else {
+      cbl = cb - 1;
+      k = flog10threeQuartersPow2(q);
+    }
+    final int h = q + flog2pow10(-k) + 2;
+
+    final long g1 = G[2 * (k - K_MIN)];
+    final long g0 = G[2 * (k - K_MIN) + 1];
+
+    final long vb = rop(g1, g0, cb << h);
+    final long vbl = rop(g1, g0, cbl << h);
+    final long vbr = rop(g1, g0, cbr << h);
+
+    final long s = vb >> 2;
+    if (s >= 100) {
+      // try a decimal with one digit less first: sp10 = 10 * floor(s / 10)
+      final long sp10 = 10 * multiplyHigh(s, 115_292_150_460_684_698L << 4);
+      final long tp10 = sp10 + 10;
+      final boolean upin = vbl + out <= sp10 << 2;
+      final boolean wpin = (tp10 << 2) + out <= vbr;
+      if (upin != wpin) {
+        return appendDecimal(sb, upin ? sp10 : tp10, k);
+      }
+    }
+
+    final long t = s + 1;
+    final boolean uin = vbl + out <= s << 2;
+    final boolean win = (t << 2) + out <= vbr;
+    if (uin != win) {
+      return appendDecimal(sb, uin ? s : t, k + dk);
+    }
+
+    // both s and t are in the rounding interval, pick the closer one (the even one on ties)
+    final long cmp = vb - ((s + t) << 1);
+    return appendDecimal(sb, cmp < 0 || cmp == 0 && (s & 0x1) == 0 ? s : t, k + dk);
+  }
+
+  /**
+   * Appends the decimal f * 10^e in the layout of {@link Double#toString(double)}: plain notation
+   * for values in [10^-3, 10^7), computerized scientific notation otherwise.
+   *
+   * @param sb The {@link StringBuilder} that the decimal is appended to.
+   * @param f The (positive) decimal significand.
+   * @param e The decimal exponent.
+   * @return The {@link StringBuilder} that was passed in.
+   */
+  private static StringBuilder appendDecimal(StringBuilder sb, long f, int e) {
+    while (f % 10 == 0) {
+      f /= 10;
+      e++;
+    }
+
+    int length = 1;
+    while (length < H && f >= POW10[length]) {
+      length++;
+    }
+    // the value is 0.d1d2...dn * 10^point
+    final int point = length + e;
+
+    if (0 < point && point <= 7) {
+      if (length <= point) {
+        appendDigits(sb, f, length);
+        for (int i = length; i < point; i++) {
+          sb.append('0');
+        }
+        return sb.append(".0");
+      }
+      appendDigits(sb, f / POW10[length - point], point);
+      sb.append('.');
+      return appendDigits(sb, f % POW10[length - point], length - point);
+    }
+
+    if (-3 < point && point <= 0) {
+      sb.append("0.");
+      for (int i = point; i < 0; i++) {
+        sb.append('0');
+      }
+      return appendDigits(sb, f, length);
+    }
+
+    appendDigits(sb, f / POW10[length - 1], 1);
+    sb.append('.');
+    if (length == 1) {
+      sb.append('0');
+    } else {
+      appendDigits(sb, f % POW10[length - 1], length - 1);
+    }
+    return sb.append('E').append(point - 1);
+  }
+
+  /**
+   * Appends the digits of the value, padded with leading zeros to the given number of digits.
+   *
+   * @param sb The {@link StringBuilder} that the digits are appended to.
+   * @param value The non-negative value with at most {@code digits} digits.
+   * @param digits The number of digits to append.
+   * @return The {@link StringBuilder} that was passed in.
+   */
+  private static StringBuilder appendDigits(StringBuilder sb, long value, int digits) {
+    for (int i = digits - 1; i >= 0; i--) {
+      final long digit = value / POW10[i];
+      sb.append((char) ('0' + digit));
+      value -= digit * POW10[i];
+    }
+    return sb;
+  }
+
+  /**
+   * Computes the rounded-to-odd, scaled product of g and cp, i.e. an approximation of the value in
+   * the decimal scale.
+   */
+  private static long rop(long g1, long g0, long cp) {
+    final long x1 = multiplyHigh(g0, cp);
+    final long y0 = g1 * cp;
+    final long y1 = multiplyHigh(g1, cp);
+    final long z = (y0 >>> 1) + x1;
+    final long vbp = y1 + (z >>> 63);
+    return vbp | ((z & MASK_63) + MASK_63) >>> 63;
+  }
+
+  /** @return floor(log10(2^e)) */
+  private static int flog10pow2(int e) {
+    return (int) (e * 661_971_961_083L >> 41);
+  }
+
+  /** @return floor(log10(3/4 * 2^e)) */
+  private static int flog10threeQuartersPow2(int e) {
+    return (int) ((e * 661_971_961_083L + -274_743_187_321L) >> 41);
+  }
+
+  /** @return floor(log2(10^e)) */
+  private static int flog2pow10(int e) {
+    return (int) (e * 913_124_641_741L >> 38);
+  }
+
+  /**
+   * Returns the upper 64 bits of the 128-bit product of two signed longs, like {@code
+   * Math.multiplyHigh}, which is only available since Java 9.
+   */
+  private static long multiplyHigh(long x, long y) {
+    final long x1 = x >> 32;
+    final long x2 = x & 0xFFFFFFFFL;
+    final long y1 = y >> 32;
+    final long y2 = y & 0xFFFFFFFFL;
+
+    final long z2 = x2 * y2;
+    final long t = x1 * y2 + (z2 >>> 32);
+    long z1 = t & 0xFFFFFFFFL;
+    final long z0 = t >> 32;
+    z1 += x2 * y1;
+    return x1 * y1 + z0 + (z1 >> 32);
+  }
+}
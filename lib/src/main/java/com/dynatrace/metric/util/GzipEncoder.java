@@ -0,0 +1,141 @@
+/**
+ * Copyright 2023 Dynatrace LLC
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dynatrace.metric.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Encodes payloads in the gzip format into a reusable output buffer. Encoders are pooled per
+ * compression level, so that the native zlib state of their {@link Deflater} is reused instead of
+ * being allocated for every request. An encoder must be {@link #release() released} after its
+ * output has been written.
+ */
+final class GzipEncoder {
+  private static final int MAX_POOLED_PER_LEVEL = 4;
+  private static final int INITIAL_OUTPUT_SIZE = 16 * 1024;
+  private static final int HEADER_LENGTH = 10;
+  private static final int TRAILER_LENGTH = 8;
+  // magic number, compression method (deflate), no flags, no modification time, no extra flags,
+  // unknown operating system
+  private static final byte[] HEADER = {
+    (byte) 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff
+  };
+
+  // one pool per compression level from Deflater.DEFAULT_COMPRESSION (-1) to BEST_COMPRESSION (9)
+  private static final List<ArrayBlockingQueue<GzipEncoder>> POOLS = new ArrayList<>();
+
+  static {
+    for (int level = Deflater.DEFAULT_COMPRESSION; level <= Deflater.BEST_COMPRESSION; level++) {
+      POOLS.add(new ArrayBlockingQueue<>(MAX_POOLED_PER_LEVEL));
+    }
+  }
+
+  private final int level;
+  // raw deflate, the gzip header and trailer are written separately
+  private final Deflater deflater;
+  private final CRC32 crc = new CRC32();
+  private byte[] output = new byte[INITIAL_OUTPUT_SIZE];
+  private int length;
+
+  private GzipEncoder(int level) {
+    this.level = level;
+    this.deflater = new Deflater(level, true);
+  }
+
+  /**
+   * @param level The compression level, from {@link Deflater#DEFAULT_COMPRESSION} to {@link
+   *     Deflater#BEST_COMPRESSION}.
+   * @return A pooled encoder for the level, or a new one if none is available.
+   */
+  static GzipEncoder acquire(int level) {
+    checkLevel(level);
+    final GzipEncoder pooled = POOLS.get(level - Deflater.DEFAULT_COMPRESSION).poll();
+    return pooled != null ? pooled : new GzipEncoder(level);
+  }
+
+  static void checkLevel(int level) {
+    if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+      throw new IllegalArgumentException(
+          String.format(
+              "compression level must be between %d and %d, but was %d",
+              Deflater.DEFAULT_COMPRESSION, Deflater.BEST_COMPRESSION, level));
+    }
+  }
+
+  /**
+   * Returns the encoder to its pool. If the pool is full, the native state of the encoder is freed
+   * instead.
+   */
+  void release() {
+    length = 0;
+    if (!POOLS.get(level - Deflater.DEFAULT_COMPRESSION).offer(this)) {
+      deflater.end();
+    }
+  }
+
+  /**
+   * Encodes the input into the output buffer of the encoder, which is overwritten by every call.
+   *
+   * @return The length of the encoded output.
+   */
+  int encode(byte[] input, int offset, int inputLength) {
+    deflater.reset();
+    crc.reset();
+    System.arraycopy(HEADER, 0, output, 0, HEADER_LENGTH);
+    length = HEADER_LENGTH;
+
+    deflater.setInput(input, offset, inputLength);
+    deflater.finish();
+    while (!deflater.finished()) {
+      if (length == output.length - TRAILER_LENGTH) {
+        grow();
+      }
+      length += deflater.deflate(output, length, output.length - TRAILER_LENGTH - length);
+    }
+
+    crc.update(input, offset, inputLength);
+    writeIntLittleEndian((int) crc.getValue());
+    writeIntLittleEndian(inputLength);
+    return length;
+  }
+
+  private void grow() {
+    final byte[] grown = new byte[output.length * 2];
+    System.arraycopy(output, 0, grown, 0, length);
+    output = grown;
+  }
+
+  private void writeIntLittleEndian(int value) {
+    output[length++] = (byte) value;
+    output[length++] = (byte) (value >>> 8);
+    output[length++] = (byte) (value >>> 16);
+    output[length++] = (byte) (value >>> 24);
+  }
+
+  /** @return The length of the output of the last {@link #encode} call. */
+  int length() {
+    return length;
+  }
+
+  /** Writes the output of the last {@link #encode} call to the stream. */
+  void writeTo(OutputStream out) throws IOException {
+    out.write(output, 0, length);
+  }
+}
@@ -0,0 +1,254 @@
+/**
+ * Copyright 2023 Dynatrace LLC
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dynatrace.metric.util;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the metadata lines that were serialized per metric key and type, so that metadata that is
+ * set for every export does not have to be validated, normalized and sent again each time. A
+ * metadata line is only emitted if its metric key and type are seen for the first time, if the
+ * description, unit or display name changed, or if the refresh period elapsed since the line was
+ * last emitted. Otherwise, the metadata builder behaves as if no metadata was set, i.e. {@link
+ * MetricLineBuilder.MetadataStep#build()} returns {@code null}.
+ *
+ * <p>A registry can be shared between threads and is set on a {@link MetricLinePreConfiguration}
+ * via {@link MetricLinePreConfiguration.Builder#metadataRegistry(MetadataRegistry)}. When the
+ * maximum number of metric keys is reached, an arbitrary entry is evicted for each new one, and its
+ * metadata line is emitted again the next time it is built.
+ */
+public final class MetadataRegistry {
+  static final Duration DEFAULT_REFRESH_PERIOD = Duration.ofHours(1);
+  private static final int DEFAULT_MAX_SIZE = 4096;
+
+  private final ConcurrentHashMap<String, Entry> entries;
+  private final long refreshPeriodNanos;
+  private final LongSupplier nanoTime;
+  private final int maxSize;
+
+  MetadataRegistry(Duration refreshPeriod, LongSupplier nanoTime, int maxSize) {
+    this.entries = new ConcurrentHashMap<>(Math.min(maxSize, 256));
+    this.refreshPeriodNanos = toNanos(refreshPeriod);
+    this.nanoTime = nanoTime;
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * Creates a registry that emits unchanged metadata lines again once per hour.
+   *
+   * @return The created {@link MetadataRegistry}.
+   */
+  public static MetadataRegistry create() {
+    return create(DEFAULT_REFRESH_PERIOD);
+  }
+
+  /**
+   * Creates a registry that emits unchanged metadata lines again after the given period.
+   *
+   * @param refreshPeriod The period after which unchanged metadata lines are emitted again. With a
+   *     period of zero, metadata lines are emitted every time, but are still only serialized when
+   *     they change.
+   * @return The created {@link MetadataRegistry}.
+   * @throws IllegalArgumentException if the {@code refreshPeriod} is {@code null} or negative.
+   */
+  public static MetadataRegistry create(Duration refreshPeriod) {
+    if (refreshPeriod == null || refreshPeriod.isNegative()) {
+      throw new IllegalArgumentException("refresh period must not be null or negative");
+    }
+    return new MetadataRegistry(refreshPeriod, System::nanoTime, DEFAULT_MAX_SIZE);
+  }
+
+  private static long toNanos(Duration duration) {
+    try {
+      return duration.toNanos();
+    } catch (ArithmeticException e) {
+      return Long.MAX_VALUE;
+    }
+  }
+
+  /**
+   * Removes all entries, so that every metadata line is emitted again the next time it is built,
+   * e.g. after metadata was lost or sent to a new endpoint.
+   */
+  public void clear() {
+    entries.clear();
+  }
+
+  /**
+   * Returns the metadata line if it has to be emitted. Lines are only serialized if the metadata
+   * changed, otherwise the previously serialized line is returned. The line is only registered as
+   * emitted once the returned {@link Emission} is {@link Emission#commit() committed}, so that it
+   * is emitted again if writing it failed.
+   *
+   * @param metricKey The normalized metric key.
+   * @param type The metric type, e.g. {@code gauge}.
+   * @param description The raw description, or {@code null}.
+   * @param unit The raw unit, or {@code null}.
+   * @param displayName The raw display name, or {@code null}.
+   * @param serializer Serializes the metadata line, returns {@code null} if there is nothing to
+   *     serialize.
+   * @return The metadata line to emit, or {@code null} if it does not have to be emitted.
+   */
+  Emission emission(
+      String metricKey,
+      String type,
+      String description,
+      String unit,
+      String displayName,
+      Supplier<StringBuilder> serializer) {
+    final long now = nanoTime.getAsLong();
+    final Entry entry = entries.get(metricKey);
+    if (entry != null && entry.matches(type, description, unit, displayName)) {
+      final long emittedAt = entry.emittedAt.get();
+      // only one thread emits the line when the refresh period elapsed
+      if (now - emittedAt < refreshPeriodNanos || !entry.emittedAt.compareAndSet(emittedAt, now)) {
+        return null;
+      }
+      return new Emission(this, metricKey, entry, emittedAt, now, new StringBuilder(entry.line));
+    }
+
+    final StringBuilder line = serializer.get();
+    if (line == null) {
+      return null;
+    }
+    final Entry created = new Entry(type, description, unit, displayName, line.toString(), now);
+    return new Emission(this, metricKey, created, line);
+  }
+
+  private void register(String metricKey, Entry entry) {
+    if (entries.size() >= maxSize && !entries.containsKey(metricKey)) {
+      evictOne();
+    }
+    entries.put(metricKey, entry);
+  }
+
+  private void evictOne() {
+    Iterator<String> iterator = entries.keySet().iterator();
+    if (iterator.hasNext()) {
+      iterator.next();
+      iterator.remove();
+    }
+  }
+
+  /** @return The current number of metric keys with a registered metadata line. */
+  int size() {
+    return entries.size();
+  }
+
+  /**
+   * A metadata line that is about to be emitted. It has to be {@link #commit() committed} after it
+   * was written, or {@link #rollback() rolled back} if writing it failed.
+   */
+  static final class Emission {
+    private final MetadataRegistry registry;
+    private final String metricKey;
+    private final Entry entry;
+    // A refreshed line was already claimed by setting emittedAt, whereas a new or changed line is
+    // only registered when committed.
+    private final boolean refresh;
+    private final long previouslyEmittedAt;
+    private final long claimedAt;
+    private final StringBuilder line;
+
+    /** Creates an emission for a line whose refresh period elapsed. */
+    private Emission(
+        MetadataRegistry registry,
+        String metricKey,
+        Entry entry,
+        long previouslyEmittedAt,
+        long claimedAt,
+        StringBuilder line) {
+      this.registry = registry;
+      this.metricKey = metricKey;
+      this.entry = entry;
+      this.refresh = true;
+      this.previouslyEmittedAt = previouslyEmittedAt;
+      this.claimedAt = claimedAt;
+      this.line = line;
+    }
+
+    /** Creates an emission for a new or changed line. */
+    private Emission(MetadataRegistry registry, String metricKey, Entry entry, StringBuilder line) {
+      this.registry = registry;
+      this.metricKey = metricKey;
+      this.entry = entry;
+      this.refresh = false;
+      this.previouslyEmittedAt = 0;
+      this.claimedAt = 0;
+      this.line = line;
+    }
+
+    /** Creates an emission for a line that is not tracked by a registry. */
+    Emission(StringBuilder line) {
+      this(null, null, null, line);
+    }
+
+    /** @return The serialized metadata line. */
+    StringBuilder line() {
+      return line;
+    }
+
+    /** Registers the line as emitted. */
+    void commit() {
+      if (registry != null && !refresh) {
+        registry.register(metricKey, entry);
+      }
+    }
+
+    /** Restores the state from before the line was returned, so that it is emitted again. */
+    void rollback() {
+      if (registry != null && refresh) {
+        entry.emittedAt.compareAndSet(claimedAt, previouslyEmittedAt);
+      }
+    }
+  }
+
+  /** The raw metadata and the serialized metadata line of a metric key. */
+  private static final class Entry {
+    private final String type;
+    private final String description;
+    private final String unit;
+    private final String displayName;
+    private final String line;
+    private final AtomicLong emittedAt;
+
+    private Entry(
+        String type,
+        String description,
+        String unit,
+        String displayName,
+        String line,
+        long emittedAt) {
+      this.type = type;
+      this.description = description;
+      this.unit = unit;
+      this.displayName = displayName;
+      this.line = line;
+      this.emittedAt = new AtomicLong(emittedAt);
+    }
+
+    private boolean matches(String type, String description, String unit, String displayName) {
+      return this.type.equals(type)
+          && Objects.equals(this.description, description)
+          && Objects.equals(this.unit, unit)
+          && Objects.equals(this.displayName, displayName);
+    }
+  }
+}
@@ -0,0 +1,90 @@
+/**
+ * Copyright 2023 Dynatrace LLC
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dynatrace.metric.util;
+
+import com.dynatrace.metric.util.MetricLineConstants.ValidationMessages;
+import java.util.logging.Logger;
+
+/**
+ * An immutable, normalized metric key. The key is normalized once on creation, so that metric lines
+ * created via {@link MetricLineBuilder.MetricKeyStep#normalizedMetricKey(MetricKey)} do not have to
+ * validate it again. This is useful for keys that are used for many lines, e.g. keys defined as
+ * constants.
+ */
+public final class MetricKey {
+  private static final Logger logger = Logger.getLogger(MetricKey.class.getName());
+  private static final NormalizationWarnThenDebugLogger normalizationLogger =
+      new NormalizationWarnThenDebugLogger(logger);
+
+  private final String key;
+
+  private MetricKey(String key) {
+    this.key = key;
+  }
+
+  /**
+   * Create a new {@link MetricKey}. The key is normalized in the same way as by {@link
+   * MetricLineBuilder.MetricKeyStep#metricKey(String)}. The prefix of a {@link
+   * MetricLinePreConfiguration} is not part of the key, it is added when the key is used.
+   *
+   * @param key The metric key.
+   * @return The {@link MetricKey} holding the normalized key.
+   * @throws MetricException if the key is empty or invalid and therefore cannot be normalized.
+   */
+  public static MetricKey of(String key) throws MetricException {
+    if (StringValueValidator.isNullOrEmpty(key)) {
+      throw new MetricException(ValidationMessages.METRIC_EMPTY_KEY_MESSAGE);
+    }
+
+    if (!MetricKeyValidator.normalizationRequired(key)) {
+      return new MetricKey(key);
+    }
+
+    NormalizationResult normalizationResult = Normalizer.normalizeMetricKey(key);
+    if (normalizationResult.messageType() == NormalizationResult.MessageType.WARNING) {
+      normalizationLogger.logMetricKeyMessage(normalizationResult);
+    } else if (normalizationResult.messageType() == NormalizationResult.MessageType.ERROR) {
+      throw new MetricException(
+          String.format(ValidationMessages.METRIC_DROPPED_AFTER_NORMALIZATION_MESSAGE, key));
+    }
+    return new MetricKey(normalizationResult.getResult());
+  }
+
+  /** @return The length of the normalized key. */
+  public int length() {
+    return key.length();
+  }
+
+  /** @return The normalized key. */
+  @Override
+  public String toString() {
+    return key;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    return key.equals(((MetricKey) o).key);
+  }
+
+  @Override
+  public int hashCode() {
+    return key.hashCode();
+  }
+}
@@ -13,6 +13,9 @@
  */
 package com.dynatrace.metric.util;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.time.Instant;
 import java.util.Map;
 
@@ -36,6 +39,28 @@ public interface MetricLineBuilder {
     return MetricLineBuilderImpl.builder(preConfig);
   }
 
+  /**
+   * @return A {@link ReusableMetricKeyStep} with an empty pre-configuration object.
+   * @see #createReusable(MetricLinePreConfiguration)
+   */
+  static ReusableMetricKeyStep createReusable() {
+    return MetricLineBuilderImpl.reusableBuilder(MetricLinePreConfiguration.empty());
+  }
+
+  /**
+   * Creates a builder that can be used for multiple metric lines. Calling {@link
+   * ReusableMetricKeyStep#reset()} discards all data of the previous line, but keeps the internal
+   * buffers, so that no new builder objects are allocated for each line. The returned builder is
+   * not thread-safe and should therefore be confined to a single thread, e.g. by holding one
+   * instance per thread.
+   *
+   * @param preConfig The pre-configuration object containing shared data.
+   * @return A {@link ReusableMetricKeyStep} with the given pre-configuration object.
+   */
+  static ReusableMetricKeyStep createReusable(MetricLinePreConfiguration preConfig) {
+    return MetricLineBuilderImpl.reusableBuilder(preConfig);
+  }
+
   interface MetricKeyStep {
 
     /**
@@ -46,6 +71,70 @@ public interface MetricLineBuilder {
      * @throws MetricException if the key is invalid and therefore cannot be normalized.
      */
     TypeStep metricKey(String key) throws MetricException;
+
+    /**
+     * Sets the metric key of the metric line from a character sequence, e.g. a slice of a parsed
+     * buffer or a {@code char[]} range wrapped with {@link java.nio.CharBuffer#wrap(char[], int,
+     * int)}. The key will be normalized.
+     *
+     * @param key The metric key of the metric line.
+     * @return A {@link TypeStep}.
+     * @throws MetricException if the key is invalid and therefore cannot be normalized.
+     */
+    TypeStep metricKey(CharSequence key) throws MetricException;
+
+    /**
+     * Sets the metric key of the metric line to an already normalized {@link MetricKey}. The key is
+     * not validated again, unless the prefix of the pre-configuration needs to be normalized
+     * together with it.
+     *
+     * @param key The normalized metric key of the metric line.
+     * @return A {@link TypeStep}.
+     * @throws MetricException if the key is {@code null}, or if the key cannot be normalized
+     *     together with the prefix.
+     */
+    TypeStep normalizedMetricKey(MetricKey key) throws MetricException;
+
+    /**
+     * Sets the metric key and dimensions of the metric line to the pre-serialized ones of the
+     * {@link MetricSeries}, so that they are not normalized again. The metric line uses the
+     * pre-configuration that the series was created with, instead of the one of this builder.
+     *
+     * @param series The metric series of the metric line.
+     * @return A {@link SeriesTypeStep}.
+     * @throws MetricException if the series is {@code null}.
+     */
+    SeriesTypeStep series(MetricSeries series) throws MetricException;
+  }
+
+  /** A {@link MetricKeyStep} that can be reset and used to create another metric line. */
+  interface ReusableMetricKeyStep extends MetricKeyStep {
+
+    /**
+     * Discards the metric key, dimensions, type, value and timestamp set for the previous line. The
+     * pre-configuration is kept.
+     *
+     * @return This {@link ReusableMetricKeyStep}, ready to create the next metric line.
+     */
+    ReusableMetricKeyStep reset();
+  }
+
+  /** Interface to decide which type a metric line of a {@link MetricSeries} is. */
+  interface SeriesTypeStep {
+
+    /**
+     * Sets the metric line type to gauge (summary or single value).
+     *
+     * @return A {@link GaugeStep} that can be used to set the gauge value.
+     */
+    GaugeStep gauge();
+
+    /**
+     * Sets the metric line type to counter.
+     *
+     * @return A {@link CounterStep} that can be used to set the delta value.
+     */
+    CounterStep count();
   }
 
   /** Interface to set the dimensions of the metric and to decide which type it is. */
@@ -64,6 +153,36 @@ public interface MetricLineBuilder {
      */
     TypeStep dimension(String key, String value) throws MetricException;
 
+    /**
+     * Sets a dimension of the metric line from character sequences, e.g. slices of a parsed buffer
+     * or {@code char[]} ranges wrapped with {@link java.nio.CharBuffer#wrap(char[], int, int)}. The
+     * key and value will be normalized. If a value is already present for that key, it will be
+     * overwritten.
+     *
+     * <p>Values that do not need to be normalized are not copied until the line is serialized, so
+     * they must not be modified before the line is built.
+     *
+     * @param key dimension key.
+     * @param value dimension value.
+     * @return A {@link TypeStep}.
+     * @throws MetricException if the dimension limit of {@value
+     *     MetricLineConstants.Limits#MAX_DIMENSIONS_COUNT} would be exceeded after adding this
+     *     dimension.
+     */
+    TypeStep dimension(CharSequence key, CharSequence value) throws MetricException;
+
+    /**
+     * Sets an already normalized {@link Dimension} of the metric line. Key and value are not
+     * validated again. If a value is already present for that key, it will be overwritten.
+     *
+     * @param dimension The normalized dimension.
+     * @return A {@link TypeStep}.
+     * @throws MetricException if the dimension limit of {@value
+     *     MetricLineConstants.Limits#MAX_DIMENSIONS_COUNT} would be exceeded after adding this
+     *     dimension.
+     */
+    TypeStep dimension(Dimension dimension) throws MetricException;
+
     /**
      * Sets multiple dimensions (see {@link TypeStep#dimension}). Duplicate keys will be
      * overwritten.
@@ -154,6 +273,16 @@ public interface MetricLineBuilder {
      * @return A {@link BuildStep} that can be used to serialize the metric line.
      */
     BuildStep timestamp(Instant timestamp);
+
+    /**
+     * Sets the (optional) timestamp of the data point. Prefer this method over {@link
+     * #timestamp(Instant)} if the time is already available as epoch milliseconds (e.g. from {@link
+     * System#currentTimeMillis()}), as no {@link Instant} has to be created.
+     *
+     * @param epochMillis The timestamp in milliseconds since the epoch (1970-01-01T00:00:00Z).
+     * @return A {@link BuildStep} that can be used to serialize the metric line.
+     */
+    BuildStep timestamp(long epochMillis);
   }
 
   interface BuildStep {
@@ -165,6 +294,56 @@ public interface MetricLineBuilder {
      *     MetricLineConstants.Limits#MAX_LINE_LENGTH} would be reached.
      */
     String build() throws MetricException;
+
+    /**
+     * Serialize the metric line with all normalizations applied and append it to the given {@link
+     * Appendable}, without creating an intermediate {@link String}. No line separator is appended.
+     *
+     * @param target The {@link Appendable} (e.g. a {@link StringBuilder} or a {@link
+     *     java.io.Writer}) that the metric line is appended to.
+     * @throws MetricException if the max line length limit of {@value
+     *     MetricLineConstants.Limits#MAX_LINE_LENGTH} would be reached. Nothing is appended in that
+     *     case.
+     * @throws IOException if appending to the {@code target} fails.
+     */
+    void build(Appendable target) throws MetricException, IOException;
+
+    /**
+     * Serialize the metric line with all normalizations applied and write it to the given {@link
+     * CharBuffer}, starting at its current position. No line separator is written.
+     *
+     * @param target The {@link CharBuffer} that the metric line is written to.
+     * @return The number of chars written.
+     * @throws MetricException if the max line length limit of {@value
+     *     MetricLineConstants.Limits#MAX_LINE_LENGTH} would be reached. Nothing is written in that
+     *     case.
+     * @throws java.nio.BufferOverflowException if the {@code target} does not have enough space
+     *     remaining to hold the metric line. Nothing is written in that case.
+     */
+    int writeTo(CharBuffer target) throws MetricException;
+
+    /**
+     * Serialize the metric line with all normalizations applied and write it UTF-8 encoded to the
+     * given {@link ByteBuffer}, starting at its current position. No line separator is written.
+     *
+     * @param target The {@link ByteBuffer} that the encoded metric line is written to.
+     * @return The number of bytes written.
+     * @throws MetricException if the max line length limit of {@value
+     *     MetricLineConstants.Limits#MAX_LINE_LENGTH} would be reached. Nothing is written in that
+     *     case.
+     * @throws java.nio.BufferOverflowException if the {@code target} does not have enough space
+     *     remaining to hold the encoded metric line. Nothing is written in that case.
+     */
+    int writeUtf8(ByteBuffer target) throws MetricException;
+
+    /**
+     * Serialize the metric line with all normalizations applied and encode it as UTF-8.
+     *
+     * @return The UTF-8 encoded metric line.
+     * @throws MetricException if the max line length limit of {@value
+     *     MetricLineConstants.Limits#MAX_LINE_LENGTH} would be reached.
+     */
+    byte[] buildUtf8() throws MetricException;
   }
 
   interface MetadataStep {
@@ -200,8 +379,56 @@ public interface MetricLineBuilder {
      * Serializes the metadata line after normalization of provided properties.
      *
      * @return The metadata line as a {@link String} if properties are set, and {@code null}
-     *     otherwise.
+     *     otherwise or if the {@link MetadataRegistry} of the pre-configuration skipped the line.
      */
     String build();
+
+    /**
+     * Serializes the metadata line after normalization of provided properties and appends it to the
+     * given {@link Appendable}, without creating an intermediate {@link String}. No line separator
+     * is appended.
+     *
+     * @param target The {@link Appendable} (e.g. a {@link StringBuilder} or a {@link
+     *     java.io.Writer}) that the metadata line is appended to.
+     * @return {@code true} if properties are set and the metadata line was appended, and {@code
+     *     false} otherwise or if the {@link MetadataRegistry} of the pre-configuration skipped the
+     *     line.
+     * @throws IOException if appending to the {@code target} fails.
+     */
+    boolean build(Appendable target) throws IOException;
+
+    /**
+     * Serializes the metadata line after normalization of provided properties and writes it to the
+     * given {@link CharBuffer}, starting at its current position. No line separator is written.
+     *
+     * @param target The {@link CharBuffer} that the metadata line is written to.
+     * @return The number of chars written, which is {@code 0} if no properties are set or the
+     *     {@link MetadataRegistry} of the pre-configuration skipped the line.
+     * @throws java.nio.BufferOverflowException if the {@code target} does not have enough space
+     *     remaining to hold the metadata line. Nothing is written in that case.
+     */
+    int writeTo(CharBuffer target);
+
+    /**
+     * Serializes the metadata line after normalization of provided properties and writes it UTF-8
+     * encoded to the given {@link ByteBuffer}, starting at its current position. No line separator
+     * is written.
+     *
+     * @param target The {@link ByteBuffer} that the encoded metadata line is written to.
+     * @return The number of bytes written, which is {@code 0} if no properties are set or the
+     *     {@link MetadataRegistry} of the pre-configuration skipped the line.
+     * @throws java.nio.BufferOverflowException if the {@code target} does not have enough space
+     *     remaining to hold the encoded metadata line. Nothing is written in that case.
+     */
+    int writeUtf8(ByteBuffer target);
+
+    /**
+     * Serializes the metadata line after normalization of provided properties and encodes it as
+     * UTF-8.
+     *
+     * @return The UTF-8 encoded metadata line if properties are set, and {@code null} otherwise or
+     *     if the {@link MetadataRegistry} of the pre-configuration skipped the line.
+     */
+    byte[] buildUtf8();
   }
 }
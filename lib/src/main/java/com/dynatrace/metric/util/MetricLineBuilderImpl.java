@@ -16,16 +16,20 @@ package com.dynatrace.metric.util;
 import static com.dynatrace.metric.util.MetricLineConstants.ValidationMessages.PREFIX_STRING;
 
 import com.dynatrace.metric.util.MetricLineConstants.ValidationMessages;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.time.Instant;
-import java.time.ZoneOffset;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.logging.Logger;
 
 class MetricLineBuilderImpl
-    implements MetricLineBuilder.MetricKeyStep,
+    implements MetricLineBuilder.ReusableMetricKeyStep,
+        MetricLineBuilder.SeriesTypeStep,
         MetricLineBuilder.TypeStep,
         MetricLineBuilder.GaugeStep,
         MetricLineBuilder.CounterStep,
@@ -39,22 +43,32 @@ class MetricLineBuilderImpl
   private static final int MINIMUM_CAPACITY = 72; // arbitrary, still better than 16
 
   private final MetricLinePreConfiguration preConfig;
-  private final Map<String, String> dimensions = new HashMap<>();
+  private final DimensionList dimensions = new DimensionList();
+  // If set, the pre-serialized metric key and dimensions of the series are used for the line.
+  private MetricSeries series;
   private String metricKey;
   private String type;
+  private byte[] typeUtf8;
   private int descriptorLength;
   private int dimensionCount;
+  // Set if a dimension overrides a default dimension, in which case the pre-serialized default
+  // dimensions cannot be copied to the line as a whole.
+  private boolean defaultDimensionOverridden;
+  // The index in the serialized line where the default dimensions end.
+  private int defaultDimensionsEnd;
 
   // Used to hold the payload portion of the line (' gauge,5 <timestamp>')
-  private StringBuilder payloadBuilder;
+  private final StringBuilder payloadBuilder = new StringBuilder(MINIMUM_CAPACITY);
+  // Used to serialize the whole line. Created on the first build and reused afterwards.
+  private StringBuilder lineBuilder;
+  // Used to hand the serialized line to Writers without creating a String.
+  private char[] writeBuffer;
+  // Reused for normalizing dimension values, which are not cached like keys.
+  private final NormalizationResult dimensionValueResult = new NormalizationResult();
 
   private MetricLineBuilderImpl(MetricLinePreConfiguration preConfig) {
     this.preConfig = preConfig;
-
-    this.dimensionCount =
-        this.preConfig.getDefaultDimensions().size()
-            + this.preConfig.getDynatraceMetadataDimensions().size();
-    this.descriptorLength = this.preConfig.preConfigSerializedLength();
+    reset();
   }
 
   /**
@@ -68,6 +82,65 @@ class MetricLineBuilderImpl
     return new MetricLineBuilderImpl(preConfig);
   }
 
+  /**
+   * Create a new {@link MetricLineBuilder.ReusableMetricKeyStep} that can be used to create
+   * multiple metric lines, one after another.
+   *
+   * @param preConfig The pre-configuration object containing shared data.
+   * @return The created {@link MetricLineBuilder.ReusableMetricKeyStep} instance, with the given
+   *     {@link MetricLinePreConfiguration}.
+   */
+  static MetricLineBuilder.ReusableMetricKeyStep reusableBuilder(
+      MetricLinePreConfiguration preConfig) {
+    return new MetricLineBuilderImpl(preConfig);
+  }
+
+  /**
+   * Create a new {@link MetricSeries} by normalizing and serializing the metric key and dimensions
+   * together with the pre-configured dimensions.
+   *
+   * @param preConfig The pre-configuration object containing shared data.
+   * @param key The metric key.
+   * @param dimensions The dimensions of the series.
+   * @return The created {@link MetricSeries}.
+   * @throws MetricException if the metric key is invalid, if there are too many dimensions, or if
+   *     the serialized series exceeds the line length limit of {@value
+   *     MetricLineConstants.Limits#MAX_LINE_LENGTH}.
+   */
+  static MetricSeries series(
+      MetricLinePreConfiguration preConfig, String key, Map<String, String> dimensions)
+      throws MetricException {
+    MetricLineBuilderImpl builder = new MetricLineBuilderImpl(preConfig);
+    builder.metricKey(key).dimensions(dimensions);
+
+    StringBuilder descriptor = new StringBuilder(builder.descriptorLength);
+    builder.serializeDescriptor(descriptor);
+    if (descriptor.length() > MetricLineConstants.Limits.MAX_LINE_LENGTH) {
+      throw new MetricException(
+          String.format(
+              ValidationMessages.MAX_LINE_LENGTH_REACHED_WITH_METRIC_KEY_MESSAGE,
+              builder.metricKey));
+    }
+    return new MetricSeries(builder.metricKey, descriptor.toString());
+  }
+
+  @Override
+  public MetricLineBuilder.ReusableMetricKeyStep reset() {
+    this.series = null;
+    this.metricKey = null;
+    this.type = null;
+    this.typeUtf8 = null;
+    this.dimensions.clear();
+    this.defaultDimensionOverridden = false;
+    this.payloadBuilder.setLength(0);
+
+    this.dimensionCount =
+        this.preConfig.getDefaultDimensions().size()
+            + this.preConfig.getDynatraceMetadataDimensions().size();
+    this.descriptorLength = this.preConfig.preConfigSerializedLength();
+    return this;
+  }
+
   @Override
   public MetricLineBuilder.TypeStep metricKey(String key) throws MetricException {
     if (StringValueValidator.isNullOrEmpty(key)) {
@@ -81,7 +154,8 @@ class MetricLineBuilderImpl
 
     // to avoid unnecessary object creation check if normalization is even required
     if (MetricKeyValidator.normalizationRequired(this.metricKey)) {
-      NormalizationResult normalizationResult = Normalizer.normalizeMetricKey(this.metricKey);
+      NormalizationResult normalizationResult =
+          NormalizationCache.METRIC_KEYS.normalize(this.metricKey);
 
       if (normalizationResult.messageType() == NormalizationResult.MessageType.WARNING) {
         normalizationLogger.logMetricKeyMessage(normalizationResult);
@@ -102,6 +176,46 @@ class MetricLineBuilderImpl
     return this;
   }
 
+  @Override
+  public MetricLineBuilder.TypeStep metricKey(CharSequence key) throws MetricException {
+    // the metric key is kept as a String, so the sequence is copied once here
+    return metricKey(key == null ? null : key.toString());
+  }
+
+  @Override
+  public MetricLineBuilder.TypeStep normalizedMetricKey(MetricKey key) throws MetricException {
+    if (key == null) {
+      throw new MetricException(ValidationMessages.METRIC_EMPTY_KEY_MESSAGE);
+    }
+
+    final String prefix = this.preConfig.getPrefix();
+    if (StringValueValidator.isNullOrEmpty(prefix)) {
+      this.metricKey = key.toString();
+    } else if (this.preConfig.isPrefixNormalized()
+        && prefix.length() + Character.charCount(CodePoints.DOT) + key.length()
+            <= MetricLineConstants.Limits.MAX_METRIC_KEY_LENGTH) {
+      // a valid prefix followed by a valid key is valid as well, as long as it is not too long
+      this.metricKey = prefix + CodePoints.DOT_AS_STRING + key.toString();
+    } else {
+      return metricKey(key.toString());
+    }
+
+    this.descriptorLength += this.metricKey.length();
+    return this;
+  }
+
+  @Override
+  public MetricLineBuilder.SeriesTypeStep series(MetricSeries series) throws MetricException {
+    if (series == null) {
+      throw new MetricException(ValidationMessages.METRIC_SERIES_NULL_MESSAGE);
+    }
+
+    this.series = series;
+    this.metricKey = series.getMetricKey();
+    this.descriptorLength = series.descriptor().length();
+    return this;
+  }
+
   @Override
   public MetricLineBuilder.TypeStep dimension(String key, String value) throws MetricException {
     if (StringValueValidator.isNullOrEmpty(key)) {
@@ -113,15 +227,57 @@ class MetricLineBuilderImpl
       return this;
     }
 
+    // recurring pairs that are valid as they are have already been serialized
+    DimensionInterner.Segment segment = DimensionInterner.SHARED.get(key, value);
+    if (segment != null) {
+      return dimension(segment.key(), segment.value(), segment.serialized());
+    }
+
+    return normalizeAndAddDimension(key, value);
+  }
+
+  @Override
+  public MetricLineBuilder.TypeStep dimension(CharSequence key, CharSequence value)
+      throws MetricException {
+    if (value == null || value instanceof String) {
+      return dimension(key == null ? null : key.toString(), (String) value);
+    }
+
+    if (StringValueValidator.isNullOrEmpty(key)) {
+      logger.warning(
+          () ->
+              String.format(
+                  ValidationMessages.DIMENSION_DROPPED_KEY_EMPTY_WITH_METRIC_KEY_MESSAGE,
+                  this.metricKey));
+      return this;
+    }
+
+    // the key is looked up in the default and metadata dimensions, so it is needed as String
+    return normalizeAndAddDimension(key.toString(), value);
+  }
+
+  /**
+   * Normalizes the dimension and adds it to the line, see {@link #dimension(String, String)}.
+   * Values that do not need to be normalized are added as they are.
+   *
+   * @param key The non-empty dimension key.
+   * @param value The dimension value.
+   * @return this
+   * @throws MetricException see {@link #tryAddDimension(String, CharSequence, String, boolean)}.
+   */
+  private MetricLineBuilder.TypeStep normalizeAndAddDimension(String key, CharSequence value)
+      throws MetricException {
     String normalizedKey = key;
+    boolean normalized = false;
 
     // to avoid unnecessary object creation check if normalization is even required
     if (DimensionKeyValidator.normalizationRequired(key)) {
-      NormalizationResult normalizeKeyResult = Normalizer.normalizeDimensionKey(key);
+      NormalizationResult normalizeKeyResult = NormalizationCache.DIMENSION_KEYS.normalize(key);
 
       normalizedKey = normalizeKeyResult.getResult();
       if (normalizeKeyResult.messageType() != NormalizationResult.MessageType.NONE) {
         normalizationLogger.logDimensionKeyMessage(this.metricKey, normalizeKeyResult);
+        normalized = true;
       }
     }
 
@@ -143,22 +299,89 @@ class MetricLineBuilderImpl
 
     NormalizationResult normalizeValueResult =
         Normalizer.normalizeDimensionValue(
-            value, MetricLineConstants.Limits.MAX_DIMENSION_VALUE_LENGTH);
+            value, MetricLineConstants.Limits.MAX_DIMENSION_VALUE_LENGTH, dimensionValueResult);
 
     if (normalizeValueResult.messageType() != NormalizationResult.MessageType.NONE) {
       normalizationLogger.logDimensionValueMessage(
           this.metricKey, normalizedKey, normalizeValueResult);
+      normalized = true;
     }
 
-    // only increase the dimensionCount if this key doesn't already exist in the
-    // defaultDimensions to preserve a valid dimensionsCount.
-    tryAddDimension(
+    // only pairs without normalization messages are interned, so that no messages are skipped
+    DimensionInterner.Segment segment =
+        normalized
+                || !(value instanceof String)
+                || StringValueValidator.isNullOrEmpty(normalizedKey)
+            ? null
+            : DimensionInterner.SHARED.admit(
+                key, (String) value, normalizedKey, normalizeValueResult.getResult());
+    addNormalizedDimension(
         normalizedKey,
-        normalizeValueResult.getResult(),
-        !this.preConfig.getDefaultDimensions().containsKey(normalizedKey));
+        normalizeValueResult.getResultCharSequence(),
+        segment == null ? null : segment.serialized());
+    return this;
+  }
+
+  @Override
+  public MetricLineBuilder.TypeStep dimension(Dimension dimension) throws MetricException {
+    if (dimension == null) {
+      logger.warning(
+          () ->
+              String.format(
+                  ValidationMessages.DIMENSION_DROPPED_KEY_EMPTY_WITH_METRIC_KEY_MESSAGE,
+                  this.metricKey));
+      return this;
+    }
+
+    return dimension(dimension.getKey(), dimension.getValue(), dimension.segment());
+  }
+
+  /**
+   * Adds an already normalized dimension, unless its key is one of the Dynatrace metadata dimension
+   * keys (see {@link #dimension(String, String)}).
+   *
+   * @param normalizedKey The dimension key.
+   * @param normalizedValue The dimension value.
+   * @param segment The pre-serialized {@code ,key=value} segment, or {@code null}.
+   * @return this
+   * @throws MetricException see {@link #tryAddDimension(String, CharSequence, String, boolean)}.
+   */
+  private MetricLineBuilder.TypeStep dimension(
+      String normalizedKey, String normalizedValue, String segment) throws MetricException {
+    if (this.preConfig.getDynatraceMetadataDimensions().containsKey(normalizedKey)) {
+      logger.info(
+          () ->
+              String.format(
+                  ValidationMessages.DIMENSION_DROPPED_KEY_OVERWRITTEN_WITH_METRIC_KEY_MESSAGE,
+                  this.metricKey,
+                  normalizedValue,
+                  normalizedKey));
+      return this;
+    }
+
+    addNormalizedDimension(normalizedKey, normalizedValue, segment);
     return this;
   }
 
+  /**
+   * Adds the normalized dimension to the line, keeping track of whether it overrides one of the
+   * default dimensions.
+   *
+   * @param normalizedKey The dimension key.
+   * @param normalizedValue The dimension value.
+   * @param segment The pre-serialized {@code ,key=value} segment, or {@code null}.
+   * @throws MetricException see {@link #tryAddDimension(String, CharSequence, String, boolean)}.
+   */
+  private void addNormalizedDimension(
+      String normalizedKey, CharSequence normalizedValue, String segment) throws MetricException {
+    // only increase the dimensionCount if this key doesn't already exist in the
+    // defaultDimensions to preserve a valid dimensionsCount.
+    boolean overridesDefaultDimension =
+        this.preConfig.getDefaultDimensions().containsKey(normalizedKey);
+    tryAddDimension(normalizedKey, normalizedValue, segment, !overridesDefaultDimension);
+    this.defaultDimensionOverridden |= overridesDefaultDimension;
+  }
+
   @Override
   public MetricLineBuilder.TypeStep dimensions(Map<String, String> dimensions)
       throws MetricException {
@@ -182,12 +405,14 @@ class MetricLineBuilderImpl
   @Override
   public MetricLineBuilder.GaugeStep gauge() {
     this.type = MetricLineConstants.PayloadGauge.GAUGE;
+    this.typeUtf8 = MetricLineConstants.PayloadGauge.GAUGE_UTF8;
     return this;
   }
 
   @Override
   public MetricLineBuilder.CounterStep count() {
     this.type = MetricLineConstants.PayloadCount.COUNT;
+    this.typeUtf8 = MetricLineConstants.PayloadCount.COUNT_UTF8;
     return this;
   }
 
@@ -196,19 +421,20 @@ class MetricLineBuilderImpl
       double min, double max, double sum, long count) throws MetricException {
     BooleanResultMessage result = NumberValueValidator.isSummaryValid(min, max, sum, count);
     if (!result.isValid()) {
-      throw new MetricException(String.format(PREFIX_STRING, this.metricKey, result.getMessage()));
+      throw new MetricException(
+          String.format(
+              PREFIX_STRING,
+              this.metricKey,
+              NumberValueValidator.summaryMessage(result, min, max, sum, count)));
     }
 
-    this.payloadBuilder =
-        new StringBuilder(MINIMUM_CAPACITY)
-            .append(MetricLineConstants.PayloadGauge.MIN)
-            .append(Normalizer.doubleToString(min))
-            .append(MetricLineConstants.PayloadGauge.MAX)
-            .append(Normalizer.doubleToString(max))
-            .append(MetricLineConstants.PayloadGauge.SUM)
-            .append(Normalizer.doubleToString(sum))
-            .append(MetricLineConstants.PayloadGauge.COUNT)
-            .append(count);
+    this.payloadBuilder.setLength(0);
+    this.payloadBuilder.append(MetricLineConstants.PayloadGauge.MIN);
+    DoubleFormatter.append(this.payloadBuilder, min).append(MetricLineConstants.PayloadGauge.MAX);
+    DoubleFormatter.append(this.payloadBuilder, max).append(MetricLineConstants.PayloadGauge.SUM);
+    DoubleFormatter.append(this.payloadBuilder, sum)
+        .append(MetricLineConstants.PayloadGauge.COUNT)
+        .append(count);
 
     return this;
   }
@@ -217,11 +443,13 @@ class MetricLineBuilderImpl
   public MetricLineBuilder.TimestampOrBuildStep value(double value) throws MetricException {
     BooleanResultMessage result = NumberValueValidator.isValueValid(value);
     if (!result.isValid()) {
-      throw new MetricException(String.format(PREFIX_STRING, this.metricKey, result.getMessage()));
+      throw new MetricException(
+          String.format(
+              PREFIX_STRING, this.metricKey, NumberValueValidator.valueMessage(result, value)));
     }
 
-    this.payloadBuilder =
-        new StringBuilder(MINIMUM_CAPACITY).append(Normalizer.doubleToString(value));
+    this.payloadBuilder.setLength(0);
+    DoubleFormatter.append(this.payloadBuilder, value);
     return this;
   }
 
@@ -229,13 +457,14 @@ class MetricLineBuilderImpl
   public MetricLineBuilder.TimestampOrBuildStep delta(double delta) throws MetricException {
     BooleanResultMessage result = NumberValueValidator.isValueValid(delta);
     if (!result.isValid()) {
-      throw new MetricException(String.format(PREFIX_STRING, this.metricKey, result.getMessage()));
+      throw new MetricException(
+          String.format(
+              PREFIX_STRING, this.metricKey, NumberValueValidator.valueMessage(result, delta)));
     }
 
-    this.payloadBuilder =
-        new StringBuilder(MINIMUM_CAPACITY)
-            .append(MetricLineConstants.PayloadCount.DELTA)
-            .append(Normalizer.doubleToString(delta));
+    this.payloadBuilder.setLength(0);
+    DoubleFormatter.append(
+        this.payloadBuilder.append(MetricLineConstants.PayloadCount.DELTA), delta);
     return this;
   }
 
@@ -247,21 +476,11 @@ class MetricLineBuilderImpl
       return this;
     }
 
-    int year = timestamp.atZone(ZoneOffset.UTC).getYear();
-    if (year < 2000 || year > 3000) {
-      if (timestampWarningCounter.getAndIncrement() == 0) {
-        logger.warning(
-            () ->
-                String.format(
-                    ValidationMessages.TIMESTAMP_OUT_OF_RANGE_MESSAGE,
-                    this.metricKey,
-                    timestamp,
-                    TIMESTAMP_WARNING_THROTTLE_FACTOR));
-      }
-      timestampWarningCounter.compareAndSet(TIMESTAMP_WARNING_THROTTLE_FACTOR, 0);
-
-      // do not set the timestamp, metric will be exported without timestamp and the current
-      // server timestamp is added upon ingestion.
+    // compare the seconds first, as converting far away instants to millis would overflow.
+    long epochSeconds = timestamp.getEpochSecond();
+    if (epochSeconds < MetricLineConstants.Limits.MIN_TIMESTAMP_EPOCH_MILLIS / 1000
+        || epochSeconds >= MetricLineConstants.Limits.MAX_TIMESTAMP_EPOCH_MILLIS / 1000) {
+      logTimestampOutOfRange(this.metricKey, () -> timestamp);
       return this;
     }
 
@@ -269,6 +488,47 @@ class MetricLineBuilderImpl
     return this;
   }
 
+  @Override
+  public MetricLineBuilder.BuildStep timestamp(long epochMillis) {
+    if (!isTimestampInRange(epochMillis)) {
+      logTimestampOutOfRange(this.metricKey, () -> Instant.ofEpochMilli(epochMillis));
+      return this;
+    }
+
+    this.payloadBuilder.appendCodePoint(CodePoints.BLANK).append(epochMillis);
+    return this;
+  }
+
+  /**
+   * @param epochMillis The timestamp in milliseconds since the epoch.
+   * @return {@code true} if the timestamp is between the years 2000 and 3000 (inclusive).
+   */
+  static boolean isTimestampInRange(long epochMillis) {
+    return epochMillis >= MetricLineConstants.Limits.MIN_TIMESTAMP_EPOCH_MILLIS
+        && epochMillis < MetricLineConstants.Limits.MAX_TIMESTAMP_EPOCH_MILLIS;
+  }
+
+  /**
+   * Logs that the timestamp is not set because it is before the year 2000 or after the year 3000.
+   * Only one out of every {@value TIMESTAMP_WARNING_THROTTLE_FACTOR} of these messages is logged.
+   * The metric is exported without timestamp, and the current server time is added upon ingestion.
+   *
+   * @param metricKey The metric key of the metric line.
+   * @param timestamp Supplies the timestamp for the log message, only called if it is logged.
+   */
+  static void logTimestampOutOfRange(String metricKey, Supplier<Instant> timestamp) {
+    if (timestampWarningCounter.getAndIncrement() == 0) {
+      logger.warning(
+          () ->
+              String.format(
+                  ValidationMessages.TIMESTAMP_OUT_OF_RANGE_MESSAGE,
+                  metricKey,
+                  timestamp.get(),
+                  TIMESTAMP_WARNING_THROTTLE_FACTOR));
+    }
+    timestampWarningCounter.compareAndSet(TIMESTAMP_WARNING_THROTTLE_FACTOR, 0);
+  }
+
   @Override
   public MetricLineBuilder.MetadataStep metadata() {
     return new MetadataLineBuilderImpl();
@@ -276,27 +536,148 @@ class MetricLineBuilderImpl
 
   @Override
   public String build() throws MetricException {
-    StringBuilder lineBuilder =
-        new StringBuilder(
-            this.descriptorLength
-                + Character.charCount(CodePoints.BLANK)
-                + this.type.length()
-                + Character.charCount(CodePoints.COMMA)
-                + this.payloadBuilder.length());
+    return serialize().toString();
+  }
 
-    // serialize metric key
-    lineBuilder.append(this.metricKey);
+  @Override
+  public void build(Appendable target) throws MetricException, IOException {
+    appendTo(serialize(), target);
+  }
 
-    // serialize dimensions
-    // To avoid merging expenses of keys that occur in multiple dimension-maps, we already filtered
-    // all double entries that are overwritten by higher-order importance. To exclude remaining
-    // lower-order importance of defaultDimensions, we ignore all keys that are also existing in the
-    // dimensions-map (defaultDimensions < dimensions < dynatraceMetadataDimensions).
-    serializeDimensionMapAndAppend(
-        lineBuilder, this.preConfig.getDefaultDimensions(), this.dimensions::containsKey);
-    serializeDimensionMapAndAppend(lineBuilder, this.dimensions, (key) -> false);
-    serializeDimensionMapAndAppend(
-        lineBuilder, this.preConfig.getDynatraceMetadataDimensions(), (key) -> false);
+  @Override
+  public int writeTo(CharBuffer target) throws MetricException {
+    return writeTo(serialize(), target);
+  }
+
+  @Override
+  public int writeUtf8(ByteBuffer target) throws MetricException {
+    StringBuilder line = serialize();
+    int length = utf8Length(line);
+    if (target.remaining() < length) {
+      throw new BufferOverflowException();
+    }
+
+    encodeUtf8(line, target);
+    return length;
+  }
+
+  @Override
+  public byte[] buildUtf8() throws MetricException {
+    StringBuilder line = serialize();
+    byte[] bytes = new byte[utf8Length(line)];
+    encodeUtf8(line, ByteBuffer.wrap(bytes));
+    return bytes;
+  }
+
+  /**
+   * @param line The serialized line.
+   * @return The index in the serialized line where the type (e.g. ' gauge,') starts.
+   */
+  private int descriptorEnd(StringBuilder line) {
+    return line.length()
+        - Character.charCount(CodePoints.BLANK)
+        - this.type.length()
+        - Character.charCount(CodePoints.COMMA)
+        - this.payloadBuilder.length();
+  }
+
+  /**
+   * @param line The serialized line.
+   * @return The index in the serialized line where the Dynatrace metadata dimensions start.
+   */
+  private int dynatraceMetadataDimensionsStart(StringBuilder line) {
+    return descriptorEnd(line) - this.preConfig.serializedDynatraceMetadataDimensions().length;
+  }
+
+  /**
+   * @param line The serialized line.
+   * @return The number of bytes the UTF-8 encoded line takes up.
+   */
+  private int utf8Length(StringBuilder line) {
+    if (this.series != null) {
+      return this.series.descriptorUtf8().length
+          + Character.charCount(CodePoints.BLANK)
+          + this.typeUtf8.length
+          + Character.charCount(CodePoints.COMMA)
+          + this.payloadBuilder.length();
+    }
+
+    final int metricKeyEnd = this.metricKey.length();
+    final int defaultDimensionsLength =
+        this.defaultDimensionOverridden
+            ? Utf8.encodedLength(line, metricKeyEnd, this.defaultDimensionsEnd)
+            : this.preConfig.serializedDefaultDimensionsUtf8().length;
+
+    // the type and the payload only consist of ASCII characters
+    return Utf8.encodedLength(line, 0, metricKeyEnd)
+        + defaultDimensionsLength
+        + Utf8.encodedLength(
+            line, this.defaultDimensionsEnd, dynatraceMetadataDimensionsStart(line))
+        + this.preConfig.serializedDynatraceMetadataDimensionsUtf8().length
+        + Character.charCount(CodePoints.BLANK)
+        + this.typeUtf8.length
+        + Character.charCount(CodePoints.COMMA)
+        + this.payloadBuilder.length();
+  }
+
+  /**
+   * Encodes the metric key and dimensions of the serialized line as UTF-8, and writes the
+   * pre-encoded type and the ASCII payload after it. The pre-configured dimensions are copied from
+   * their pre-encoded form, unless a dimension overrides one of the default dimensions. Lines of a
+   * {@link MetricSeries} copy its pre-encoded metric key and dimensions.
+   *
+   * @param line The serialized line.
+   * @param target The {@link ByteBuffer} that the encoded line is written to.
+   */
+  private void encodeUtf8(StringBuilder line, ByteBuffer target) {
+    if (this.series != null) {
+      target.put(this.series.descriptorUtf8());
+    } else {
+      final int metricKeyEnd = this.metricKey.length();
+      Utf8.encode(line, 0, metricKeyEnd, target);
+      if (this.defaultDimensionOverridden) {
+        Utf8.encode(line, metricKeyEnd, this.defaultDimensionsEnd, target);
+      } else {
+        target.put(this.preConfig.serializedDefaultDimensionsUtf8());
+      }
+      Utf8.encode(
+          line, this.defaultDimensionsEnd, dynatraceMetadataDimensionsStart(line), target);
+      target.put(this.preConfig.serializedDynatraceMetadataDimensionsUtf8());
+    }
+
+    target.put((byte) CodePoints.BLANK).put(this.typeUtf8).put((byte) CodePoints.COMMA);
+    Utf8.encodeAscii(this.payloadBuilder, target);
+  }
+
+  /**
+   * Serializes the metric line into the (reused) line builder.
+   *
+   * @return The line builder holding the serialized metric line.
+   * @throws MetricException if the max line length limit of {@value
+   *     MetricLineConstants.Limits#MAX_LINE_LENGTH} would be reached.
+   */
+  private StringBuilder serialize() throws MetricException {
+    int expectedLength =
+        this.descriptorLength
+            + Character.charCount(CodePoints.BLANK)
+            + this.type.length()
+            + Character.charCount(CodePoints.COMMA)
+            + this.payloadBuilder.length();
+
+    StringBuilder lineBuilder = this.lineBuilder;
+    if (lineBuilder == null) {
+      lineBuilder = new StringBuilder(expectedLength);
+      this.lineBuilder = lineBuilder;
+    } else {
+      lineBuilder.setLength(0);
+      lineBuilder.ensureCapacity(expectedLength);
+    }
+
+    if (this.series != null) {
+      lineBuilder.append(this.series.descriptor());
+    } else {
+      serializeDescriptor(lineBuilder);
+    }
 
     // serialize type and payload
     lineBuilder // prefix.metric.key,dim1=val1,...
@@ -311,7 +692,83 @@ class MetricLineBuilderImpl
               ValidationMessages.MAX_LINE_LENGTH_REACHED_WITH_METRIC_KEY_MESSAGE, this.metricKey));
     }
 
-    return lineBuilder.toString();
+    return lineBuilder;
+  }
+
+  /**
+   * Serializes the metric key and the dimensions, and appends them to the provided {@link
+   * StringBuilder sb}.
+   *
+   * @param sb The StringBuilder where the metric key and dimensions should be appended to.
+   */
+  private void serializeDescriptor(StringBuilder sb) {
+    // serialize metric key
+    sb.append(this.metricKey);
+
+    // serialize dimensions
+    // To avoid merging expenses of keys that occur in multiple dimension-maps, we already filtered
+    // all double entries that are overwritten by higher-order importance. To exclude remaining
+    // lower-order importance of defaultDimensions, we ignore all keys that are also existing in the
+    // dimensions-map (defaultDimensions < dimensions < dynatraceMetadataDimensions). As long as
+    // none of the default dimensions is overridden, the pre-serialized block is copied as a whole.
+    if (this.defaultDimensionOverridden) {
+      serializeDefaultDimensionsAndAppend(sb);
+    } else {
+      sb.append(this.preConfig.serializedDefaultDimensions());
+    }
+    this.defaultDimensionsEnd = sb.length();
+    serializeDimensionsAndAppend(sb);
+    sb.append(this.preConfig.serializedDynatraceMetadataDimensions());
+  }
+
+  /**
+   * Appends the serialized line to the target. {@link StringBuilder StringBuilders} copy the chars
+   * directly, and {@link Writer Writers} are handed a reused char array, so that no intermediate
+   * {@link String} is created for either of them.
+   *
+   * @param line The serialized line.
+   * @param target The {@link Appendable} that the line is appended to.
+   * @throws IOException if appending to the target fails.
+   */
+  private void appendTo(StringBuilder line, Appendable target) throws IOException {
+    if (target instanceof CharBuffer) {
+      writeTo(line, (CharBuffer) target);
+    } else if (target instanceof Writer) {
+      final int length = line.length();
+      if (this.writeBuffer == null || this.writeBuffer.length < length) {
+        this.writeBuffer = new char[length];
+      }
+      line.getChars(0, length, this.writeBuffer, 0);
+      ((Writer) target).write(this.writeBuffer, 0, length);
+    } else {
+      target.append(line);
+    }
+  }
+
+  /**
+   * Writes the serialized line to the target buffer.
+   *
+   * @param line The serialized line.
+   * @param target The {@link CharBuffer} that the line is written to.
+   * @return The number of chars written.
+   * @throws BufferOverflowException if the target does not have enough space remaining.
+   */
+  static int writeTo(StringBuilder line, CharBuffer target) {
+    final int length = line.length();
+    if (target.remaining() < length) {
+      throw new BufferOverflowException();
+    }
+
+    if (target.hasArray()) {
+      final int position = target.position();
+      line.getChars(0, length, target.array(), target.arrayOffset() + position);
+      target.position(position + length);
+    } else {
+      for (int i = 0; i < length; i++) {
+        target.put(line.charAt(i));
+      }
+    }
+    return length;
   }
 
   /**
@@ -321,13 +778,14 @@ class MetricLineBuilderImpl
    *
    * @param normalizedKey The dimension key.
    * @param normalizedValue The dimension value.
+   * @param segment The pre-serialized {@code ,key=value} segment, or {@code null}.
    * @param shouldIncrement A flag that decides, if the dimensionCount should be increased
    * @throws MetricException if the dimension limit of {@value
    *     MetricLineConstants.Limits#MAX_DIMENSIONS_COUNT} would be overflowed after adding this
    *     dimension.
    */
   private void tryAddDimension(
-      String normalizedKey, String normalizedValue, boolean shouldIncrement)
+      String normalizedKey, CharSequence normalizedValue, String segment, boolean shouldIncrement)
       throws MetricException {
     if (StringValueValidator.isNullOrEmpty(normalizedKey)) {
       logger.warning(
@@ -357,44 +815,63 @@ class MetricLineBuilderImpl
             + Character.charCount(CodePoints.DOT)
             + normalizedValue.length()
             + Character.charCount(CodePoints.COMMA);
-    this.dimensions.put(normalizedKey, normalizedValue);
+    this.dimensions.put(normalizedKey, normalizedValue, segment);
+  }
+
+  /**
+   * Serializes the default dimensions that are not overridden by the dimensions of this line, and
+   * appends them to provided {@link StringBuilder sb}. Default dimensions with empty values have
+   * already been reported when the {@link MetricLinePreConfiguration} was built, and are skipped
+   * silently.
+   *
+   * @param sb The StringBuilder where the serialized dimensions should be appended to.
+   */
+  private void serializeDefaultDimensionsAndAppend(StringBuilder sb) {
+    for (Map.Entry<String, String> entry : this.preConfig.getDefaultDimensions().entrySet()) {
+      // The key is going to be serialized with the value of this line, so the default value is
+      // skipped to avoid serializing the key multiple times.
+      if (this.dimensions.containsKey(entry.getKey())
+          || StringValueValidator.isNullOrEmpty(entry.getValue())) {
+        continue;
+      }
+
+      sb.appendCodePoint(CodePoints.COMMA)
+          .append(entry.getKey())
+          .appendCodePoint(CodePoints.EQUALS)
+          .append(entry.getValue());
+    }
   }
 
   /**
-   * Serializes given {@link Map dimensionsToSerialize} if the given {@link Predicate} evaluates to
-   * {@code false}, and appends it to provided {@link StringBuilder sb}.
+   * Serializes the dimensions of this line in the order they were added, and appends them to
+   * provided {@link StringBuilder sb}.
    *
    * @param sb The StringBuilder where the serialized dimensions should be appended to.
-   * @param dimensionsToSerialize The dimensions that should be serialized.
-   * @param shouldBeIgnored A condition which determines for each dimension key, if it should be
-   *     added.
    */
-  private void serializeDimensionMapAndAppend(
-      StringBuilder sb,
-      Map<String, String> dimensionsToSerialize,
-      Predicate<String> shouldBeIgnored) {
-    for (Map.Entry<String, String> entry : dimensionsToSerialize.entrySet()) {
-      // If the provided condition is met, the key-value pair is not serialized, because the same
-      // key has already been serialized or is going to be serialized after. Therefore, this
-      // condition controls that this key isn't serialized multiple times.
-      if (shouldBeIgnored.test(entry.getKey())) {
+  private void serializeDimensionsAndAppend(StringBuilder sb) {
+    for (int i = 0; i < this.dimensions.size(); i++) {
+      final String segment = this.dimensions.segmentAt(i);
+      if (segment != null) {
+        sb.append(segment);
         continue;
       }
 
-      if (StringValueValidator.isNullOrEmpty(entry.getValue())) {
+      final String key = this.dimensions.keyAt(i);
+      final CharSequence value = this.dimensions.valueAt(i);
+      if (StringValueValidator.isNullOrEmpty(value)) {
         logger.warning(
             () ->
                 String.format(
                     ValidationMessages.DIMENSION_NOT_SERIALIZED_OF_EMPTY_VALUE,
                     this.metricKey,
-                    entry.getKey()));
+                    key));
         continue;
       }
 
       sb.appendCodePoint(CodePoints.COMMA)
-          .append(entry.getKey())
+          .append(key)
           .appendCodePoint(CodePoints.EQUALS)
-          .append(entry.getValue());
+          .append(value);
     }
   }
 
@@ -434,6 +911,104 @@ class MetricLineBuilderImpl
 
     @Override
     public String build() {
+      MetadataRegistry.Emission emission = emission();
+      if (emission == null) {
+        return null;
+      }
+      emission.commit();
+      return emission.line().toString();
+    }
+
+    @Override
+    public boolean build(Appendable target) throws IOException {
+      MetadataRegistry.Emission emission = emission();
+      if (emission == null) {
+        return false;
+      }
+      try {
+        appendTo(emission.line(), target);
+      } catch (IOException | RuntimeException e) {
+        emission.rollback();
+        throw e;
+      }
+      emission.commit();
+      return true;
+    }
+
+    @Override
+    public int writeTo(CharBuffer target) {
+      MetadataRegistry.Emission emission = emission();
+      if (emission == null) {
+        return 0;
+      }
+      int length;
+      try {
+        length = MetricLineBuilderImpl.writeTo(emission.line(), target);
+      } catch (RuntimeException e) {
+        emission.rollback();
+        throw e;
+      }
+      emission.commit();
+      return length;
+    }
+
+    @Override
+    public int writeUtf8(ByteBuffer target) {
+      MetadataRegistry.Emission emission = emission();
+      if (emission == null) {
+        return 0;
+      }
+
+      StringBuilder line = emission.line();
+      int length = Utf8.encodedLength(line, 0, line.length());
+      if (target.remaining() < length) {
+        emission.rollback();
+        throw new BufferOverflowException();
+      }
+      Utf8.encode(line, 0, line.length(), target);
+      emission.commit();
+      return length;
+    }
+
+    @Override
+    public byte[] buildUtf8() {
+      MetadataRegistry.Emission emission = emission();
+      if (emission == null) {
+        return null;
+      }
+
+      StringBuilder line = emission.line();
+      byte[] bytes = new byte[Utf8.encodedLength(line, 0, line.length())];
+      Utf8.encode(line, 0, line.length(), ByteBuffer.wrap(bytes));
+      emission.commit();
+      return bytes;
+    }
+
+    /**
+     * Serializes the metadata line, unless the {@link MetadataRegistry} of the pre-configuration
+     * already emitted the same metadata within its refresh period. The emission has to be committed
+     * once the line was written, or rolled back if writing it failed.
+     *
+     * @return The metadata line to emit, or {@code null} if no properties are set or the line does
+     *     not have to be emitted.
+     */
+    private MetadataRegistry.Emission emission() {
+      final MetadataRegistry registry = preConfig.getMetadataRegistry();
+      if (registry == null) {
+        final StringBuilder line = serialize();
+        return line == null ? null : new MetadataRegistry.Emission(line);
+      }
+      return registry.emission(
+          metricKey, type, this.description, this.unit, this.displayName, this::serialize);
+    }
+
+    /**
+     * Serializes the metadata line.
+     *
+     * @return A {@link StringBuilder} holding the metadata line, or {@code null} if no properties
+     *     are set.
+     */
+    private StringBuilder serialize() {
       StringBuilder payload = new StringBuilder(MINIMUM_CAPACITY);
 
       if (this.description != null) {
@@ -557,8 +1132,7 @@ class MetricLineBuilderImpl
           .appendCodePoint(CodePoints.BLANK) // ' '
           .append(type) // gauge
           .appendCodePoint(CodePoints.BLANK) // ' '
-          .append(payload) // dt.meta.unit=Byte, ...
-          .toString();
+          .append(payload); // dt.meta.unit=Byte, ...
     }
   }
 }
@@ -13,6 +13,8 @@
  */
 package com.dynatrace.metric.util;
 
+import java.nio.charset.StandardCharsets;
+
 /** Constants related to metric line creation, serialization and normalization. */
 final class MetricLineConstants {
 
@@ -31,6 +33,10 @@ final class MetricLineConstants {
     static final int MAX_METRIC_KEY_LENGTH = 255;
     static final int MAX_DIMENSION_KEY_LENGTH = 100;
     static final int MAX_DIMENSION_VALUE_LENGTH = 255;
+
+    // Timestamps outside [2000-01-01T00:00:00Z, 3001-01-01T00:00:00Z) are not set on the line.
+    static final long MIN_TIMESTAMP_EPOCH_MILLIS = 946_684_800_000L;
+    static final long MAX_TIMESTAMP_EPOCH_MILLIS = 32_535_216_000_000L;
   }
 
   /** Constants for Gauge payload creation. */
@@ -39,6 +45,7 @@ final class MetricLineConstants {
     private PayloadGauge() {}
 
     static final String GAUGE = "gauge";
+    static final byte[] GAUGE_UTF8 = GAUGE.getBytes(StandardCharsets.UTF_8);
     static final String MIN = "min=";
     static final String MAX = ",max=";
     static final String SUM = ",sum=";
@@ -51,6 +58,7 @@ final class MetricLineConstants {
     private PayloadCount() {}
 
     public static final String COUNT = "count";
+    static final byte[] COUNT_UTF8 = COUNT.getBytes(StandardCharsets.UTF_8);
     public static final String DELTA = "delta=";
   }
 
@@ -61,6 +69,7 @@ final class MetricLineConstants {
 
     // errors
     static final String METRIC_EMPTY_KEY_MESSAGE = "Metric key is empty";
+    static final String METRIC_SERIES_NULL_MESSAGE = "Metric series is null";
     static final String METRIC_DROPPED_AFTER_NORMALIZATION_MESSAGE =
         "Metric key invalid after normalization. Pre-normalization key: '%s'";
 
@@ -102,6 +111,8 @@ final class MetricLineConstants {
         "Dimension value normalized from '%s' to '%s'";
     static final String METADATA_VALUE_NORMALIZED_MESSAGE =
         "Metadata value normalized from '%s' to '%s'";
+    static final String METADATA_VALUE_NO_VALID_CHARACTERS_MESSAGE =
+        "no valid characters after normalization (input: %s)";
     static final String DIMENSION_DROPPED_KEY_EMPTY_MESSAGE =
         "Dimension with empty dimension key has been dropped";
     static final String DIMENSION_DROPPED_KEY_EMPTY_WITH_METRIC_KEY_MESSAGE =
@@ -117,6 +128,13 @@ final class MetricLineConstants {
     static final String DIMENSION_DROPPED_KEY_OVERWRITTEN_WITH_METRIC_KEY_MESSAGE =
         "[%s] " + DIMENSION_DROPPED_KEY_OVERWRITTEN_MESSAGE;
 
+    static final String DATA_POINTS_SKIPPED_MESSAGE =
+        "[%s] Skipped %d of %d data points. First reason: %s";
+    static final String DATA_POINT_ARRAYS_LENGTH_MISMATCH_MESSAGE =
+        "Data point arrays have different lengths (%d and %d)";
+    static final String PAYLOAD_LIMIT_EXCEEDED_MESSAGE =
+        "Line does not fit into a payload of at most %d bytes";
+
     static final String SKIP_INVALID_TIMESTAMP_MESSAGE =
         "[%s] Skip setting timestamp, because it is null";
     static final String TIMESTAMP_OUT_OF_RANGE_MESSAGE =
@@ -0,0 +1,363 @@
+/**
+ * Copyright 2023 Dynatrace LLC
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dynatrace.metric.util;
+
+import com.dynatrace.file.util.DynatraceFileBasedConfigurationProvider;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.Deflater;
+
+/**
+ * Sends the payloads of a {@link MetricLinePayloadBatcher} to the metrics ingest API. The endpoint
+ * and the API token are looked up before every request, so that changes (e.g. when {@link
+ * DynatraceFileBasedConfigurationProvider} reads a new token) are picked up without creating a new
+ * exporter. The token is sent as {@code Authorization: Api-Token <token>} if it is not empty, which
+ * is not required for the local OneAgent endpoint.
+ *
+ * <p>Requests are sent with {@link HttpURLConnection}, which keeps connections alive and reuses
+ * them for following requests to the same host, as long as the responses are read completely.
+ * Payloads are streamed from their buffers without copying.
+ *
+ * <p>Payloads can be compressed with gzip, see {@link #withGzip(int, int)}, and kept on disk while
+ * the endpoint cannot be reached, see {@link #withSpool(MetricLinePayloadSpool)}.
+ *
+ * <p>An exporter is not thread-safe and should be confined to a single thread, e.g. the thread that
+ * flushes the batcher.
+ */
+public final class MetricLineExporter {
+  private static final Logger logger = Logger.getLogger(MetricLineExporter.class.getName());
+  private static final int TIMEOUT_MILLIS = 10_000;
+  private static final String CONTENT_TYPE = "text/plain; charset=utf-8";
+  private static final String API_TOKEN_PREFIX = "Api-Token ";
+  // response bodies longer than this are only drained, but not logged
+  private static final int MAX_LOGGED_RESPONSE_LENGTH = 1024;
+
+  private final Supplier<String> endpointSupplier;
+  private final Supplier<String> tokenSupplier;
+  private final int gzipLevel;
+  // payloads smaller than this are sent uncompressed. gzip is disabled if negative.
+  private final int gzipMinSize;
+  // holds payloads that could not be sent, or null if they are dropped
+  private final MetricLinePayloadSpool spool;
+  // Reused to drain responses, so that the connection can be kept alive. The first half keeps the
+  // start of the response for logging, the second half receives the rest.
+  private final byte[] responseBuffer = new byte[2 * MAX_LOGGED_RESPONSE_LENGTH];
+
+  // The URL and the authorization header are only created again if the endpoint or token changed.
+  private String endpoint;
+  private URL url;
+  private String token;
+  private String authorization;
+
+  private MetricLineExporter(
+      Supplier<String> endpointSupplier,
+      Supplier<String> tokenSupplier,
+      int gzipLevel,
+      int gzipMinSize,
+      MetricLinePayloadSpool spool) {
+    this.endpointSupplier = endpointSupplier;
+    this.tokenSupplier = tokenSupplier;
+    this.gzipLevel = gzipLevel;
+    this.gzipMinSize = gzipMinSize;
+    this.spool = spool;
+  }
+
+  /**
+   * Creates an exporter that reads the endpoint and token from the {@link
+   * DynatraceFileBasedConfigurationProvider}, which defaults to the local OneAgent endpoint (see
+   * {@link DynatraceMetricApiConstants#getDefaultOneAgentEndpoint()}).
+   *
+   * @return The created {@link MetricLineExporter}.
+   */
+  public static MetricLineExporter create() {
+    final DynatraceFileBasedConfigurationProvider provider =
+        DynatraceFileBasedConfigurationProvider.getInstance();
+    return create(provider::getMetricIngestEndpoint, provider::getMetricIngestToken);
+  }
+
+  /**
+   * Creates an exporter that gets the endpoint and token from the given suppliers before every
+   * request.
+   *
+   * @param endpointSupplier Supplies the URL of the ingest endpoint.
+   * @param tokenSupplier Supplies the API token. {@code null} or an empty token is not sent.
+   * @return The created {@link MetricLineExporter}.
+   */
+  public static MetricLineExporter create(
+      Supplier<String> endpointSupplier, Supplier<String> tokenSupplier) {
+    if (endpointSupplier == null || tokenSupplier == null) {
+      throw new IllegalArgumentException("endpoint and token supplier must not be null");
+    }
+    return new MetricLineExporter(
+        endpointSupplier, tokenSupplier, Deflater.DEFAULT_COMPRESSION, -1, null);
+  }
+
+  /**
+   * Creates an exporter that sends payloads with {@code Content-Encoding: gzip}. Compression state
+   * and output buffers are pooled, so that they are not allocated for every request.
+   *
+   * @param level The compression level, from {@link Deflater#DEFAULT_COMPRESSION} ({@code -1}) or
+   *     {@link Deflater#BEST_SPEED} ({@code 1}) to {@link Deflater#BEST_COMPRESSION} ({@code 9}).
+   * @param minPayloadSize Payloads with fewer bytes are sent uncompressed, as compressing them
+   *     would not save enough to be worth the CPU time.
+   * @return A new {@link MetricLineExporter} with the same endpoint and token suppliers.
+   * @throws IllegalArgumentException if the level is out of range or the size is negative.
+   */
+  public MetricLineExporter withGzip(int level, int minPayloadSize) {
+    GzipEncoder.checkLevel(level);
+    if (minPayloadSize < 0) {
+      throw new IllegalArgumentException("minimum payload size must not be negative");
+    }
+    return new MetricLineExporter(endpointSupplier, tokenSupplier, level, minPayloadSize, spool);
+  }
+
+  /**
+   * Creates an exporter that keeps payloads in the spool if a request fails or the endpoint is
+   * unavailable (status {@code 429} or {@code 5xx}). Spooled payloads are sent first on the next
+   * {@link #export export}, and new payloads are spooled as long as older ones are not sent, so
+   * that the order of the payloads is kept. The spool is not closed by the exporter.
+   *
+   * @param spool The spool.
+   * @return A new {@link MetricLineExporter} with the same endpoint and token suppliers.
+   * @throws IllegalArgumentException if the spool is {@code null}.
+   */
+  public MetricLineExporter withSpool(MetricLinePayloadSpool spool) {
+    if (spool == null) {
+      throw new IllegalArgumentException("spool must not be null");
+    }
+    return new MetricLineExporter(endpointSupplier, tokenSupplier, gzipLevel, gzipMinSize, spool);
+  }
+
+  /**
+   * Flushes the batcher and sends all of its sealed payloads. Each payload is released after it was
+   * sent, and payloads that were rejected by the endpoint are dropped. If a request fails, the
+   * payload is dropped too, but the remaining payloads are kept in the batcher, so that they can be
+   * sent by the next call. With a {@link #withSpool spool}, the payloads that could not be sent are
+   * spooled instead.
+   *
+   * @param batcher The batcher holding the payloads.
+   * @return The number of payloads that were accepted by the endpoint.
+   * @throws IOException if a request fails.
+   */
+  public int export(MetricLinePayloadBatcher batcher) throws IOException {
+    batcher.flush();
+    if (spool != null) {
+      return exportWithSpool(batcher);
+    }
+
+    int accepted = 0;
+    for (MetricLinePayloadBatcher.Payload payload; (payload = batcher.poll()) != null; ) {
+      try {
+        if (isSuccess(send(payload))) {
+          accepted++;
+        }
+      } finally {
+        payload.release();
+      }
+    }
+    return accepted;
+  }
+
+  private int exportWithSpool(MetricLinePayloadBatcher batcher) throws IOException {
+    int accepted = 0;
+    IOException failure = null;
+    try {
+      accepted += replay();
+    } catch (IOException e) {
+      failure = e;
+    }
+
+    for (MetricLinePayloadBatcher.Payload payload; (payload = batcher.poll()) != null; ) {
+      try {
+        // payloads are only sent directly if there are no older ones left in the spool
+        if (spool.isEmpty()) {
+          try {
+            final int status = send(payload);
+            if (isSuccess(status)) {
+              accepted++;
+              continue;
+            }
+            if (!isRetryable(status)) {
+              continue;
+            }
+          } catch (IOException e) {
+            failure = e;
+          }
+        }
+        spool.append(payload);
+      } finally {
+        payload.release();
+      }
+    }
+
+    if (failure != null) {
+      throw failure;
+    }
+    return accepted;
+  }
+
+  /**
+   * Sends the spooled payloads, oldest first, until the spool is empty or the endpoint is
+   * unavailable. Payloads that were rejected by the endpoint are removed too.
+   *
+   * @return The number of payloads that were accepted by the endpoint.
+   */
+  private int replay() throws IOException {
+    int accepted = 0;
+    for (MetricLinePayloadBatcher.Payload payload; (payload = spool.peek()) != null; ) {
+      final int status = send(payload);
+      if (isRetryable(status)) {
+        break;
+      }
+      if (isSuccess(status)) {
+        accepted++;
+      }
+      spool.remove();
+    }
+    return accepted;
+  }
+
+  /**
+   * Sends a single payload. The payload is not released.
+   *
+   * @param payload The payload to send.
+   * @return The HTTP status code of the response. Responses that are not successful are logged.
+   * @throws IOException if the request fails.
+   */
+  public int send(MetricLinePayloadBatcher.Payload payload) throws IOException {
+    if (gzipMinSize < 0 || payload.size() < gzipMinSize) {
+      return send(payload, null);
+    }
+
+    final GzipEncoder encoder = GzipEncoder.acquire(gzipLevel);
+    try {
+      final ByteBuffer buffer = payload.buffer();
+      encoder.encode(buffer.array(), buffer.arrayOffset(), payload.size());
+      return send(payload, encoder);
+    } finally {
+      encoder.release();
+    }
+  }
+
+  /**
+   * @param encoder Holds the compressed payload, or {@code null} to send the payload uncompressed.
+   */
+  private int send(MetricLinePayloadBatcher.Payload payload, GzipEncoder encoder)
+      throws IOException {
+    final HttpURLConnection connection = (HttpURLConnection) url().openConnection();
+    connection.setRequestMethod("POST");
+    connection.setConnectTimeout(TIMEOUT_MILLIS);
+    connection.setReadTimeout(TIMEOUT_MILLIS);
+    connection.setUseCaches(false);
+    connection.setDoOutput(true);
+    // stream the body instead of buffering a copy of it in the connection
+    connection.setFixedLengthStreamingMode(encoder == null ? payload.size() : encoder.length());
+    connection.setRequestProperty("Content-Type", CONTENT_TYPE);
+    if (encoder != null) {
+      connection.setRequestProperty("Content-Encoding", "gzip");
+    }
+    final String authorization = authorization();
+    if (authorization != null) {
+      connection.setRequestProperty("Authorization", authorization);
+    }
+
+    try (OutputStream body = connection.getOutputStream()) {
+      if (encoder == null) {
+        payload.writeTo(body);
+      } else {
+        encoder.writeTo(body);
+      }
+    }
+
+    final int status = connection.getResponseCode();
+    final InputStream response =
+        isSuccess(status) ? connection.getInputStream() : connection.getErrorStream();
+    final int logged = drain(response);
+    if (!isSuccess(status) && logger.isLoggable(Level.WARNING)) {
+      logger.warning(
+          String.format(
+              "Sending %d metric lines to %s failed with status %d: %s",
+              payload.lineCount(),
+              this.endpoint,
+              status,
+              new String(responseBuffer, 0, logged, StandardCharsets.UTF_8)));
+    }
+    return status;
+  }
+
+  private static boolean isSuccess(int status) {
+    return status >= 200 && status < 300;
+  }
+
+  /** @return {@code true} if the endpoint is unavailable, but might accept the payload later. */
+  private static boolean isRetryable(int status) {
+    return status == 429 || status >= 500;
+  }
+
+  /**
+   * Reads the response completely and closes it, which allows the connection to be reused.
+   *
+   * @return The number of bytes at the start of the response that are kept in the response buffer.
+   */
+  private int drain(InputStream response) throws IOException {
+    if (response == null) {
+      return 0;
+    }
+
+    int kept = 0;
+    try (InputStream in = response) {
+      int read;
+      while (kept < MAX_LOGGED_RESPONSE_LENGTH
+          && (read = in.read(responseBuffer, kept, MAX_LOGGED_RESPONSE_LENGTH - kept)) >= 0) {
+        kept += read;
+      }
+      while (in.read(responseBuffer, MAX_LOGGED_RESPONSE_LENGTH, MAX_LOGGED_RESPONSE_LENGTH) >= 0) {
+        // only the start of long responses is kept
+      }
+    }
+    return kept;
+  }
+
+  private URL url() throws IOException {
+    final String currentEndpoint = endpointSupplier.get();
+    if (currentEndpoint == null || currentEndpoint.isEmpty()) {
+      throw new IOException("No metrics ingest endpoint is configured");
+    }
+    if (!currentEndpoint.equals(this.endpoint)) {
+      this.url = new URL(currentEndpoint);
+      this.endpoint = currentEndpoint;
+    }
+    return this.url;
+  }
+
+  private String authorization() {
+    final String currentToken = tokenSupplier.get();
+    if (currentToken == null || currentToken.isEmpty()) {
+      return null;
+    }
+    if (!currentToken.equals(this.token)) {
+      this.authorization = API_TOKEN_PREFIX + currentToken;
+      this.token = currentToken;
+    }
+    return this.authorization;
+  }
+}
@@ -0,0 +1,328 @@
+/**
+ * Copyright 2023 Dynatrace LLC
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dynatrace.metric.util;
+
+import com.dynatrace.metric.util.MetricLineConstants.ValidationMessages;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Batches metric lines into UTF-8 encoded, newline-separated payloads for the ingest API. A payload
+ * is sealed when it reaches the maximum number of lines (see {@link
+ * DynatraceMetricApiConstants#getPayloadLinesLimit()}) or when the next line would exceed the
+ * maximum number of bytes. Lines are encoded directly into the buffer of the payload, and sealed
+ * payloads are handed out without copying.
+ *
+ * <pre>{@code
+ * batcher.add(builder.reset().metricKey("my.metric").gauge().value(1));
+ * // ... more lines
+ * batcher.flush();
+ * for (MetricLinePayloadBatcher.Payload payload; (payload = batcher.poll()) != null; ) {
+ *   try {
+ *     payload.writeTo(outputStream);
+ *   } finally {
+ *     payload.release();
+ *   }
+ * }
+ * }</pre>
+ *
+ * <p>Released payloads are recycled, so that their buffers are reused for the next payloads. A
+ * batcher is not thread-safe and should be confined to a single thread, but payloads can be sent
+ * and released on other threads.
+ */
+public final class MetricLinePayloadBatcher {
+  static final int DEFAULT_MAX_PAYLOAD_BYTES = 1024 * 1024;
+  // buffers start small and grow up to the maximum payload size when needed
+  private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+  private static final int MAX_POOLED_PAYLOADS = 4;
+
+  private final int maxLines;
+  private final int maxBytes;
+  private final ArrayDeque<Payload> sealed = new ArrayDeque<>();
+  private final ArrayBlockingQueue<Payload> pool = new ArrayBlockingQueue<>(MAX_POOLED_PAYLOADS);
+  // the payload that lines are currently added to, or null if there is none
+  private Payload current;
+
+  private MetricLinePayloadBatcher(int maxLines, int maxBytes) {
+    this.maxLines = maxLines;
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * Creates a batcher that seals payloads at {@link
+   * DynatraceMetricApiConstants#getPayloadLinesLimit()} lines or 1 MiB.
+   *
+   * @return The created {@link MetricLinePayloadBatcher}.
+   */
+  public static MetricLinePayloadBatcher create() {
+    return create(DynatraceMetricApiConstants.getPayloadLinesLimit(), DEFAULT_MAX_PAYLOAD_BYTES);
+  }
+
+  /**
+   * Creates a batcher with the given limits.
+   *
+   * @param maxLines The maximum number of lines per payload, at most {@link
+   *     DynatraceMetricApiConstants#getPayloadLinesLimit()}.
+   * @param maxBytes The maximum number of bytes per payload, including the line separators.
+   * @return The created {@link MetricLinePayloadBatcher}.
+   * @throws IllegalArgumentException if one of the limits is out of range.
+   */
+  public static MetricLinePayloadBatcher create(int maxLines, int maxBytes) {
+    if (maxLines < 1 || maxLines > DynatraceMetricApiConstants.getPayloadLinesLimit()) {
+      throw new IllegalArgumentException(
+          String.format(
+              "maxLines must be between 1 and %d, but was %d",
+              DynatraceMetricApiConstants.getPayloadLinesLimit(), maxLines));
+    }
+    if (maxBytes < 2) {
+      throw new IllegalArgumentException(
+          String.format("maxBytes must be at least 2, but was %d", maxBytes));
+    }
+    return new MetricLinePayloadBatcher(maxLines, maxBytes);
+  }
+
+  /**
+   * Serializes the metric line into the current payload, see {@link
+   * MetricLineBuilder.BuildStep#writeUtf8(ByteBuffer)}.
+   *
+   * @param line The metric line.
+   * @throws MetricException if the line cannot be serialized, or if it does not fit into an empty
+   *     payload.
+   */
+  public void add(MetricLineBuilder.BuildStep line) throws MetricException {
+    while (true) {
+      final ByteBuffer buffer = openBuffer();
+      if (buffer.hasRemaining()) {
+        // leave room for the line separator. Nothing is written if the line does not fit.
+        buffer.limit(buffer.capacity() - 1);
+        try {
+          line.writeUtf8(buffer);
+          break;
+        } catch (BufferOverflowException e) {
+          // make room below and try again
+        } finally {
+          buffer.limit(buffer.capacity());
+        }
+      }
+
+      if (!makeRoom()) {
+        throw payloadLimitExceeded();
+      }
+    }
+    lineAdded();
+  }
+
+  /**
+   * Adds an already serialized line, e.g. a metadata line, to the current payload.
+   *
+   * @param line The line without line separator. {@code null} is ignored, so that metadata lines
+   *     that were not built (see {@link MetricLineBuilder.MetadataStep#build()}) can be passed as
+   *     they are.
+   * @throws MetricException if the line does not fit into an empty payload.
+   */
+  public void add(CharSequence line) throws MetricException {
+    if (line == null) {
+      return;
+    }
+
+    final int length = Utf8.encodedLength(line, 0, line.length());
+    while (openBuffer().remaining() <= length) {
+      if (!makeRoom()) {
+        throw payloadLimitExceeded();
+      }
+    }
+    Utf8.encode(line, 0, line.length(), current.buffer);
+    lineAdded();
+  }
+
+  /**
+   * Adds a UTF-8 encoded line to the current payload.
+   *
+   * @param line The array holding the encoded line without line separator.
+   * @param offset The start of the line in the array.
+   * @param length The length of the line in bytes.
+   * @throws MetricException if the line does not fit into an empty payload.
+   */
+  void add(byte[] line, int offset, int length) throws MetricException {
+    while (openBuffer().remaining() <= length) {
+      if (!makeRoom()) {
+        throw payloadLimitExceeded();
+      }
+    }
+    current.buffer.put(line, offset, length);
+    lineAdded();
+  }
+
+  /** Seals the current payload if it contains any lines, so that it can be {@link #poll polled}. */
+  public void flush() {
+    if (current != null && current.lineCount > 0) {
+      seal();
+    }
+  }
+
+  /**
+   * Returns the next sealed payload. The caller has to {@link Payload#release() release} it after
+   * it has been sent.
+   *
+   * @return The oldest sealed payload, or {@code null} if there is none.
+   */
+  public Payload poll() {
+    return sealed.poll();
+  }
+
+  /** @return The number of sealed payloads that were not polled yet. */
+  public int sealedCount() {
+    return sealed.size();
+  }
+
+  /**
+   * Creates a payload that does not belong to a batcher, e.g. to hold payloads that are read back
+   * from a {@link MetricLinePayloadSpool}. Releasing it has no effect.
+   */
+  static Payload detachedPayload(int capacity) {
+    return new Payload(null, capacity);
+  }
+
+  private ByteBuffer openBuffer() {
+    if (current == null) {
+      final Payload recycled = pool.poll();
+      current =
+          recycled != null ? recycled : new Payload(this, Math.min(maxBytes, INITIAL_BUFFER_SIZE));
+    }
+    return current.buffer;
+  }
+
+  /**
+   * Makes room for a line that did not fit into the current payload, by growing its buffer or by
+   * sealing it.
+   *
+   * @return {@code false} if the line does not fit into an empty payload.
+   */
+  private boolean makeRoom() {
+    final int capacity = current.buffer.capacity();
+    if (capacity < maxBytes) {
+      current.grow((int) Math.min(maxBytes, 2L * capacity));
+      return true;
+    }
+    if (current.lineCount > 0) {
+      seal();
+      return true;
+    }
+    return false;
+  }
+
+  private MetricException payloadLimitExceeded() {
+    return new MetricException(
+        String.format(ValidationMessages.PAYLOAD_LIMIT_EXCEEDED_MESSAGE, maxBytes));
+  }
+
+  private void lineAdded() {
+    current.buffer.put((byte) CodePoints.NEWLINE);
+    if (++current.lineCount >= maxLines) {
+      seal();
+    }
+  }
+
+  private void seal() {
+    current.buffer.flip();
+    current.sealed.set(true);
+    sealed.add(current);
+    current = null;
+  }
+
+  private void recycle(Payload payload) {
+    payload.buffer.clear();
+    payload.lineCount = 0;
+    pool.offer(payload);
+  }
+
+  /**
+   * A sealed payload of newline-separated, UTF-8 encoded metric lines. Its content is only valid
+   * until it is {@link #release() released}.
+   */
+  public static final class Payload {
+    private final MetricLinePayloadBatcher owner;
+    private final AtomicBoolean sealed = new AtomicBoolean();
+    private ByteBuffer buffer;
+    private int lineCount;
+
+    private Payload(MetricLinePayloadBatcher owner, int capacity) {
+      this.owner = owner;
+      this.buffer = ByteBuffer.allocate(capacity);
+    }
+
+    private void grow(int capacity) {
+      buffer.flip();
+      buffer = ByteBuffer.allocate(capacity).put(buffer);
+    }
+
+    /**
+     * Replaces the content of a {@link #detachedPayload detached} payload.
+     *
+     * @param source The new content, between its position and limit.
+     * @param lineCount The number of lines in the new content.
+     */
+    void fill(ByteBuffer source, int lineCount) {
+      if (buffer.capacity() < source.remaining()) {
+        buffer = ByteBuffer.allocate(Math.max(source.remaining(), 2 * buffer.capacity()));
+      }
+      buffer.clear();
+      buffer.put(source).flip();
+      this.lineCount = lineCount;
+    }
+
+    /**
+     * @return The buffer of the payload (not a copy), holding the payload between position {@code
+     *     0} and its limit. Reading from it moves its position.
+     */
+    public ByteBuffer buffer() {
+      return buffer;
+    }
+
+    /** @return The size of the payload in bytes. */
+    public int size() {
+      return buffer.limit();
+    }
+
+    /** @return The number of lines in the payload. */
+    public int lineCount() {
+      return lineCount;
+    }
+
+    /**
+     * Writes the whole payload to the stream, regardless of the position of its {@link #buffer()}.
+     *
+     * @param out The stream, e.g. the body of an HTTP request.
+     * @throws IOException if writing to the stream fails.
+     */
+    public void writeTo(OutputStream out) throws IOException {
+      out.write(buffer.array(), buffer.arrayOffset(), buffer.limit());
+    }
+
+    /**
+     * Returns the payload to its batcher, so that its buffer can be reused. The payload must not be
+     * used anymore afterwards. Releasing a payload more than once has no effect.
+     */
+    public void release() {
+      if (sealed.compareAndSet(true, false)) {
+        owner.recycle(this);
+      }
+    }
+  }
+}
@@ -0,0 +1,443 @@
+/**
+ * Copyright 2023 Dynatrace LLC
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dynatrace.metric.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps payloads on disk while the ingest endpoint cannot be reached, e.g. while the local OneAgent
+ * restarts, so that they can be sent once it is back. Use it with {@link
+ * MetricLineExporter#withSpool(MetricLinePayloadSpool)}.
+ *
+ * <p>Payloads are appended to a fixed number of fixed-size segment files, which are memory-mapped
+ * when the spool is opened. Appending a payload copies it into the mapped pages without any system
+ * call, and the operating system writes the pages to disk in the background. Segments are replayed
+ * in the order they were written and are reused once all of their payloads were sent. When all
+ * segments are full, the oldest segment is reused and its payloads are dropped, so the disk usage
+ * never exceeds {@code segmentSize * maxSegments}. The disk space is allocated when the spool is
+ * opened.
+ *
+ * <p>Payloads that were not sent yet are found again when a spool is opened on the same directory,
+ * e.g. after the application restarted. A directory can only be used by one spool at a time.
+ *
+ * <p>A spool is not thread-safe and should be confined to the thread that exports the payloads.
+ */
+public final class MetricLinePayloadSpool implements Closeable {
+  private static final Logger logger = Logger.getLogger(MetricLinePayloadSpool.class.getName());
+  private static final int DEFAULT_SEGMENT_SIZE = 8 * 1024 * 1024;
+  private static final int DEFAULT_MAX_SEGMENTS = 8;
+  private static final int MAX_SEGMENTS = 1024;
+  private static final String LOCK_FILE = "spool.lock";
+  private static final String SEGMENT_FILE_FORMAT = "segment-%d.spool";
+  // A segment starts with its sequence number, which is 0 for free segments.
+  private static final int SEGMENT_HEADER_SIZE = Long.BYTES;
+  // A record starts with the payload size, which is negated once the payload was sent, and the
+  // number of lines. A size of 0 marks the end of the records in a segment.
+  private static final int RECORD_HEADER_SIZE = 2 * Integer.BYTES;
+  private static final int MIN_SEGMENT_SIZE = SEGMENT_HEADER_SIZE + RECORD_HEADER_SIZE + 1;
+  private static final int ALLOCATION_CHUNK_SIZE = 64 * 1024;
+
+  private final int segmentSize;
+  private final FileChannel lockChannel;
+  private final FileLock lock;
+  private final List<Segment> segments;
+  // Segments holding payloads that were not sent yet, oldest first. Payloads are appended to the
+  // last one.
+  private final ArrayDeque<Segment> active = new ArrayDeque<>();
+  private final ArrayDeque<Segment> free = new ArrayDeque<>();
+  private final MetricLinePayloadBatcher.Payload replayed;
+  private long nextSequence = 1;
+  private int spooledCount;
+  private long droppedCount;
+  private boolean closed;
+
+  private MetricLinePayloadSpool(
+      int segmentSize, FileChannel lockChannel, FileLock lock, List<Segment> segments) {
+    this.segmentSize = segmentSize;
+    this.lockChannel = lockChannel;
+    this.lock = lock;
+    this.segments = segments;
+    this.replayed =
+        MetricLinePayloadBatcher.detachedPayload(
+            Math.min(segmentSize, MetricLinePayloadBatcher.DEFAULT_MAX_PAYLOAD_BYTES));
+    recover();
+  }
+
+  /**
+   * Opens a spool with 8 segments of 8 MiB in the given directory.
+   *
+   * @param directory The directory holding the segment files. It is created if it does not exist.
+   * @return The opened {@link MetricLinePayloadSpool}.
+   * @throws IOException if the segment files cannot be created or mapped, or if the directory is
+   *     used by another spool.
+   */
+  public static MetricLinePayloadSpool open(Path directory) throws IOException {
+    return open(directory, DEFAULT_SEGMENT_SIZE, DEFAULT_MAX_SEGMENTS);
+  }
+
+  /**
+   * Opens a spool in the given directory.
+   *
+   * @param directory The directory holding the segment files. It is created if it does not exist.
+   * @param segmentSize The size of each segment file in bytes. Payloads that do not fit into a
+   *     single segment are dropped.
+   * @param maxSegments The number of segment files.
+   * @return The opened {@link MetricLinePayloadSpool}.
+   * @throws IllegalArgumentException if the directory is {@code null}, or if the segment size or
+   *     count is out of range.
+   * @throws IOException if the segment files cannot be created or mapped, or if the directory is
+   *     used by another spool.
+   */
+  public static MetricLinePayloadSpool open(Path directory, int segmentSize, int maxSegments)
+      throws IOException {
+    if (directory == null) {
+      throw new IllegalArgumentException("directory must not be null");
+    }
+    if (segmentSize < MIN_SEGMENT_SIZE) {
+      throw new IllegalArgumentException(
+          String.format(
+              "segment size must be at least %d, but was %d", MIN_SEGMENT_SIZE, segmentSize));
+    }
+    if (maxSegments < 1 || maxSegments > MAX_SEGMENTS) {
+      throw new IllegalArgumentException(
+          String.format(
+              "max segments must be between 1 and %d, but was %d", MAX_SEGMENTS, maxSegments));
+    }
+
+    Files.createDirectories(directory);
+    final FileChannel lockChannel =
+        FileChannel.open(
+            directory.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    FileLock lock = null;
+    try {
+      try {
+        lock = lockChannel.tryLock();
+      } catch (OverlappingFileLockException e) {
+        // locked by another spool in this JVM
+      }
+      if (lock == null) {
+        throw new IOException(String.format("Spool directory %s is already in use", directory));
+      }
+
+      final List<Segment> segments = new ArrayList<>(maxSegments);
+      for (int i = 0; i < maxSegments; i++) {
+        final Path file = directory.resolve(String.format(SEGMENT_FILE_FORMAT, i));
+        segments.add(new Segment(map(file, segmentSize)));
+      }
+      return new MetricLinePayloadSpool(segmentSize, lockChannel, lock, segments);
+    } catch (IOException | RuntimeException e) {
+      lockChannel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Maps a segment file, allocating its disk space first. Files of a different size, e.g. from a
+   * spool with a different segment size, are cleared.
+   */
+  private static MappedByteBuffer map(Path file, int segmentSize) throws IOException {
+    try (FileChannel channel =
+        FileChannel.open(
+            file,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE)) {
+      if (channel.size() != segmentSize) {
+        channel.truncate(0);
+        // Writing zeros allocates the disk space up front, whereas a sparse file could fail to
+        // allocate pages when writing to the mapped buffer.
+        final ByteBuffer zeros = ByteBuffer.allocate(Math.min(segmentSize, ALLOCATION_CHUNK_SIZE));
+        for (long position = 0; position < segmentSize; ) {
+          zeros.clear().limit((int) Math.min(zeros.capacity(), segmentSize - position));
+          position += channel.write(zeros, position);
+        }
+      }
+      // the mapping stays valid after the channel is closed
+      return channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+    }
+  }
+
+  /** Finds the payloads that were not sent yet in the segment files. */
+  private void recover() {
+    final List<Segment> recovered = new ArrayList<>();
+    for (Segment segment : segments) {
+      if (segment.recover() > 0) {
+        recovered.add(segment);
+        nextSequence = Math.max(nextSequence, segment.sequence + 1);
+        spooledCount += segment.recordCount;
+      } else {
+        segment.clear();
+        free.add(segment);
+      }
+    }
+    recovered.sort((a, b) -> Long.compare(a.sequence, b.sequence));
+    active.addAll(recovered);
+  }
+
+  /**
+   * Appends a copy of the payload. If all segments are full, the payloads in the oldest segment are
+   * dropped to make room.
+   *
+   * @param payload The payload, which can be released afterwards.
+   * @return {@code false} if the payload was dropped because it does not fit into a segment.
+   */
+  public boolean append(MetricLinePayloadBatcher.Payload payload) {
+    ensureOpen();
+    final int size = payload.size();
+    final int recordSize = RECORD_HEADER_SIZE + size;
+    if (size == 0) {
+      return true;
+    }
+    if (recordSize > segmentSize - SEGMENT_HEADER_SIZE) {
+      droppedCount++;
+      if (logger.isLoggable(Level.WARNING)) {
+        logger.warning(
+            String.format(
+                "Dropping %d metric lines, as the payload of %d bytes does not fit into a spool"
+                    + " segment of %d bytes",
+                payload.lineCount(), size, segmentSize));
+      }
+      return false;
+    }
+
+    Segment segment = active.peekLast();
+    if (segment == null || segment.writePosition + recordSize > segmentSize) {
+      segment = nextSegment();
+    }
+    final ByteBuffer source = payload.buffer().duplicate();
+    source.position(0);
+    segment.append(source, payload.lineCount());
+    spooledCount++;
+    return true;
+  }
+
+  /** @return A free segment, which becomes the segment that payloads are appended to. */
+  private Segment nextSegment() {
+    Segment segment = free.poll();
+    if (segment == null) {
+      segment = active.poll();
+      final int dropped = segment.recordCount;
+      spooledCount -= dropped;
+      droppedCount += dropped;
+      if (logger.isLoggable(Level.WARNING)) {
+        logger.warning(
+            String.format(
+                "Spool is full, dropping the %d oldest payloads that were not sent yet", dropped));
+      }
+    }
+    segment.start(nextSequence++);
+    active.add(segment);
+    return segment;
+  }
+
+  /**
+   * Returns the oldest payload that was not sent yet. The payload stays in the spool until it is
+   * {@link #remove() removed}.
+   *
+   * @return A payload that is valid until the next call to this spool, or {@code null} if the spool
+   *     is empty.
+   */
+  MetricLinePayloadBatcher.Payload peek() {
+    ensureOpen();
+    final Segment segment = active.peek();
+    if (segment == null) {
+      return null;
+    }
+    segment.read(replayed);
+    return replayed;
+  }
+
+  /** Removes the oldest payload, after it was sent. */
+  void remove() {
+    ensureOpen();
+    final Segment segment = active.peek();
+    if (segment == null) {
+      return;
+    }
+    segment.remove();
+    spooledCount--;
+    if (segment.recordCount == 0) {
+      active.poll();
+      segment.clear();
+      free.add(segment);
+    }
+  }
+
+  /** @return {@code true} if all payloads were sent. */
+  public boolean isEmpty() {
+    return spooledCount == 0;
+  }
+
+  /** @return The number of payloads that were not sent yet. */
+  public int size() {
+    return spooledCount;
+  }
+
+  /**
+   * @return The number of payloads that were dropped since the spool was opened, because they did
+   *     not fit into a segment or because the spool was full.
+   */
+  public long droppedCount() {
+    return droppedCount;
+  }
+
+  /**
+   * Writes the segments to disk and releases the directory, so that it can be opened again. The
+   * payloads that were not sent yet are kept.
+   *
+   * @throws IOException if releasing the directory fails.
+   */
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    for (Segment segment : segments) {
+      segment.buffer.force();
+    }
+    try {
+      lock.release();
+    } finally {
+      lockChannel.close();
+    }
+  }
+
+  private void ensureOpen() {
+    if (closed) {
+      throw new IllegalStateException("spool is closed");
+    }
+  }
+
+  /** A memory-mapped segment file. */
+  private static final class Segment {
+    private final MappedByteBuffer buffer;
+    private long sequence;
+    private int readPosition;
+    private int writePosition;
+    private int recordCount;
+
+    private Segment(MappedByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    /**
+     * Reads the state of the segment from its file.
+     *
+     * @return The number of payloads that were not sent yet.
+     */
+    private int recover() {
+      sequence = buffer.getLong(0);
+      readPosition = -1;
+      recordCount = 0;
+      if (sequence <= 0) {
+        return 0;
+      }
+
+      int position = SEGMENT_HEADER_SIZE;
+      while (position + RECORD_HEADER_SIZE <= buffer.capacity()) {
+        final int size = buffer.getInt(position);
+        final int length = Math.abs(size);
+        if (size == 0 || length < 0 || length > buffer.capacity() - position - RECORD_HEADER_SIZE) {
+          // the end of the records, or a record that was not written completely
+          break;
+        }
+        if (size > 0) {
+          if (readPosition < 0) {
+            readPosition = position;
+          }
+          recordCount++;
+        }
+        position += RECORD_HEADER_SIZE + length;
+      }
+      writePosition = position;
+      if (recordCount > 0) {
+        terminate();
+      }
+      return recordCount;
+    }
+
+    private void start(long sequence) {
+      this.sequence = sequence;
+      readPosition = SEGMENT_HEADER_SIZE;
+      writePosition = SEGMENT_HEADER_SIZE;
+      recordCount = 0;
+      terminate();
+      buffer.putLong(0, sequence);
+    }
+
+    private void clear() {
+      sequence = 0;
+      recordCount = 0;
+      buffer.putLong(0, 0);
+    }
+
+    private void append(ByteBuffer source, int lineCount) {
+      final int size = source.remaining();
+      final ByteBuffer target = buffer.duplicate();
+      target.position(writePosition + RECORD_HEADER_SIZE);
+      target.put(source);
+      final int recordPosition = writePosition;
+      writePosition += RECORD_HEADER_SIZE + size;
+      // the record only becomes visible after it was written completely
+      terminate();
+      buffer.putInt(recordPosition + Integer.BYTES, lineCount);
+      buffer.putInt(recordPosition, size);
+      recordCount++;
+    }
+
+    private void terminate() {
+      if (writePosition + Integer.BYTES <= buffer.capacity()) {
+        buffer.putInt(writePosition, 0);
+      }
+    }
+
+    private void read(MetricLinePayloadBatcher.Payload target) {
+      skipRemoved();
+      final int size = buffer.getInt(readPosition);
+      final ByteBuffer source = buffer.duplicate();
+      source.position(readPosition + RECORD_HEADER_SIZE).limit(source.position() + size);
+      target.fill(source, buffer.getInt(readPosition + Integer.BYTES));
+    }
+
+    private void remove() {
+      skipRemoved();
+      final int size = buffer.getInt(readPosition);
+      buffer.putInt(readPosition, -size);
+      readPosition += RECORD_HEADER_SIZE + size;
+      recordCount--;
+    }
+
+    private void skipRemoved() {
+      int size;
+      while ((size = buffer.getInt(readPosition)) < 0) {
+        readPosition += RECORD_HEADER_SIZE - size;
+      }
+    }
+  }
+}
@@ -14,6 +14,7 @@
 package com.dynatrace.metric.util;
 
 import com.dynatrace.metric.util.MetricLineConstants.ValidationMessages;
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
@@ -33,22 +34,77 @@ public class MetricLinePreConfiguration {
   private static final String CLASS_NAME_FOR_LOGGING =
       String.format("{%s}", MetricLinePreConfiguration.class.getSimpleName());
   private static final MetricLinePreConfiguration EMPTY_PRE_CONFIG =
-      new MetricLinePreConfiguration(null, Collections.emptyMap(), Collections.emptyMap(), 0);
+      new MetricLinePreConfiguration(
+          null, Collections.emptyMap(), Collections.emptyMap(), 0, null);
 
   private final Map<String, String> dynatraceMetadataDimensions;
   private final Map<String, String> defaultDimensions;
   private final String prefix;
+  // true if the prefix is valid as it is, so that it can be prepended to normalized metric keys
+  // without normalizing the resulting key again.
+  private final boolean prefixNormalized;
   private final int serializationLength;
+  private final MetadataRegistry metadataRegistry;
+
+  // The dimensions serialized as ',key1=value1,key2=value2', so that they can be copied to each
+  // metric line in one go instead of being serialized again for every line.
+  private final char[] serializedDefaultDimensions;
+  private final byte[] serializedDefaultDimensionsUtf8;
+  private final char[] serializedDynatraceMetadataDimensions;
+  private final byte[] serializedDynatraceMetadataDimensionsUtf8;
 
   private MetricLinePreConfiguration(
       String prefix,
       Map<String, String> defaultDimensions,
       Map<String, String> dynatraceMetadataDimensions,
-      int serializationLength) {
+      int serializationLength,
+      MetadataRegistry metadataRegistry) {
     this.prefix = prefix;
+    this.prefixNormalized = !MetricKeyValidator.normalizationRequired(prefix);
     this.defaultDimensions = defaultDimensions;
     this.dynatraceMetadataDimensions = dynatraceMetadataDimensions;
     this.serializationLength = serializationLength;
+    this.metadataRegistry = metadataRegistry;
+
+    String serializedDefaultDimensions = serializeDimensions(defaultDimensions);
+    this.serializedDefaultDimensions = serializedDefaultDimensions.toCharArray();
+    this.serializedDefaultDimensionsUtf8 =
+        serializedDefaultDimensions.getBytes(StandardCharsets.UTF_8);
+
+    String serializedDynatraceMetadataDimensions =
+        serializeDimensions(dynatraceMetadataDimensions);
+    this.serializedDynatraceMetadataDimensions =
+        serializedDynatraceMetadataDimensions.toCharArray();
+    this.serializedDynatraceMetadataDimensionsUtf8 =
+        serializedDynatraceMetadataDimensions.getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Serializes the dimensions as {@code ,key1=value1,key2=value2}. Dimensions with an empty value
+   * are not serialized.
+   *
+   * @param dimensions The normalized dimensions.
+   * @return The serialized dimensions, or an empty string if there are none.
+   */
+  private static String serializeDimensions(Map<String, String> dimensions) {
+    StringBuilder sb = new StringBuilder();
+    for (Map.Entry<String, String> entry : dimensions.entrySet()) {
+      if (StringValueValidator.isNullOrEmpty(entry.getValue())) {
+        logger.warning(
+            () ->
+                String.format(
+                    ValidationMessages.DIMENSION_NOT_SERIALIZED_OF_EMPTY_VALUE,
+                    CLASS_NAME_FOR_LOGGING,
+                    entry.getKey()));
+        continue;
+      }
+
+      sb.appendCodePoint(CodePoints.COMMA)
+          .append(entry.getKey())
+          .appendCodePoint(CodePoints.EQUALS)
+          .append(entry.getValue());
+    }
+    return sb.toString();
   }
 
   public Map<String, String> getDynatraceMetadataDimensions() {
@@ -63,11 +119,44 @@ public class MetricLinePreConfiguration {
     return prefix;
   }
 
+  /**
+   * @return {@code true} if the prefix is set and does not need to be normalized, {@code false}
+   *     otherwise.
+   */
+  boolean isPrefixNormalized() {
+    return prefixNormalized;
+  }
+
   /** @return The length of the String, if you would serialize all attributes */
   int preConfigSerializedLength() {
     return serializationLength;
   }
 
+  /** @return The default dimensions, serialized as {@code ,key1=value1,key2=value2}. */
+  char[] serializedDefaultDimensions() {
+    return serializedDefaultDimensions;
+  }
+
+  /** @return The UTF-8 encoded {@link #serializedDefaultDimensions()}. */
+  byte[] serializedDefaultDimensionsUtf8() {
+    return serializedDefaultDimensionsUtf8;
+  }
+
+  /** @return The Dynatrace metadata dimensions, serialized as {@code ,key1=value1,key2=value2}. */
+  char[] serializedDynatraceMetadataDimensions() {
+    return serializedDynatraceMetadataDimensions;
+  }
+
+  /** @return The UTF-8 encoded {@link #serializedDynatraceMetadataDimensions()}. */
+  byte[] serializedDynatraceMetadataDimensionsUtf8() {
+    return serializedDynatraceMetadataDimensionsUtf8;
+  }
+
+  /** @return The {@link MetadataRegistry} for metadata lines, or {@code null} if none is set. */
+  MetadataRegistry getMetadataRegistry() {
+    return metadataRegistry;
+  }
+
   /** @return an empty {@link MetricLinePreConfiguration}-object. */
   static MetricLinePreConfiguration empty() {
     return EMPTY_PRE_CONFIG;
@@ -90,6 +179,7 @@ public class MetricLinePreConfiguration {
     private String prefix;
     private int dimensionCount = 0;
     private int serializationLength = 0;
+    private MetadataRegistry metadataRegistry;
 
     private Builder() {}
 
@@ -135,6 +225,20 @@ public class MetricLinePreConfiguration {
       return this;
     }
 
+    /**
+     * Set a {@link MetadataRegistry} that keeps track of the metadata lines built with {@link
+     * MetricLineBuilder} objects using the {@link MetricLinePreConfiguration} object. Metadata
+     * lines are then only built if their metadata changed or the refresh period of the registry
+     * elapsed. Without a registry, metadata lines are built every time.
+     *
+     * @param metadataRegistry The registry, which can be shared between pre-configurations.
+     * @return this
+     */
+    public Builder metadataRegistry(MetadataRegistry metadataRegistry) {
+      this.metadataRegistry = metadataRegistry;
+      return this;
+    }
+
     /**
      * Build the {@link MetricLinePreConfiguration} using the data provided by this {@link Builder}.
      * Necessary normalization is done.
@@ -193,7 +297,8 @@ public class MetricLinePreConfiguration {
           this.prefix,
           normalizedDefaultDimensions,
           normalizedDynatraceMetadataDimensions,
-          this.serializationLength);
+          this.serializationLength,
+          this.metadataRegistry);
     }
 
     /**
@@ -223,7 +328,7 @@ public class MetricLinePreConfiguration {
 
       String normalizedKey = key;
       if (DimensionKeyValidator.normalizationRequired(key)) {
-        NormalizationResult normalizeKeyResult = Normalizer.normalizeDimensionKey(key);
+        NormalizationResult normalizeKeyResult = NormalizationCache.DIMENSION_KEYS.normalize(key);
 
         normalizedKey = normalizeKeyResult.getResult();
         if (normalizeKeyResult.messageType() != NormalizationResult.MessageType.NONE) {
@@ -0,0 +1,354 @@
+/**
+ * Copyright 2023 Dynatrace LLC
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dynatrace.metric.util;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded, lock-free queue of metric lines between the threads that record metrics and a single
+ * thread that exports them. Lines are serialized UTF-8 encoded into pre-allocated slots of a ring,
+ * so that recording a metric does not allocate and never waits for network I/O. The exporting
+ * thread {@link #drainTo(MetricLinePayloadBatcher, int) drains} the lines into a {@link
+ * MetricLinePayloadBatcher}:
+ *
+ * <pre>{@code
+ * // recording threads
+ * queue.offer(builder.reset().metricKey("my.metric").gauge().value(1));
+ *
+ * // exporting thread, e.g. scheduled every 10 seconds
+ * queue.drainTo(batcher, Integer.MAX_VALUE);
+ * exporter.export(batcher);
+ * }</pre>
+ *
+ * <p>When the queue is full, the {@link OverflowPolicy} decides whether the new line or the oldest
+ * line is dropped, or whether the recording thread waits for free space. Dropped lines are counted,
+ * see {@link #droppedCount()}.
+ *
+ * <p>The ring follows the bounded queue design by Dmitry Vyukov: every slot has a sequence number
+ * that tells producers and consumers whether the slot is free or holds a published line.
+ */
+public final class MetricLineQueue {
+  private static final int MAX_CAPACITY = 1 << 30;
+  // slot buffers grow when longer lines are offered
+  private static final int INITIAL_SLOT_SIZE = 128;
+  private static final long MAX_PARK_NANOS = 1_000_000;
+
+  private final Slot[] slots;
+  private final AtomicLongArray sequences;
+  private final int mask;
+  private final OverflowPolicy overflowPolicy;
+  private final AtomicLong tail = new AtomicLong();
+  private final AtomicLong head = new AtomicLong();
+  private final LongAdder dropped = new LongAdder();
+
+  private MetricLineQueue(int capacity, OverflowPolicy overflowPolicy) {
+    this.slots = new Slot[capacity];
+    this.sequences = new AtomicLongArray(capacity);
+    for (int i = 0; i < capacity; i++) {
+      slots[i] = new Slot();
+      sequences.set(i, i);
+    }
+    this.mask = capacity - 1;
+    this.overflowPolicy = overflowPolicy;
+  }
+
+  /**
+   * Creates a queue. All slots are allocated up front.
+   *
+   * @param capacity The minimum number of lines the queue can hold, which is rounded up to the next
+   *     power of two, but at least 2.
+   * @param overflowPolicy Decides what happens when a line is offered to a full queue.
+   * @return The created {@link MetricLineQueue}.
+   * @throws IllegalArgumentException if the capacity is not positive or larger than {@code 2^30},
+   *     or if the policy is {@code null}.
+   */
+  public static MetricLineQueue create(int capacity, OverflowPolicy overflowPolicy) {
+    if (capacity < 1 || capacity > MAX_CAPACITY) {
+      throw new IllegalArgumentException(
+          String.format("capacity must be between 1 and %d, but was %d", MAX_CAPACITY, capacity));
+    }
+    if (overflowPolicy == null) {
+      throw new IllegalArgumentException("overflow policy must not be null");
+    }
+    // a single slot cannot tell a published line from a free slot of the next round
+    final int powerOfTwo = capacity <= 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+    return new MetricLineQueue(powerOfTwo, overflowPolicy);
+  }
+
+  /**
+   * Serializes the metric line into the queue. Can be called from any thread.
+   *
+   * @param line The metric line.
+   * @return {@code true} if the line was queued, {@code false} if it was dropped.
+   * @throws MetricException if the line cannot be serialized. Nothing is queued in that case.
+   */
+  public boolean offer(MetricLineBuilder.BuildStep line) throws MetricException {
+    final long position = claim();
+    if (position < 0) {
+      return false;
+    }
+
+    final Slot slot = slots[(int) position & mask];
+    try {
+      slot.write(line);
+    } finally {
+      // an empty slot is skipped when draining, so that the ring does not get stuck if
+      // serialization fails
+      publish(position);
+    }
+    return true;
+  }
+
+  /**
+   * Queues an already serialized line, e.g. a metadata line. Can be called from any thread.
+   *
+   * @param line The line without line separator. {@code null} is ignored.
+   * @return {@code true} if the line was queued or is {@code null}, {@code false} if it was
+   *     dropped.
+   */
+  public boolean offer(CharSequence line) {
+    if (line == null) {
+      return true;
+    }
+
+    final long position = claim();
+    if (position < 0) {
+      return false;
+    }
+    try {
+      slots[(int) position & mask].write(line);
+    } finally {
+      publish(position);
+    }
+    return true;
+  }
+
+  /**
+   * Moves queued lines to the batcher, oldest first. Must only be called by a single thread at a
+   * time.
+   *
+   * @param batcher The batcher that the lines are added to.
+   * @param maxLines The maximum number of lines to move.
+   * @return The number of lines that were moved.
+   * @throws MetricException if a line does not fit into an empty payload of the batcher. The line
+   *     is dropped, the following lines stay in the queue.
+   */
+  public int drainTo(MetricLinePayloadBatcher batcher, int maxLines) throws MetricException {
+    int drained = 0;
+    while (drained < maxLines) {
+      final long position = head.get();
+      final int index = (int) position & mask;
+      if (sequences.get(index) != position + 1) {
+        // empty, or the next line is not published yet
+        break;
+      }
+      if (!head.compareAndSet(position, position + 1)) {
+        // a producer dropped the oldest line
+        continue;
+      }
+
+      final Slot slot = slots[index];
+      try {
+        if (slot.length > 0) {
+          batcher.add(slot.buffer.array(), 0, slot.length);
+          drained++;
+        }
+      } finally {
+        release(position);
+      }
+    }
+    return drained;
+  }
+
+  /** @return The number of lines that were dropped because the queue was full. */
+  public long droppedCount() {
+    return dropped.sum();
+  }
+
+  /** @return The approximate number of queued lines. */
+  public int size() {
+    return (int) Math.max(0, Math.min(slots.length, tail.get() - head.get()));
+  }
+
+  /** @return The number of lines the queue can hold. */
+  public int capacity() {
+    return slots.length;
+  }
+
+  /**
+   * Claims the next free slot, applying the overflow policy if there is none.
+   *
+   * @return The position of the claimed slot, or {@code -1} if the line is dropped.
+   */
+  private long claim() {
+    long position = tryClaim();
+    if (position >= 0) {
+      return position;
+    }
+
+    switch (overflowPolicy.kind) {
+      case DROP_OLDEST:
+        do {
+          dropOldest();
+          position = tryClaim();
+        } while (position < 0);
+        return position;
+      case BLOCK:
+        final long start = System.nanoTime();
+        long parkNanos = 1_000;
+        do {
+          final long remaining = overflowPolicy.timeoutNanos - (System.nanoTime() - start);
+          if (remaining <= 0) {
+            dropped.increment();
+            return -1;
+          }
+          LockSupport.parkNanos(Math.min(parkNanos, remaining));
+          parkNanos = Math.min(parkNanos * 2, MAX_PARK_NANOS);
+          position = tryClaim();
+        } while (position < 0);
+        return position;
+      default:
+        dropped.increment();
+        return -1;
+    }
+  }
+
+  /** @return The position of the claimed slot, or {@code -1} if the queue is full. */
+  private long tryClaim() {
+    while (true) {
+      final long position = tail.get();
+      final long sequence = sequences.get((int) position & mask);
+      if (sequence == position) {
+        if (tail.compareAndSet(position, position + 1)) {
+          return position;
+        }
+      } else if (sequence < position) {
+        // the slot still holds the line from the previous round
+        return -1;
+      }
+      // another producer claimed the slot, try the next one
+    }
+  }
+
+  /** Removes the oldest line, unless the consumer or another producer removes it concurrently. */
+  private void dropOldest() {
+    final long position = head.get();
+    if (sequences.get((int) position & mask) == position + 1
+        && head.compareAndSet(position, position + 1)) {
+      dropped.increment();
+      release(position);
+    } else {
+      // the oldest line is not published yet or was just removed
+      Thread.yield();
+    }
+  }
+
+  private void publish(long position) {
+    sequences.lazySet((int) position & mask, position + 1);
+  }
+
+  private void release(long position) {
+    slots[(int) position & mask].length = 0;
+    sequences.lazySet((int) position & mask, position + slots.length);
+  }
+
+  /** A slot of the ring, holding one UTF-8 encoded line. */
+  private static final class Slot {
+    private ByteBuffer buffer = ByteBuffer.allocate(INITIAL_SLOT_SIZE);
+    private int length;
+
+    private void write(MetricLineBuilder.BuildStep line) throws MetricException {
+      length = 0;
+      buffer.clear();
+      try {
+        length = line.writeUtf8(buffer);
+      } catch (BufferOverflowException e) {
+        final byte[] encoded = line.buildUtf8();
+        ensureCapacity(encoded.length);
+        buffer.put(encoded);
+        length = encoded.length;
+      }
+    }
+
+    private void write(CharSequence line) {
+      length = 0;
+      final int encodedLength = Utf8.encodedLength(line, 0, line.length());
+      ensureCapacity(encodedLength);
+      buffer.clear();
+      Utf8.encode(line, 0, line.length(), buffer);
+      length = encodedLength;
+    }
+
+    private void ensureCapacity(int capacity) {
+      if (buffer.capacity() < capacity) {
+        buffer = ByteBuffer.allocate(Math.max(capacity, 2 * buffer.capacity()));
+      }
+    }
+  }
+
+  /** Decides what happens when a line is offered to a full {@link MetricLineQueue}. */
+  public static final class OverflowPolicy {
+    private static final OverflowPolicy DROP_NEWEST = new OverflowPolicy(Kind.DROP_NEWEST, 0);
+    private static final OverflowPolicy DROP_OLDEST = new OverflowPolicy(Kind.DROP_OLDEST, 0);
+
+    private enum Kind {
+      DROP_NEWEST,
+      DROP_OLDEST,
+      BLOCK
+    }
+
+    private final Kind kind;
+    private final long timeoutNanos;
+
+    private OverflowPolicy(Kind kind, long timeoutNanos) {
+      this.kind = kind;
+      this.timeoutNanos = timeoutNanos;
+    }
+
+    /** @return A policy that drops the line that is offered. */
+    public static OverflowPolicy dropNewest() {
+      return DROP_NEWEST;
+    }
+
+    /** @return A policy that drops the oldest queued line to make room for the offered one. */
+    public static OverflowPolicy dropOldest() {
+      return DROP_OLDEST;
+    }
+
+    /**
+     * @param timeout The maximum time to wait for free space.
+     * @return A policy that lets the offering thread wait until there is free space, and drops the
+     *     offered line if the timeout elapses first.
+     * @throws IllegalArgumentException if the timeout is {@code null} or negative.
+     */
+    public static OverflowPolicy block(Duration timeout) {
+      if (timeout == null || timeout.isNegative()) {
+        throw new IllegalArgumentException("timeout must not be null or negative");
+      }
+      long timeoutNanos;
+      try {
+        timeoutNanos = timeout.toNanos();
+      } catch (ArithmeticException e) {
+        timeoutNanos = Long.MAX_VALUE;
+      }
+      return new OverflowPolicy(Kind.BLOCK, timeoutNanos);
+    }
+  }
+}
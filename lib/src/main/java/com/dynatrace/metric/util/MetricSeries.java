@@ -0,0 +1,158 @@
+/**
+ * Copyright 2023 Dynatrace LLC
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dynatrace.metric.util;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * A metric series is identified by its metric key and dimensions. A {@link MetricSeries} holds the
+ * normalized and serialized metric key and dimensions (including the ones of the {@link
+ * MetricLinePreConfiguration}), so that metric lines for the series only have to serialize their
+ * type and value. Create a series once and reuse it for every data point via {@link
+ * MetricLineBuilder.MetricKeyStep#series(MetricSeries)}. {@link MetricSeries} objects are immutable
+ * and can be shared between threads.
+ */
+public final class MetricSeries {
+  private final String metricKey;
+  private final String descriptor;
+  private final byte[] descriptorUtf8;
+
+  MetricSeries(String metricKey, String descriptor) {
+    this.metricKey = metricKey;
+    this.descriptor = descriptor;
+    this.descriptorUtf8 = descriptor.getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Create a new {@link MetricSeries} without dimensions.
+   *
+   * @param preConfig The pre-configuration object containing shared data.
+   * @param metricKey The metric key. The key will be normalized.
+   * @return The created {@link MetricSeries}.
+   * @throws MetricException see {@link #create(MetricLinePreConfiguration, String, Map)}.
+   */
+  public static MetricSeries create(MetricLinePreConfiguration preConfig, String metricKey)
+      throws MetricException {
+    return create(preConfig, metricKey, Collections.emptyMap());
+  }
+
+  /**
+   * Create a new {@link MetricSeries}. The metric key and dimensions are normalized in the same way
+   * as by {@link MetricLineBuilder}.
+   *
+   * @param preConfig The pre-configuration object containing shared data.
+   * @param metricKey The metric key.
+   * @param dimensions The dimensions of the series.
+   * @return The created {@link MetricSeries}.
+   * @throws MetricException if the metric key is invalid, if the dimension limit of {@value
+   *     MetricLineConstants.Limits#MAX_DIMENSIONS_COUNT} is exceeded, or if the serialized metric
+   *     key and dimensions exceed the line length limit of {@value
+   *     MetricLineConstants.Limits#MAX_LINE_LENGTH}.
+   */
+  public static MetricSeries create(
+      MetricLinePreConfiguration preConfig, String metricKey, Map<String, String> dimensions)
+      throws MetricException {
+    return MetricLineBuilderImpl.series(preConfig, metricKey, dimensions);
+  }
+
+  /**
+   * Writes one gauge line per data point to the target, each terminated by a line feed. Data points
+   * with invalid values (NaN or infinite) are skipped and reported in one log message. Timestamps
+   * outside the years 2000 to 3000 are left out of the line.
+   *
+   * @param values The gauge values.
+   * @param timestamps The timestamps of the values in milliseconds since the epoch, or {@code null}
+   *     to create lines without timestamps.
+   * @param target The {@link Appendable} (e.g. a {@link StringBuilder}) that the lines are appended
+   *     to.
+   * @return The number of lines written.
+   * @throws IOException if appending to the target fails.
+   * @throws IllegalArgumentException if the arrays have different lengths.
+   */
+  public int writeGauges(double[] values, long[] timestamps, Appendable target)
+      throws IOException {
+    return MetricSeriesWriter.writeGauges(this, values, timestamps, target);
+  }
+
+  /**
+   * Writes one gauge summary line per data point to the target, each terminated by a line feed. The
+   * {@code i}-th elements of the arrays make up the {@code i}-th data point. Data points that
+   * violate the summary constraints are skipped and reported in one log message. Timestamps outside
+   * the years 2000 to 3000 are left out of the line.
+   *
+   * @param min The min values.
+   * @param max The max values.
+   * @param sum The sums of the values.
+   * @param count The numbers of observations.
+   * @param timestamps The timestamps of the data points in milliseconds since the epoch, or {@code
+   *     null} to create lines without timestamps.
+   * @param target The {@link Appendable} (e.g. a {@link StringBuilder}) that the lines are appended
+   *     to.
+   * @return The number of lines written.
+   * @throws IOException if appending to the target fails.
+   * @throws IllegalArgumentException if the arrays have different lengths.
+   */
+  public int writeSummaries(
+      double[] min,
+      double[] max,
+      double[] sum,
+      long[] count,
+      long[] timestamps,
+      Appendable target)
+      throws IOException {
+    return MetricSeriesWriter.writeSummaries(this, min, max, sum, count, timestamps, target);
+  }
+
+  /**
+   * Writes one counter line per data point to the target, each terminated by a line feed. Data
+   * points with invalid deltas (NaN or infinite) are skipped and reported in one log message.
+   * Timestamps outside the years 2000 to 3000 are left out of the line.
+   *
+   * @param deltas The counter deltas.
+   * @param timestamps The timestamps of the deltas in milliseconds since the epoch, or {@code null}
+   *     to create lines without timestamps.
+   * @param target The {@link Appendable} (e.g. a {@link StringBuilder}) that the lines are appended
+   *     to.
+   * @return The number of lines written.
+   * @throws IOException if appending to the target fails.
+   * @throws IllegalArgumentException if the arrays have different lengths.
+   */
+  public int writeCounts(double[] deltas, long[] timestamps, Appendable target)
+      throws IOException {
+    return MetricSeriesWriter.writeCounts(this, deltas, timestamps, target);
+  }
+
+  /** @return The normalized metric key, including the prefix. */
+  public String getMetricKey() {
+    return metricKey;
+  }
+
+  /** @return The serialized metric key and dimensions ({@code key,dim1=val1,dim2=val2}). */
+  String descriptor() {
+    return descriptor;
+  }
+
+  /** @return The UTF-8 encoded {@link #descriptor()}. */
+  byte[] descriptorUtf8() {
+    return descriptorUtf8;
+  }
+
+  @Override
+  public String toString() {
+    return descriptor;
+  }
+}
@@ -0,0 +1,252 @@
+/**
+ * Copyright 2023 Dynatrace LLC
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dynatrace.metric.util;
+
+import com.dynatrace.metric.util.MetricLineConstants.ValidationMessages;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.time.Instant;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Writes the metric lines for many data points of a single {@link MetricSeries} in one pass. The
+ * serialized metric key and dimensions of the series are copied to every line, so only the values
+ * and timestamps are formatted per data point. Each line is terminated by a line feed ({@code
+ * '\n'}), so that the output can be sent to the ingest API as it is.
+ */
+final class MetricSeriesWriter {
+  private static final Logger logger = Logger.getLogger(MetricSeriesWriter.class.getName());
+  // rough estimate for the type, value and timestamp of a line (' gauge,1.2345 1656000000000')
+  private static final int ESTIMATED_PAYLOAD_LENGTH = 32;
+
+  /** Appends the value(s) of the data point at the given index. */
+  @FunctionalInterface
+  private interface PayloadAppender {
+    BooleanResultMessage append(StringBuilder sb, int index);
+  }
+
+  /** Formats the message of an invalid result from the raw value(s) of the data point. */
+  @FunctionalInterface
+  private interface PayloadMessage {
+    String format(BooleanResultMessage result, int index);
+  }
+
+  private MetricSeriesWriter() {}
+
+  static int writeGauges(
+      MetricSeries series, double[] values, long[] timestamps, Appendable target)
+      throws IOException {
+    checkLength(values.length, timestamps);
+    return write(
+        series,
+        MetricLineConstants.PayloadGauge.GAUGE,
+        values.length,
+        timestamps,
+        target,
+        (sb, i) -> appendValue(sb, values[i]),
+        (result, i) -> NumberValueValidator.valueMessage(result, values[i]));
+  }
+
+  static int writeSummaries(
+      MetricSeries series,
+      double[] min,
+      double[] max,
+      double[] sum,
+      long[] count,
+      long[] timestamps,
+      Appendable target)
+      throws IOException {
+    checkLength(min.length, max.length);
+    checkLength(min.length, sum.length);
+    checkLength(min.length, count.length);
+    checkLength(min.length, timestamps);
+    return write(
+        series,
+        MetricLineConstants.PayloadGauge.GAUGE,
+        min.length,
+        timestamps,
+        target,
+        (sb, i) -> {
+          BooleanResultMessage result =
+              NumberValueValidator.isSummaryValid(min[i], max[i], sum[i], count[i]);
+          if (result.isValid()) {
+            sb.append(MetricLineConstants.PayloadGauge.MIN);
+            DoubleFormatter.append(sb, min[i]).append(MetricLineConstants.PayloadGauge.MAX);
+            DoubleFormatter.append(sb, max[i]).append(MetricLineConstants.PayloadGauge.SUM);
+            DoubleFormatter.append(sb, sum[i])
+                .append(MetricLineConstants.PayloadGauge.COUNT)
+                .append(count[i]);
+          }
+          return result;
+        },
+        (result, i) ->
+            NumberValueValidator.summaryMessage(result, min[i], max[i], sum[i], count[i]));
+  }
+
+  static int writeCounts(
+      MetricSeries series, double[] deltas, long[] timestamps, Appendable target)
+      throws IOException {
+    checkLength(deltas.length, timestamps);
+    return write(
+        series,
+        MetricLineConstants.PayloadCount.COUNT,
+        deltas.length,
+        timestamps,
+        target,
+        (sb, i) -> appendValue(sb.append(MetricLineConstants.PayloadCount.DELTA), deltas[i]),
+        (result, i) -> NumberValueValidator.valueMessage(result, deltas[i]));
+  }
+
+  /**
+   * Writes one line per data point. Data points with invalid values are skipped, and reported in a
+   * single log message per call. Out-of-range timestamps are left out, like {@link
+   * MetricLineBuilder.TimestampOrBuildStep#timestamp(long)} does.
+   *
+   * @return The number of lines written.
+   */
+  private static int write(
+      MetricSeries series,
+      String type,
+      int dataPoints,
+      long[] timestamps,
+      Appendable target,
+      PayloadAppender payload,
+      PayloadMessage payloadMessage)
+      throws IOException {
+    final String descriptor = series.descriptor();
+    final boolean appendDirectly = target instanceof StringBuilder;
+    // other targets get one line at a time from a reused builder, so that the whole batch is never
+    // buffered
+    final StringBuilder sb =
+        appendDirectly
+            ? (StringBuilder) target
+            : new StringBuilder(descriptor.length() + ESTIMATED_PAYLOAD_LENGTH);
+    // lines are handed to writers through a reused array, so that no String is created per line
+    char[] chars = target instanceof Writer ? new char[sb.capacity()] : null;
+
+    int written = 0;
+    // the reason for the first skipped data point is only formatted if it is logged. It stays null
+    // if the data point was skipped because the line was too long.
+    int firstSkipped = -1;
+    BooleanResultMessage firstInvalid = null;
+    for (int i = 0; i < dataPoints; i++) {
+      final int lineStart = sb.length();
+      sb.append(descriptor)
+          .appendCodePoint(CodePoints.BLANK)
+          .append(type)
+          .appendCodePoint(CodePoints.COMMA);
+
+      final BooleanResultMessage result = payload.append(sb, i);
+      if (!result.isValid()) {
+        sb.setLength(lineStart);
+        if (firstSkipped < 0) {
+          firstSkipped = i;
+          firstInvalid = result;
+        }
+        continue;
+      }
+
+      if (timestamps != null) {
+        final long timestamp = timestamps[i];
+        if (MetricLineBuilderImpl.isTimestampInRange(timestamp)) {
+          sb.appendCodePoint(CodePoints.BLANK).append(timestamp);
+        } else {
+          MetricLineBuilderImpl.logTimestampOutOfRange(
+              series.getMetricKey(), () -> Instant.ofEpochMilli(timestamp));
+        }
+      }
+
+      if (sb.length() - lineStart > MetricLineConstants.Limits.MAX_LINE_LENGTH) {
+        sb.setLength(lineStart);
+        if (firstSkipped < 0) {
+          firstSkipped = i;
+        }
+        continue;
+      }
+
+      sb.appendCodePoint(CodePoints.NEWLINE);
+      written++;
+      if (!appendDirectly) {
+        chars = appendTo(sb, target, chars);
+        sb.setLength(0);
+      }
+    }
+
+    if (firstSkipped >= 0 && logger.isLoggable(Level.WARNING)) {
+      final String reason =
+          firstInvalid != null
+              ? payloadMessage.format(firstInvalid, firstSkipped)
+              : ValidationMessages.MAX_LINE_LENGTH_REACHED_MESSAGE;
+      logger.warning(
+          String.format(
+              ValidationMessages.DATA_POINTS_SKIPPED_MESSAGE,
+              series.getMetricKey(),
+              dataPoints - written,
+              dataPoints,
+              reason));
+    }
+    return written;
+  }
+
+  /**
+   * Appends the line to a target other than a {@link StringBuilder}, like {@link
+   * MetricLineBuilder.BuildStep#build(Appendable)} does.
+   *
+   * @param line The serialized line.
+   * @param target The target to append the line to.
+   * @param chars The array used to copy lines to a {@link Writer}, {@code null} for other targets.
+   * @return The array to use for the next line, which is grown if the line did not fit.
+   * @throws IOException if appending to the target fails.
+   */
+  private static char[] appendTo(StringBuilder line, Appendable target, char[] chars)
+      throws IOException {
+    if (target instanceof CharBuffer) {
+      MetricLineBuilderImpl.writeTo(line, (CharBuffer) target);
+    } else if (chars != null) {
+      final int length = line.length();
+      if (chars.length < length) {
+        chars = new char[Math.max(length, 2 * chars.length)];
+      }
+      line.getChars(0, length, chars, 0);
+      ((Writer) target).write(chars, 0, length);
+    } else {
+      target.append(line);
+    }
+    return chars;
+  }
+
+  private static BooleanResultMessage appendValue(StringBuilder sb, double value) {
+    BooleanResultMessage result = NumberValueValidator.isValueValid(value);
+    if (result.isValid()) {
+      DoubleFormatter.append(sb, value);
+    }
+    return result;
+  }
+
+  private static void checkLength(int expected, long[] timestamps) {
+    if (timestamps != null) {
+      checkLength(expected, timestamps.length);
+    }
+  }
+
+  private static void checkLength(int expected, int actual) {
+    if (expected != actual) {
+      throw new IllegalArgumentException(
+          String.format(
+              ValidationMessages.DATA_POINT_ARRAYS_LENGTH_MISMATCH_MESSAGE, expected, actual));
+    }
+  }
+}
@@ -0,0 +1,121 @@
+/**
+ * Copyright 2023 Dynatrace LLC
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dynatrace.metric.util;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * A bounded, thread-safe cache from raw keys to their {@link NormalizationResult}. Metric keys and
+ * dimension keys usually have a low cardinality, so caching the results means that each distinct
+ * key only has to be normalized once. When the cache is full, an arbitrary entry is evicted for
+ * each new entry. Concurrent misses may let the cache grow slightly over its maximum size. The
+ * statistics of the shared caches are exposed via {@link NormalizationCacheStatistics}.
+ */
+final class NormalizationCache {
+  private static final int DEFAULT_MAX_SIZE = 4096;
+
+  /**
+   * Shared cache for metric keys (including the prefix), see {@link Normalizer#normalizeMetricKey}.
+   */
+  static final NormalizationCache METRIC_KEYS =
+      new NormalizationCache(DEFAULT_MAX_SIZE, Normalizer::normalizeMetricKey);
+
+  /** Shared cache for dimension keys, see {@link Normalizer#normalizeDimensionKey}. */
+  static final NormalizationCache DIMENSION_KEYS =
+      new NormalizationCache(DEFAULT_MAX_SIZE, Normalizer::normalizeDimensionKey);
+
+  private final ConcurrentHashMap<String, NormalizationResult> cache;
+  private final int maxSize;
+  private final Function<String, NormalizationResult> normalizer;
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  NormalizationCache(int maxSize, Function<String, NormalizationResult> normalizer) {
+    this.cache = new ConcurrentHashMap<>(Math.min(maxSize, 256));
+    this.maxSize = maxSize;
+    this.normalizer = normalizer;
+  }
+
+  /**
+   * Returns the cached normalization result for the key, or normalizes the key and caches the
+   * result.
+   *
+   * @param key The raw key, must not be {@code null}.
+   * @return The {@link NormalizationResult} for the key.
+   */
+  NormalizationResult normalize(String key) {
+    NormalizationResult result = cache.get(key);
+    if (result != null) {
+      hits.increment();
+      return result;
+    }
+
+    misses.increment();
+    result = normalizer.apply(key);
+    if (cache.size() >= maxSize) {
+      evictOne();
+    }
+    cache.putIfAbsent(key, result);
+    return result;
+  }
+
+  private void evictOne() {
+    Iterator<String> iterator = cache.keySet().iterator();
+    if (iterator.hasNext()) {
+      iterator.next();
+      iterator.remove();
+      evictions.increment();
+    }
+  }
+
+  /** @return The number of lookups that were answered from the cache. */
+  long hitCount() {
+    return hits.sum();
+  }
+
+  /** @return The number of lookups that required normalizing the key. */
+  long missCount() {
+    return misses.sum();
+  }
+
+  /** @return The number of entries that were evicted to make room for new ones. */
+  long evictionCount() {
+    return evictions.sum();
+  }
+
+  /**
+   * The counters are read one after the other, so concurrent lookups may not be reflected
+   * consistently in all of them.
+   *
+   * @return A snapshot of the statistics of this cache.
+   */
+  NormalizationCacheStatistics statistics() {
+    return new NormalizationCacheStatistics(hitCount(), missCount(), evictionCount(), size());
+  }
+
+  /** @return The current number of cached entries. */
+  int size() {
+    return cache.size();
+  }
+
+  /** Removes all entries. The statistics are kept. */
+  void clear() {
+    cache.clear();
+  }
+}
@@ -0,0 +1,71 @@
+/**
+ * Copyright 2023 Dynatrace LLC
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dynatrace.metric.util;
+
+/**
+ * A snapshot of the statistics of the caches that hold the normalized metric keys and dimension
+ * keys. Each distinct key is normalized once and then answered from the cache, so a miss count that
+ * keeps growing along with the eviction count indicates that more distinct keys are used than the
+ * cache can hold, e.g. because IDs are part of the keys.
+ */
+public final class NormalizationCacheStatistics {
+  private final long hitCount;
+  private final long missCount;
+  private final long evictionCount;
+  private final int size;
+
+  NormalizationCacheStatistics(long hitCount, long missCount, long evictionCount, int size) {
+    this.hitCount = hitCount;
+    this.missCount = missCount;
+    this.evictionCount = evictionCount;
+    this.size = size;
+  }
+
+  /** @return The current statistics of the cache for metric keys, including their prefix. */
+  public static NormalizationCacheStatistics metricKeys() {
+    return NormalizationCache.METRIC_KEYS.statistics();
+  }
+
+  /** @return The current statistics of the cache for dimension keys. */
+  public static NormalizationCacheStatistics dimensionKeys() {
+    return NormalizationCache.DIMENSION_KEYS.statistics();
+  }
+
+  /** @return The number of lookups that were answered from the cache. */
+  public long getHitCount() {
+    return hitCount;
+  }
+
+  /** @return The number of lookups that required normalizing the key. */
+  public long getMissCount() {
+    return missCount;
+  }
+
+  /** @return The number of entries that were evicted to make room for new ones. */
+  public long getEvictionCount() {
+    return evictionCount;
+  }
+
+  /** @return The number of cached entries. */
+  public int getSize() {
+    return size;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "NormalizationCacheStatistics{hitCount=%d, missCount=%d, evictionCount=%d, size=%d}",
+        hitCount, missCount, evictionCount, size);
+  }
+}
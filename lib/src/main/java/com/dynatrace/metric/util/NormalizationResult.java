@@ -13,49 +13,90 @@
  */
 package com.dynatrace.metric.util;
 
-import java.util.function.Supplier;
-
 /**
  * A type that represents the outcome of normalizations (metric key or dimension key/value). It
  * contains the normalized metric key/dimension key/value and error/warning that might have occurred
  * during the process.
+ *
+ * <p>Messages are only formatted from the raw input and the result when they are requested, so
+ * normalizations that are not logged do not create them. Results returned by the static factory
+ * methods are not modified afterwards. Instances created with {@link #NormalizationResult()} are
+ * reusable holders, which are overwritten by every normalization they are passed to, and must be
+ * confined to a single thread.
  */
 final class NormalizationResult {
   private static final NormalizationResult EMPTY_INVALID =
-      new NormalizationResult(null, MessageType.ERROR, null);
+      new NormalizationResult().setInvalid(null, null);
 
-  private final String result;
-  private final MessageType messageType;
-  private final Supplier<String> message;
+  private CharSequence result;
+  private MessageType messageType = MessageType.NONE;
+  // format with the input and result as arguments, e.g. "normalized from '%s' to '%s'".
+  private String messageFormat;
+  private CharSequence input;
 
-  private NormalizationResult(String result, MessageType messageType, Supplier<String> message) {
-    this.result = result;
-    this.messageType = messageType;
-    this.message = message;
-  }
+  /** Creates a reusable holder, see {@link Normalizer#normalizeDimensionValue}. */
+  NormalizationResult() {}
 
-  static NormalizationResult newValid(String result) {
-    return new NormalizationResult(result, MessageType.NONE, null);
+  /**
+   * @param result The valid input. Inputs that do not need to be normalized are passed through as
+   *     they are, so this can be any {@link CharSequence}.
+   * @return The result.
+   */
+  static NormalizationResult newValid(CharSequence result) {
+    return new NormalizationResult().setValid(result);
   }
 
-  static NormalizationResult newWarning(String result, Supplier<String> message) {
-    return new NormalizationResult(result, MessageType.WARNING, message);
+  static NormalizationResult newWarning(String result, String messageFormat, CharSequence input) {
+    return new NormalizationResult().setWarning(result, messageFormat, input);
   }
 
   static NormalizationResult newInvalid() {
     return EMPTY_INVALID;
   }
 
-  static NormalizationResult newInvalid(Supplier<String> message) {
-    return new NormalizationResult(null, MessageType.ERROR, message);
+  static NormalizationResult newInvalid(String messageFormat, CharSequence input) {
+    return new NormalizationResult().setInvalid(messageFormat, input);
+  }
+
+  NormalizationResult setValid(CharSequence result) {
+    return set(result, MessageType.NONE, null, null);
+  }
+
+  NormalizationResult setWarning(String result, String messageFormat, CharSequence input) {
+    return set(result, MessageType.WARNING, messageFormat, input);
+  }
+
+  NormalizationResult setInvalid(String messageFormat, CharSequence input) {
+    return set(null, MessageType.ERROR, messageFormat, input);
+  }
+
+  private NormalizationResult set(
+      CharSequence result, MessageType messageType, String messageFormat, CharSequence input) {
+    this.result = result;
+    this.messageType = messageType;
+    this.messageFormat = messageFormat;
+    this.input = input;
+    return this;
   }
 
   String getResult() {
+    return result == null ? null : result.toString();
+  }
+
+  /**
+   * @return The result without converting it to a {@link String}, which avoids copying inputs that
+   *     did not need to be normalized.
+   */
+  CharSequence getResultCharSequence() {
     return result;
   }
 
+  /** @return The formatted message, or {@code null} if there is none. */
   String getMessage() {
-    return message.get();
+    if (messageFormat == null) {
+      return null;
+    }
+    return String.format(messageFormat, input, result == null ? CodePoints.EMPTY_STRING : result);
   }
 
   MessageType messageType() {
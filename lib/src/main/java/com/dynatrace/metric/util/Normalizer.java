@@ -14,27 +14,24 @@
 package com.dynatrace.metric.util;
 
 import com.dynatrace.metric.util.MetricLineConstants.ValidationMessages;
-import java.util.function.Supplier;
 
 /** Offers normalization methods for metric key, dimension key and dimension value */
 final class Normalizer {
+  private static final CodePointBitmap METADATA_INVALID_CODE_POINTS =
+      CodePointBitmap.of(Normalizer::codePointTypeNeedsNormalizing);
 
   private Normalizer() {}
 
   /**
    * Converts the double value to a string according their pattern. Values with no floating point
    * are serialized as a long value, whereas values with floating point are serialized as a double
-   * value.
+   * value (see {@link DoubleFormatter}).
    *
    * @param value The double value which should be converted.
    * @return The double value as a string.
    */
   static String doubleToString(final double value) {
-    if (value == (long) value) {
-      return Long.toString((long) value);
-    }
-
-    return Double.toString(value);
+    return DoubleFormatter.append(new StringBuilder(24), value).toString();
   }
 
   /**
@@ -42,13 +39,18 @@ final class Normalizer {
    *
    * @param key The metric key to normalize
    * @return The {@link NormalizationResult result}, containing the potentially normalized metric
-   *     key along with any error or warnings encountered.
+   *     key along with any error or warnings encountered. Valid keys are returned as they are.
    */
-  static NormalizationResult normalizeMetricKey(String key) {
+  static NormalizationResult normalizeMetricKey(CharSequence key) {
     if (StringValueValidator.isNullOrEmpty(key)) {
       return NormalizationResult.newInvalid();
     }
 
+    final int start = MetricKeyValidator.firstNormalizationIndex(key);
+    if (start < 0) {
+      return NormalizationResult.newValid(key);
+    }
+
     final int length = key.length();
     boolean needsToTruncate = length > MetricLineConstants.Limits.MAX_METRIC_KEY_LENGTH;
     final int effectiveLength =
@@ -58,9 +60,21 @@ final class Normalizer {
 
     StringBuilder sb = new StringBuilder(effectiveLength);
 
+    // the prefix before the first violation is valid and copied as is. A trailing dot is left out,
+    // as it is only added together with the start of the next section.
     MetricKeyValidator.State state = MetricKeyValidator.State.START;
-    for (int offset = 0; offset < effectiveLength; ) {
-      final int codePoint = key.codePointAt(offset);
+    if (start > 0) {
+      if (MetricKeyValidator.isSectionSeparator(key.charAt(start - 1))) {
+        sb.append(key, 0, start - 1);
+        state = MetricKeyValidator.State.CONSECUTIVE_SECTION_START;
+      } else {
+        sb.append(key, 0, start);
+        state = MetricKeyValidator.State.SECTION;
+      }
+    }
+
+    for (int offset = start; offset < effectiveLength; ) {
+      final int codePoint = Character.codePointAt(key, offset);
       switch (state) {
         case START:
           // empty first section -> invalid metric key
@@ -133,10 +147,7 @@ final class Normalizer {
     String normalizedMetricKey = sb.toString();
     if (invalidCharsEncountered > 0 || needsToTruncate) {
       return NormalizationResult.newWarning(
-          normalizedMetricKey,
-          () ->
-              String.format(
-                  ValidationMessages.METRIC_KEY_NORMALIZED_MESSAGE, key, normalizedMetricKey));
+          normalizedMetricKey, ValidationMessages.METRIC_KEY_NORMALIZED_MESSAGE, key);
     }
 
     return NormalizationResult.newValid(normalizedMetricKey);
@@ -147,13 +158,18 @@ final class Normalizer {
    *
    * @param key The dimension key to normalize.
    * @return The {@link NormalizationResult result}, containing the potentially normalized dimension
-   *     key along with any error or warnings encountered.
+   *     key along with any error or warnings encountered. Valid keys are returned as they are.
    */
-  static NormalizationResult normalizeDimensionKey(String key) {
+  static NormalizationResult normalizeDimensionKey(CharSequence key) {
     if (StringValueValidator.isNullOrEmpty(key)) {
       return NormalizationResult.newValid(null);
     }
 
+    final int start = DimensionKeyValidator.firstNormalizationIndex(key);
+    if (start < 0) {
+      return NormalizationResult.newValid(key);
+    }
+
     final int length = key.length();
     boolean needsToTruncate = length > MetricLineConstants.Limits.MAX_DIMENSION_KEY_LENGTH;
     final int effectiveLength =
@@ -163,9 +179,20 @@ final class Normalizer {
 
     StringBuilder sb = new StringBuilder(effectiveLength);
 
+    // the prefix before the first violation is valid and copied as is. A trailing dot is left out,
+    // as it is only added together with the start of the next section.
     DimensionKeyValidator.State state = DimensionKeyValidator.State.START;
-    for (int offset = 0; offset < effectiveLength; ) {
-      final int codePoint = Character.toLowerCase(key.codePointAt(offset));
+    if (start > 0) {
+      if (DimensionKeyValidator.isSectionSeparator(key.charAt(start - 1))) {
+        sb.append(key, 0, start - 1);
+      } else {
+        sb.append(key, 0, start);
+        state = DimensionKeyValidator.State.SECTION;
+      }
+    }
+
+    for (int offset = start; offset < effectiveLength; ) {
+      final int codePoint = Character.toLowerCase(Character.codePointAt(key, offset));
       switch (state) {
         case START:
           // to ignore trailing or leading dots
@@ -218,20 +245,13 @@ final class Normalizer {
 
     if (sb.length() == 0) {
       return NormalizationResult.newInvalid(
-          () ->
-              String.format(
-                  ValidationMessages.DIMENSION_KEY_NORMALIZED_MESSAGE,
-                  key,
-                  CodePoints.EMPTY_STRING));
+          ValidationMessages.DIMENSION_KEY_NORMALIZED_MESSAGE, key);
     }
 
     String normalizedDimKey = sb.toString();
     if (invalidCharsEncountered > 0 || needsToTruncate) {
       return NormalizationResult.newWarning(
-          normalizedDimKey,
-          () ->
-              String.format(
-                  ValidationMessages.DIMENSION_KEY_NORMALIZED_MESSAGE, key, normalizedDimKey));
+          normalizedDimKey, ValidationMessages.DIMENSION_KEY_NORMALIZED_MESSAGE, key);
     }
 
     return NormalizationResult.newValid(normalizedDimKey);
@@ -243,19 +263,35 @@ final class Normalizer {
    * @param value The dimension value to normalize.
    * @param maxDimensionValueLength The maximum value for dimension keys.
    * @return The {@link NormalizationResult result}, containing the potentially normalized dimension
-   *     value along with any error or warnings encountered.
+   *     value along with any error or warnings encountered. Valid values are returned as they are.
    */
-  static NormalizationResult normalizeDimensionValue(String value, int maxDimensionValueLength) {
+  static NormalizationResult normalizeDimensionValue(
+      CharSequence value, int maxDimensionValueLength) {
+    return normalizeDimensionValue(value, maxDimensionValueLength, new NormalizationResult());
+  }
+
+  /**
+   * Applies normalization to the provided dimension value, see {@link
+   * #normalizeDimensionValue(CharSequence, int)}. Nothing is allocated for values that do not need
+   * to be normalized.
+   *
+   * @param value The dimension value to normalize.
+   * @param maxDimensionValueLength The maximum value for dimension keys.
+   * @param into The reusable holder that the result is stored in.
+   * @return {@code into}, containing the result.
+   */
+  static NormalizationResult normalizeDimensionValue(
+      CharSequence value, int maxDimensionValueLength, NormalizationResult into) {
     if (StringValueValidator.isNullOrEmpty(value)) {
-      return NormalizationResult.newValid(CodePoints.EMPTY_STRING);
+      return into.setValid(CodePoints.EMPTY_STRING);
     }
 
     boolean isQuoted =
-        value.startsWith(CodePoints.QUOTATION_MARK) && value.endsWith(CodePoints.QUOTATION_MARK);
+        value.charAt(0) == CodePoints.QUOTE && value.charAt(value.length() - 1) == CodePoints.QUOTE;
     if (isQuoted) {
-      return normalizeQuotedDimValue(value, maxDimensionValueLength);
+      return normalizeQuotedDimValue(value, maxDimensionValueLength, into);
     }
-    return normalizeUnquotedStringDimValue(value, maxDimensionValueLength);
+    return normalizeUnquotedStringDimValue(value, maxDimensionValueLength, into);
   }
 
   static NormalizationResult normalizeMetadataString(String value, int maxLength) {
@@ -276,7 +312,16 @@ final class Normalizer {
     // if quoted, stop at length - 1 (the last byte before the quote)
     int end = isQuoted ? value.length() - 1 : value.length();
 
-    for (int i = start; i < end; ) {
+    // the ASCII prefix without any special characters is valid and does not need escaping
+    int prefixEnd =
+        CharacterClasses.indexOfNonCleanAscii(
+            value,
+            start,
+            Math.max(start, Math.min(end, start + maxLength)),
+            CharacterClasses.VALUE_ESCAPE | CharacterClasses.VALUE_INVALID);
+    numValidBytes = prefixEnd - start;
+
+    for (int i = prefixEnd; i < end; ) {
       final int codePoint = value.codePointAt(i);
       final int codePointLength = Character.charCount(codePoint);
 
@@ -317,7 +362,6 @@ final class Normalizer {
     // do normalization
     StringBuilder builder = new StringBuilder(numValidBytes + 2);
     builder.append(CodePoints.QUOTATION_MARK);
-    Supplier<String> warningMessageSupplier = null;
 
     // don't need to escape anything since we're working in a quoted string.
     for (int i = start; i < end; ) {
@@ -353,25 +397,23 @@ final class Normalizer {
     String normalized = builder.toString();
     if (normalized.length() == 2) {
       return NormalizationResult.newInvalid(
-          () -> "no valid characters after normalization (input: " + value + ")");
+          ValidationMessages.METADATA_VALUE_NO_VALID_CHARACTERS_MESSAGE, value);
     } else
       return NormalizationResult.newWarning(
-          normalized,
-          () ->
-              String.format(
-                  ValidationMessages.METADATA_VALUE_NORMALIZED_MESSAGE, value, normalized));
+          normalized, ValidationMessages.METADATA_VALUE_NORMALIZED_MESSAGE, value);
   }
 
   private static boolean codePointNeedsEscaping(int codePoint) {
     return codePoint == CodePoints.NEWLINE
-        || codePoint == CodePoints.BLANK
-        || codePoint == CodePoints.COMMA
-        || codePoint == CodePoints.EQUALS
-        || codePoint == CodePoints.QUOTE
-        || codePoint == CodePoints.BACKSLASH;
+        || CharacterClasses.is(codePoint, CharacterClasses.VALUE_ESCAPE);
   }
 
   private static boolean codePointNeedsNormalizing(int codePoint) {
+    return METADATA_INVALID_CODE_POINTS.contains(codePoint);
+  }
+
+  // only used to compute METADATA_INVALID_CODE_POINTS
+  private static boolean codePointTypeNeedsNormalizing(int codePoint) {
     int type = Character.getType(codePoint);
 
     // unassigned characters outside the range of Unicode 10.0 "Supplemental Symbols and
@@ -397,24 +439,28 @@ final class Normalizer {
    * @param value The unquoted dimension value.
    * @param maxDimensionValueLength The maximum value to compare to. E.g. The maximum value for
    *     dimensions.
+   * @param into The holder that the result is stored in.
    * @return The {@link NormalizationResult result}, containing the potentially normalized dimension
    *     value along with any error or warnings encountered.
    */
   private static NormalizationResult normalizeUnquotedStringDimValue(
-      String value, int maxDimensionValueLength) {
-    if (!StringValueValidator.normalizationRequiredUnqoutedStringValue(
-        value, maxDimensionValueLength)) {
-      return NormalizationResult.newValid(value);
+      CharSequence value, int maxDimensionValueLength, NormalizationResult into) {
+    final int start =
+        StringValueValidator.firstNormalizationIndexUnquotedStringValue(
+            value, maxDimensionValueLength);
+    if (start < 0) {
+      return into.setValid(value);
     }
 
-    StringBuilder sb = new StringBuilder();
+    // the prefix before the first violation is copied as is
+    StringBuilder sb = new StringBuilder(value.length() + 8).append(value, 0, start);
     final int length = value.length();
     boolean previousCodePointSanitized = false;
     int invalidCharsEncountered = 0;
     boolean wasTruncated = false;
 
-    for (int offset = 0; offset < length; ) {
-      final int codePoint = value.codePointAt(offset);
+    for (int offset = start; offset < length; ) {
+      final int codePoint = Character.codePointAt(value, offset);
 
       if (StringValueValidator.isInvalidCodePoint(codePoint)) {
         if (previousCodePointSanitized) {
@@ -452,16 +498,11 @@ final class Normalizer {
 
     String normalizedDimValue = sb.toString();
     if (invalidCharsEncountered > 0 || wasTruncated) {
-      return NormalizationResult.newWarning(
-          normalizedDimValue,
-          () ->
-              String.format(
-                  ValidationMessages.DIMENSION_VALUE_NORMALIZED_MESSAGE,
-                  value,
-                  normalizedDimValue));
+      return into.setWarning(
+          normalizedDimValue, ValidationMessages.DIMENSION_VALUE_NORMALIZED_MESSAGE, value);
     }
 
-    return NormalizationResult.newValid(normalizedDimValue);
+    return into.setValid(normalizedDimValue);
   }
 
   /**
@@ -470,26 +511,33 @@ final class Normalizer {
    * @param value The quoted dimension value.
    * @param maxDimensionValueLength The maximum value to compare too. E.g. The maximum value for
    *     dimensions.
+   * @param into The holder that the result is stored in.
    * @return The {@link NormalizationResult result}, containing the potentially normalized dimension
    *     value along with any error or warnings encountered.
    */
   private static NormalizationResult normalizeQuotedDimValue(
-      String value, int maxDimensionValueLength) {
-    if (!StringValueValidator.normalizationRequiredQuotedStringValue(
-        value, maxDimensionValueLength)) {
-      return NormalizationResult.newValid(value);
+      CharSequence value, int maxDimensionValueLength, NormalizationResult into) {
+    final int start =
+        StringValueValidator.firstNormalizationIndexQuotedStringValue(
+            value, maxDimensionValueLength);
+    if (start < 0) {
+      return into.setValid(value);
     }
 
-    StringBuilder sb = new StringBuilder();
+    // the prefix (including the opening quote) before the first violation is copied as is
+    StringBuilder sb = new StringBuilder(value.length() + 8).append(value, 0, start);
     final int length = value.length();
     boolean previousCodePointSanitized = false;
     int invalidCharsEncountered = 0;
     boolean wasTruncated = false;
 
-    StringValueValidator.State state = StringValueValidator.State.START;
+    StringValueValidator.State state =
+        start == 0
+            ? StringValueValidator.State.START
+            : StringValueValidator.State.QUOTED_STRING_INTERMEDIATE;
 
-    for (int offset = 0; offset < length; ) {
-      final int codePoint = value.codePointAt(offset);
+    for (int offset = start; offset < length; ) {
+      final int codePoint = Character.codePointAt(value, offset);
       switch (state) {
         case START:
           sb.appendCodePoint(codePoint);
@@ -544,15 +592,10 @@ final class Normalizer {
     }
     String normalizedDimValue = sb.toString();
     if (invalidCharsEncountered > 0 || wasTruncated) {
-      return NormalizationResult.newWarning(
-          normalizedDimValue,
-          () ->
-              String.format(
-                  ValidationMessages.DIMENSION_VALUE_NORMALIZED_MESSAGE,
-                  value,
-                  normalizedDimValue));
+      return into.setWarning(
+          normalizedDimValue, ValidationMessages.DIMENSION_VALUE_NORMALIZED_MESSAGE, value);
     }
 
-    return NormalizationResult.newValid(normalizedDimValue);
+    return into.setValid(normalizedDimValue);
   }
 }
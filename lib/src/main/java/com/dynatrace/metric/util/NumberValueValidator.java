@@ -19,6 +19,25 @@ import com.dynatrace.metric.util.MetricLineConstants.ValidationMessages;
 final class NumberValueValidator {
   private static final double COMPARISON_ABSOLUTE_TOLERANCE = 0.000001D;
 
+  // Invalid results are shared, their messages are formatted from the inputs when needed, see
+  // summaryMessage and valueMessage.
+  private static final BooleanResultMessage GAUGE_COUNT_NEGATIVE =
+      BooleanResultMessage.newInvalid(ValidationMessages.GAUGE_COUNT_NEGATIVE_MESSAGE);
+  private static final BooleanResultMessage GAUGE_COUNT_ZERO =
+      BooleanResultMessage.newInvalid(ValidationMessages.GAUGE_COUNT_ZERO_MESSAGE);
+  private static final BooleanResultMessage GAUGE_INFINITE =
+      BooleanResultMessage.newInvalid(ValidationMessages.GAUGE_INFINITE_MESSAGE);
+  private static final BooleanResultMessage GAUGE_NAN =
+      BooleanResultMessage.newInvalid(ValidationMessages.GAUGE_NAN_MESSAGE);
+  private static final BooleanResultMessage GAUGE_MIN_GREATER_MAX =
+      BooleanResultMessage.newInvalid(ValidationMessages.GAUGE_MIN_GREATER_MAX_MESSAGE);
+  private static final BooleanResultMessage GAUGE_INCONSISTENT_FIELDS =
+      BooleanResultMessage.newInvalid(ValidationMessages.GAUGE_INCONSISTENT_FIELDS_MESSAGE);
+  private static final BooleanResultMessage VALUE_NAN =
+      BooleanResultMessage.newInvalid(ValidationMessages.VALUE_NAN_MESSAGE);
+  private static final BooleanResultMessage VALUE_INFINITE =
+      BooleanResultMessage.newInvalid(ValidationMessages.VALUE_INFINITE_MESSAGE);
+
   private NumberValueValidator() {}
 
   /**
@@ -28,58 +47,56 @@ final class NumberValueValidator {
    * @param max The maximum of the gauge
    * @param sum The sum of the gauge
    * @param count The count of the gauge
-   * @return The {@link BooleanResultMessage result}, containing if the summary is valid, or not
-   *     along with an error-message.
+   * @return The {@link BooleanResultMessage result}, containing if the summary is valid. Use {@link
+   *     #summaryMessage} to get the error-message.
    */
   static BooleanResultMessage isSummaryValid(double min, double max, double sum, long count) {
     if (count < 0) {
-      return BooleanResultMessage.newInvalid(
-          () ->
-              String.format(ValidationMessages.GAUGE_COUNT_NEGATIVE_MESSAGE, min, max, sum, count));
+      return GAUGE_COUNT_NEGATIVE;
     }
     if (count == 0 && (min != 0 || max != 0 || sum != 0)) {
-      return BooleanResultMessage.newInvalid(
-          () -> String.format(ValidationMessages.GAUGE_COUNT_ZERO_MESSAGE, min, max, sum, count));
+      return GAUGE_COUNT_ZERO;
     } else if (count == 0) {
       return BooleanResultMessage.newValid();
     }
 
     if (Double.isInfinite(min) || Double.isInfinite(max) || Double.isInfinite(sum)) {
-      return BooleanResultMessage.newInvalid(
-          () -> String.format(ValidationMessages.GAUGE_INFINITE_MESSAGE, min, max, sum, count));
+      return GAUGE_INFINITE;
     }
 
     if (Double.isNaN(min) || Double.isNaN(max) || Double.isNaN(sum)) {
-      return BooleanResultMessage.newInvalid(
-          () -> String.format(ValidationMessages.GAUGE_NAN_MESSAGE, min, max, sum, count));
+      return GAUGE_NAN;
     }
 
     if (max < min) {
-      return BooleanResultMessage.newInvalid(
-          () ->
-              String.format(
-                  ValidationMessages.GAUGE_MIN_GREATER_MAX_MESSAGE, min, max, sum, count));
+      return GAUGE_MIN_GREATER_MAX;
     }
 
     double avg = sum / count;
     if (!(lessOrEqualWithAbsoluteTolerance(min, avg)
         && lessOrEqualWithAbsoluteTolerance(avg, max))) {
       // in this case the min <= avg <= max does not hold
-      return BooleanResultMessage.newInvalid(
-          () ->
-              String.format(
-                  ValidationMessages.GAUGE_INCONSISTENT_FIELDS_MESSAGE,
-                  min,
-                  max,
-                  sum,
-                  count,
-                  avg,
-                  COMPARISON_ABSOLUTE_TOLERANCE));
+      return GAUGE_INCONSISTENT_FIELDS;
     }
 
     return BooleanResultMessage.newValid();
   }
 
+  /**
+   * Formats the error-message of a result returned by {@link #isSummaryValid}.
+   *
+   * @param result The result of the validation.
+   * @param min The minimum that was validated.
+   * @param max The maximum that was validated.
+   * @param sum The sum that was validated.
+   * @param count The count that was validated.
+   * @return The error-message, or {@code null} if the result is valid.
+   */
+  static String summaryMessage(
+      BooleanResultMessage result, double min, double max, double sum, long count) {
+    return result.getMessage(min, max, sum, count, sum / count, COMPARISON_ABSOLUTE_TOLERANCE);
+  }
+
   private static boolean lessOrEqualWithAbsoluteTolerance(double val1, double val2) {
     // equals
     if (Double.valueOf(val1).equals(Double.valueOf(val2))) {
@@ -106,18 +123,28 @@ final class NumberValueValidator {
    * Checks if the value of a gauge or delta of a counter is not a number, or is +/- infinity.
    *
    * @param value Either the value of a gauge, or the delta of a counter
-   * @return The {@link BooleanResultMessage result}, containing if the value is valid, or not along
-   *     with an error-message.
+   * @return The {@link BooleanResultMessage result}, containing if the value is valid. Use {@link
+   *     #valueMessage} to get the error-message.
    */
   static BooleanResultMessage isValueValid(double value) {
     if (Double.isNaN(value)) {
-      return BooleanResultMessage.newInvalid(() -> ValidationMessages.VALUE_NAN_MESSAGE);
+      return VALUE_NAN;
     }
     if (Double.isInfinite(value)) {
-      return BooleanResultMessage.newInvalid(
-          () -> String.format(ValidationMessages.VALUE_INFINITE_MESSAGE, value));
+      return VALUE_INFINITE;
     }
 
     return BooleanResultMessage.newValid();
   }
+
+  /**
+   * Formats the error-message of a result returned by {@link #isValueValid}.
+   *
+   * @param result The result of the validation.
+   * @param value The value that was validated.
+   * @return The error-message, or {@code null} if the result is valid.
+   */
+  static String valueMessage(BooleanResultMessage result, double value) {
+    return result.getMessage(value);
+  }
 }
@@ -15,6 +15,9 @@ package com.dynatrace.metric.util;
 
 /** Offers validation methods for metric-line specific strings */
 final class StringValueValidator {
+  private static final CodePointBitmap INVALID_CODE_POINTS =
+      CodePointBitmap.of(StringValueValidator::isInvalidCodePointType);
+
   private StringValueValidator() {}
 
   /**
@@ -23,8 +26,8 @@ final class StringValueValidator {
    * @param value The string value, which should be checked
    * @return True, if the value is empty or null, otherwise false.
    */
-  static boolean isNullOrEmpty(final String value) {
-    return value == null || value.isEmpty();
+  static boolean isNullOrEmpty(final CharSequence value) {
+    return value == null || value.length() == 0;
   }
 
   /**
@@ -34,11 +37,7 @@ final class StringValueValidator {
    * @return True if the codepoint falls into the list of chars to escape, false otherwise.
    */
   static boolean shouldEscapeString(int codePoint) {
-    return codePoint == CodePoints.COMMA
-        || codePoint == CodePoints.EQUALS
-        || codePoint == CodePoints.BLANK
-        || codePoint == CodePoints.BACKSLASH
-        || codePoint == CodePoints.QUOTE;
+    return CharacterClasses.is(codePoint, CharacterClasses.VALUE_ESCAPE);
   }
 
   /**
@@ -48,7 +47,7 @@ final class StringValueValidator {
    * @return True if the codepoint falls into the list of chars to escape, false otherwise.
    */
   static boolean shouldEscapeQuotedString(int codePoint) {
-    return codePoint == CodePoints.QUOTE || codePoint == CodePoints.BACKSLASH;
+    return CharacterClasses.is(codePoint, CharacterClasses.QUOTED_VALUE_ESCAPE);
   }
 
   /**
@@ -69,6 +68,21 @@ final class StringValueValidator {
    *     otherwise.
    */
   static boolean isInvalidCodePoint(int codePoint) {
+    if (CharacterClasses.isAscii(codePoint)) {
+      return CharacterClasses.is(codePoint, CharacterClasses.VALUE_INVALID);
+    }
+    return INVALID_CODE_POINTS.contains(codePoint);
+  }
+
+  /**
+   * Checks the Unicode category of the codepoint. This is only used to compute the bitmap of
+   * invalid code points, see {@link #isInvalidCodePoint(int)}.
+   *
+   * @param codePoint The codepoint.
+   * @return True if the codepoint falls into the list of invalid chars for dimension values, false
+   *     otherwise.
+   */
+  private static boolean isInvalidCodePointType(int codePoint) {
     switch (Character.getType(codePoint)) {
       case Character.UNASSIGNED:
         // support all emojis of unicode range "Supplemental Symbols and Pictographs"
@@ -133,23 +147,43 @@ final class StringValueValidator {
    * @return True if it needs to be normalized (truncated, replaced or escaped), false otherwise.
    */
   static boolean normalizationRequiredUnqoutedStringValue(
-      String value, int maxDimensionValueLength) {
-    final int length = value.length();
-
-    if (length > maxDimensionValueLength) {
-      return true;
-    }
+      CharSequence value, int maxDimensionValueLength) {
+    return firstNormalizationIndexUnquotedStringValue(value, maxDimensionValueLength) >= 0;
+  }
 
-    for (int offset = 0; offset < length; ) {
-      final int codePoint = value.codePointAt(offset);
+  /**
+   * Iterates through the string dimension value once to find the first position at which it needs
+   * to be normalized. Everything before that position is kept as is.
+   *
+   * @param value The dimension string value
+   * @param maxDimensionValueLength The maximum value to compare too. E.g. The maximum value for
+   *     dimensions
+   * @return The index of the first codepoint that needs to be replaced, escaped or that does not
+   *     fit anymore, or -1 if the value does not need to be normalized.
+   */
+  static int firstNormalizationIndexUnquotedStringValue(
+      CharSequence value, int maxDimensionValueLength) {
+    final int length = value.length();
 
-      if (isInvalidCodePoint(codePoint) || shouldEscapeString(codePoint)) {
-        return true;
+    // only the part after the clean ASCII prefix has to be checked codepoint by codepoint
+    final int asciiEnd =
+        CharacterClasses.indexOfNonCleanAscii(
+            value,
+            0,
+            Math.min(length, maxDimensionValueLength),
+            CharacterClasses.VALUE_ESCAPE | CharacterClasses.VALUE_INVALID);
+    for (int offset = asciiEnd; offset < length; ) {
+      final int codePoint = Character.codePointAt(value, offset);
+
+      if (isInvalidCodePoint(codePoint)
+          || shouldEscapeString(codePoint)
+          || !canAppendToValue(offset, codePoint, false, false, maxDimensionValueLength)) {
+        return offset;
       }
 
       offset += Character.charCount(codePoint);
     }
-    return false;
+    return -1;
   }
 
   /**
@@ -161,27 +195,52 @@ final class StringValueValidator {
    *     dimensions
    * @return True if it needs to be normalized (truncated, replaced or escaped), false otherwise.
    */
-  static boolean normalizationRequiredQuotedStringValue(String value, int maxDimensionValueLength) {
-    final int length = value.length();
-
-    if (length > maxDimensionValueLength) {
-      return true;
-    }
+  static boolean normalizationRequiredQuotedStringValue(
+      CharSequence value, int maxDimensionValueLength) {
+    return firstNormalizationIndexQuotedStringValue(value, maxDimensionValueLength) >= 0;
+  }
 
+  /**
+   * Iterates through the quoted string dimension value once to find the first position at which it
+   * needs to be normalized. Everything before that position is kept as is.
+   *
+   * @param value The quoted dimension string value
+   * @param maxDimensionValueLength The maximum value to compare too. E.g. The maximum value for
+   *     dimensions
+   * @return The index of the first codepoint (after the opening quote) that needs to be replaced,
+   *     escaped or that does not fit anymore, or -1 if the value does not need to be normalized.
+   */
+  static int firstNormalizationIndexQuotedStringValue(
+      CharSequence value, int maxDimensionValueLength) {
+    final int length = value.length();
     final int quoteSize = Character.charCount(CodePoints.QUOTE);
     final int contentLength = length - quoteSize;
 
-    // start from the first quote (thus skipping it) and stops before the last one
-    for (int offset = quoteSize; offset < contentLength; ) {
-      final int codePoint = value.codePointAt(offset);
-
-      if (isInvalidCodePoint(codePoint) || shouldEscapeQuotedString(codePoint)) {
-        return true;
+    // start from the first quote (thus skipping it) and stops before the last one. Only the part
+    // after the clean ASCII prefix has to be checked codepoint by codepoint.
+    final int asciiEnd =
+        CharacterClasses.indexOfNonCleanAscii(
+            value,
+            quoteSize,
+            Math.max(quoteSize, Math.min(contentLength, maxDimensionValueLength - quoteSize)),
+            CharacterClasses.QUOTED_VALUE_ESCAPE | CharacterClasses.VALUE_INVALID);
+    for (int offset = asciiEnd; offset < contentLength; ) {
+      final int codePoint = Character.codePointAt(value, offset);
+
+      if (isInvalidCodePoint(codePoint)
+          || shouldEscapeQuotedString(codePoint)
+          || !canAppendToValue(offset, codePoint, true, false, maxDimensionValueLength)) {
+        return offset;
       }
 
       offset += Character.charCount(codePoint);
     }
-    return false;
+
+    if (length > maxDimensionValueLength) {
+      // only reachable for values without content, normalize them from the start
+      return Math.min(quoteSize, length);
+    }
+    return -1;
   }
 
   enum State {
@@ -34,12 +34,11 @@ final class UnitValidator {
       return false;
     }
 
-    for (int offset = 0; offset < length; ) {
-      final int codePoint = unit.codePointAt(offset);
-      if (!isAllowedChar(codePoint)) {
+    // all allowed characters are ASCII, so any char of a non-ASCII codepoint is not allowed
+    for (int offset = 0; offset < length; offset++) {
+      if (!isAllowedChar(unit.charAt(offset))) {
         return false;
       }
-      offset += Character.charCount(codePoint);
     }
     return true;
   }
@@ -53,35 +52,6 @@ final class UnitValidator {
   private static boolean isAllowedChar(int codePoint) {
     // Uppercase and lowercase letters, numbers and these special characters (not the comma): %, [,
     // ], {, }, /, _
-    return isLetter(codePoint)
-        || isNumber(codePoint)
-        || codePoint == CodePoints.PERCENT_SIGN
-        || codePoint == CodePoints.OPEN_SQUARE_BRACKET
-        || codePoint == CodePoints.CLOSED_SQUARE_BRACKET
-        || codePoint == CodePoints.OPEN_CURLY_BRACKET
-        || codePoint == CodePoints.CLOSED_CURLY_BRACKET
-        || codePoint == CodePoints.FORWARD_SLASH
-        || codePoint == CodePoints.UNDERSCORE;
-  }
-
-  /**
-   * Checks if the codepoint is either a lowercase or uppercase letter.
-   *
-   * @param codePoint The codepoint.
-   * @return True if the codepoint is a letter, otherwise false.
-   */
-  private static boolean isLetter(int codePoint) {
-    return (codePoint >= CodePoints.A_LOWERCASE && codePoint <= CodePoints.Z_LOWERCASE)
-        || (codePoint >= CodePoints.A_UPPERCASE && codePoint <= CodePoints.Z_UPPERCASE);
-  }
-
-  /**
-   * Checks if the codepoint is a number.
-   *
-   * @param codePoint The codepoint.
-   * @return True if the codepoint is a number, otherwise false.
-   */
-  private static boolean isNumber(int codePoint) {
-    return codePoint >= CodePoints.ZERO && codePoint <= CodePoints.NINE;
+    return CharacterClasses.is(codePoint, CharacterClasses.UNIT);
   }
 }
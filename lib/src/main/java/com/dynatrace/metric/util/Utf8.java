@@ -0,0 +1,154 @@
+/**
+ * Copyright 2023 Dynatrace LLC
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dynatrace.metric.util;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Offers methods to encode chars as UTF-8 directly into byte buffers. Unpaired surrogates are
+ * encoded as {@code '?'}, the same way {@link String#getBytes(java.nio.charset.Charset)} does.
+ */
+final class Utf8 {
+  private static final byte REPLACEMENT_BYTE = (byte) '?';
+
+  private Utf8() {}
+
+  /**
+   * Calculates the number of bytes needed to encode the chars as UTF-8.
+   *
+   * @param chars The chars to encode.
+   * @param start The index of the first char to encode.
+   * @param end The index after the last char to encode.
+   * @return The number of bytes the UTF-8 encoded chars take up.
+   */
+  static int encodedLength(CharSequence chars, int start, int end) {
+    int length = end - start;
+    for (int i = start; i < end; i++) {
+      final char c = chars.charAt(i);
+      if (c < 0x80) {
+        continue;
+      }
+      if (c < 0x800) {
+        length += 1;
+      } else if (!Character.isSurrogate(c)) {
+        length += 2;
+      } else if (isSurrogatePair(chars, i, end)) {
+        // 4 bytes for 2 chars
+        length += 2;
+        i++;
+      }
+      // unpaired surrogates are encoded as a single replacement byte
+    }
+    return length;
+  }
+
+  /**
+   * Encodes the chars as UTF-8 and writes them to the target, starting at its current position. The
+   * caller has to make sure that the target has enough space remaining (see {@link
+   * #encodedLength(CharSequence, int, int)}).
+   *
+   * @param chars The chars to encode.
+   * @param start The index of the first char to encode.
+   * @param end The index after the last char to encode.
+   * @param target The {@link ByteBuffer} that the encoded chars are written to.
+   */
+  static void encode(CharSequence chars, int start, int end, ByteBuffer target) {
+    if (!target.hasArray()) {
+      encodeToBuffer(chars, start, end, target);
+      return;
+    }
+
+    final byte[] array = target.array();
+    final int offset = target.arrayOffset();
+    int position = offset + target.position();
+
+    for (int i = start; i < end; i++) {
+      final char c = chars.charAt(i);
+      if (c < 0x80) {
+        array[position++] = (byte) c;
+      } else if (c < 0x800) {
+        array[position++] = (byte) (0xC0 | (c >> 6));
+        array[position++] = (byte) (0x80 | (c & 0x3F));
+      } else if (!Character.isSurrogate(c)) {
+        array[position++] = (byte) (0xE0 | (c >> 12));
+        array[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+        array[position++] = (byte) (0x80 | (c & 0x3F));
+      } else if (isSurrogatePair(chars, i, end)) {
+        final int codePoint = Character.toCodePoint(c, chars.charAt(++i));
+        array[position++] = (byte) (0xF0 | (codePoint >> 18));
+        array[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+        array[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+        array[position++] = (byte) (0x80 | (codePoint & 0x3F));
+      } else {
+        array[position++] = REPLACEMENT_BYTE;
+      }
+    }
+    target.position(position - offset);
+  }
+
+  /**
+   * Writes chars that are known to be ASCII (e.g. serialized numbers) to the target, starting at
+   * its current position.
+   *
+   * @param chars The ASCII chars.
+   * @param target The {@link ByteBuffer} that the chars are written to.
+   */
+  static void encodeAscii(CharSequence chars, ByteBuffer target) {
+    final int length = chars.length();
+    if (!target.hasArray()) {
+      for (int i = 0; i < length; i++) {
+        target.put((byte) chars.charAt(i));
+      }
+      return;
+    }
+
+    final byte[] array = target.array();
+    final int position = target.arrayOffset() + target.position();
+    for (int i = 0; i < length; i++) {
+      array[position + i] = (byte) chars.charAt(i);
+    }
+    target.position(target.position() + length);
+  }
+
+  private static void encodeToBuffer(CharSequence chars, int start, int end, ByteBuffer target) {
+    for (int i = start; i < end; i++) {
+      final char c = chars.charAt(i);
+      if (c < 0x80) {
+        target.put((byte) c);
+      } else if (c < 0x800) {
+        target.put((byte) (0xC0 | (c >> 6))).put((byte) (0x80 | (c & 0x3F)));
+      } else if (!Character.isSurrogate(c)) {
+        target
+            .put((byte) (0xE0 | (c >> 12)))
+            .put((byte) (0x80 | ((c >> 6) & 0x3F)))
+            .put((byte) (0x80 | (c & 0x3F)));
+      } else if (isSurrogatePair(chars, i, end)) {
+        final int codePoint = Character.toCodePoint(c, chars.charAt(++i));
+        target
+            .put((byte) (0xF0 | (codePoint >> 18)))
+            .put((byte) (0x80 | ((codePoint >> 12) & 0x3F)))
+            .put((byte) (0x80 | ((codePoint >> 6) & 0x3F)))
+            .put((byte) (0x80 | (codePoint & 0x3F)));
+      } else {
+        target.put(REPLACEMENT_BYTE);
+      }
+    }
+  }
+
+  private static boolean isSurrogatePair(CharSequence chars, int index, int end) {
+    return Character.isHighSurrogate(chars.charAt(index))
+        && index + 1 < end
+        && Character.isLowSurrogate(chars.charAt(index + 1));
+  }
+}
@@ -0,0 +1,34 @@
+/**
+ * Copyright 2023 Dynatrace LLC
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dynatrace.metric.util.spi;
+
+/**
+ * Scans strings for characters that are not ASCII or belong to a fixed set of forbidden ASCII
+ * characters, e.g. with SIMD instructions. Scanners are created by a {@link
+ * BulkCharacterScannerProvider}.
+ *
+ * <p>This interface is only public so that optional companion artifacts of this library can
+ * implement it. It is not part of the API of this library and can change in any release.
+ */
+public interface BulkCharacterScanner {
+
+  /**
+   * @param value The string to scan.
+   * @param from The index to start at (inclusive).
+   * @param to The index to stop at (exclusive).
+   * @return The index of the first character that is not ASCII or is forbidden, or {@code to} if
+   *     there is none.
+   */
+  int indexOfNonCleanAscii(CharSequence value, int from, int to);
+}
@@ -0,0 +1,35 @@
+/**
+ * Copyright 2023 Dynatrace LLC
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dynatrace.metric.util.spi;
+
+/**
+ * Service interface for {@link BulkCharacterScanner bulk character scanners}. Implementations are
+ * optional and discovered with {@link java.util.ServiceLoader}; if none is available (or it cannot
+ * be loaded on the running JVM), this library uses its scalar scan.
+ *
+ * <p>This interface is only public so that optional companion artifacts of this library can
+ * implement it. It is not part of the API of this library and can change in any release.
+ */
+public interface BulkCharacterScannerProvider {
+
+  /**
+   * Creates a scanner for a set of forbidden ASCII characters. This is called once per set, when
+   * the provider is loaded.
+   *
+   * @param forbiddenAscii The flags of the ASCII characters, {@code true} if the character at that
+   *     index is forbidden. The array has 128 entries and must not be modified.
+   * @return The scanner, or {@code null} if this provider cannot scan for the set efficiently.
+   */
+  BulkCharacterScanner create(boolean[] forbiddenAscii);
+}
@@ -0,0 +1,150 @@
+/**
+ * Copyright 2023 Dynatrace LLC
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dynatrace.metric.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.dynatrace.metric.util.spi.BulkCharacterScanner;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntPredicate;
+import org.junit.jupiter.api.Test;
+
+class CharacterClassesTest {
+
+  private static boolean isLowercase(int c) {
+    return c >= 'a' && c <= 'z';
+  }
+
+  private static boolean isLetter(int c) {
+    return isLowercase(c) || c >= 'A' && c <= 'Z';
+  }
+
+  private static boolean isDigit(int c) {
+    return c >= '0' && c <= '9';
+  }
+
+  private static void assertClass(int flag, IntPredicate expected) {
+    for (int c = 0; c <= Character.MAX_CODE_POINT; c++) {
+      assertEquals(
+          expected.test(c), CharacterClasses.is(c, flag), String.format("codepoint U+%04X", c));
+    }
+  }
+
+  @Test
+  void testMetricKeyClasses() {
+    assertClass(CharacterClasses.METRIC_KEY_START, c -> isLetter(c) || c == '_');
+    assertClass(
+        CharacterClasses.METRIC_KEY_SECTION,
+        c -> isLetter(c) || isDigit(c) || c == '_' || c == '-');
+  }
+
+  @Test
+  void testDimensionKeyClasses() {
+    assertClass(CharacterClasses.DIMENSION_KEY_START, c -> isLowercase(c) || c == '_');
+    assertClass(
+        CharacterClasses.DIMENSION_KEY_SECTION,
+        c -> isLowercase(c) || isDigit(c) || c == '_' || c == '-' || c == ':');
+  }
+
+  @Test
+  void testValueClasses() {
+    assertClass(CharacterClasses.VALUE_ESCAPE, c -> ",= \\\"".indexOf(c) >= 0);
+    assertClass(CharacterClasses.QUOTED_VALUE_ESCAPE, c -> c == '\\' || c == '"');
+    assertClass(CharacterClasses.VALUE_INVALID, c -> c < 0x20 || c == 0x7F);
+  }
+
+  @Test
+  void testUnitClass() {
+    assertClass(
+        CharacterClasses.UNIT, c -> isLetter(c) || isDigit(c) || "%[]{}/_".indexOf(c) >= 0);
+  }
+
+  @Test
+  void testCombinedClasses() {
+    int classes = CharacterClasses.VALUE_ESCAPE | CharacterClasses.UNIT;
+    assertTrue(CharacterClasses.is(',', classes));
+    assertTrue(CharacterClasses.is('%', classes));
+    assertFalse(CharacterClasses.is('.', classes));
+  }
+
+  @Test
+  void testIsAscii() {
+    assertTrue(CharacterClasses.isAscii(0));
+    assertTrue(CharacterClasses.isAscii(0x7F));
+    assertFalse(CharacterClasses.isAscii(0x80));
+    assertFalse(CharacterClasses.isAscii(-1));
+  }
+
+  @Test
+  void testIndexOfNonCleanAscii() {
+    int forbidden = CharacterClasses.VALUE_ESCAPE | CharacterClasses.VALUE_INVALID;
+    assertEquals(0, CharacterClasses.indexOfNonCleanAscii("", 0, 0, forbidden));
+    assertEquals(5, CharacterClasses.indexOfNonCleanAscii("value", 0, 5, forbidden));
+    assertEquals(5, CharacterClasses.indexOfNonCleanAscii("value two", 0, 9, forbidden));
+    assertEquals(5, CharacterClasses.indexOfNonCleanAscii("value\u00E4", 0, 6, forbidden));
+    assertEquals(5, CharacterClasses.indexOfNonCleanAscii("value\n", 0, 6, forbidden));
+    assertEquals(4, CharacterClasses.indexOfNonCleanAscii("va,ue", 3, 4, forbidden));
+    assertEquals(2, CharacterClasses.indexOfNonCleanAscii("va,ue", 1, 4, forbidden));
+  }
+
+  @Test
+  void testIndexOfNonCleanAsciiEveryPosition() {
+    int forbidden = CharacterClasses.QUOTED_VALUE_ESCAPE | CharacterClasses.VALUE_INVALID;
+    // covers the groups of four chars and the remaining chars after them
+    for (int length = 0; length <= 13; length++) {
+      StringBuilder clean = new StringBuilder();
+      for (int i = 0; i < length; i++) {
+        clean.append((char) ('a' + i));
+      }
+      assertEquals(
+          length, CharacterClasses.indexOfNonCleanAscii(clean.toString(), 0, length, forbidden));
+
+      for (int position = 0; position < length; position++) {
+        for (char special : new char[] {'"', '\\', '\n', '\u007F', '\u00E4', '\uD83D'}) {
+          StringBuilder sb = new StringBuilder(clean);
+          sb.setCharAt(position, special);
+          String value = sb.toString();
+          assertEquals(
+              position, CharacterClasses.indexOfNonCleanAscii(value, 0, length, forbidden), value);
+          assertEquals(
+              position == 0 ? length : position,
+              CharacterClasses.indexOfNonCleanAscii(value, 1, length, forbidden),
+              value);
+        }
+      }
+    }
+  }
+
+  @Test
+  void testCreatesBulkScannersPerClassCombination() {
+    List<boolean[]> sets = new ArrayList<>();
+    BulkCharacterScanner[] scanners =
+        CharacterClasses.createScanners(
+            forbidden -> {
+              sets.add(forbidden);
+              return forbidden[','] ? null : (value, from, to) -> from;
+            });
+
+    assertEquals(256, scanners.length);
+    for (int classes = 0; classes < scanners.length; classes++) {
+      boolean[] forbidden = sets.get(classes);
+      assertEquals(128, forbidden.length);
+      for (int c = 0; c < forbidden.length; c++) {
+        assertEquals(CharacterClasses.is(c, classes), forbidden[c]);
+      }
+      assertEquals((classes & CharacterClasses.VALUE_ESCAPE) != 0, scanners[classes] == null);
+    }
+  }
+}
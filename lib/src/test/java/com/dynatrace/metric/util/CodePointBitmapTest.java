@@ -0,0 +1,78 @@
+/**
+ * Copyright 2023 Dynatrace LLC
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dynatrace.metric.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntPredicate;
+import org.junit.jupiter.api.Test;
+
+class CodePointBitmapTest {
+
+  private static void assertMatchesPredicate(IntPredicate predicate) {
+    CodePointBitmap bitmap = CodePointBitmap.of(predicate);
+    for (int c = 0; c <= Character.MAX_CODE_POINT; c++) {
+      assertEquals(predicate.test(c), bitmap.contains(c), String.format("codepoint U+%04X", c));
+    }
+  }
+
+  @Test
+  void testMatchesPredicate() {
+    assertMatchesPredicate(Character::isLetter);
+    assertMatchesPredicate(c -> Character.getType(c) == Character.CONTROL);
+    assertMatchesPredicate(c -> c % 3 == 0);
+    assertMatchesPredicate(c -> c == Character.MAX_CODE_POINT);
+  }
+
+  @Test
+  void testEmptyAndFull() {
+    CodePointBitmap empty = CodePointBitmap.of(c -> false);
+    CodePointBitmap full = CodePointBitmap.of(c -> true);
+    assertFalse(empty.contains(0));
+    assertFalse(empty.contains(0x1F600));
+    assertTrue(full.contains(0));
+    assertTrue(full.contains(Character.MAX_CODE_POINT));
+  }
+
+  @Test
+  void testPredicateIsEvaluatedOncePerCodePoint() {
+    AtomicInteger evaluations = new AtomicInteger();
+    CodePointBitmap bitmap =
+        CodePointBitmap.of(
+            c -> {
+              evaluations.incrementAndGet();
+              return c == 0x4E2D;
+            });
+    assertEquals(0, evaluations.get());
+
+    // the first lookup computes the block of 256 code points
+    assertTrue(bitmap.contains(0x4E2D));
+    assertFalse(bitmap.contains(0x4E2E));
+    assertFalse(bitmap.contains(0x4E00));
+    assertEquals(256, evaluations.get());
+
+    assertFalse(bitmap.contains(0x4F00));
+    assertEquals(512, evaluations.get());
+  }
+
+  @Test
+  void testInvalidCodePoints() {
+    CodePointBitmap bitmap = CodePointBitmap.of(c -> true);
+    assertFalse(bitmap.contains(-1));
+    assertFalse(bitmap.contains(Character.MAX_CODE_POINT + 1));
+    assertFalse(bitmap.contains(Integer.MIN_VALUE));
+    assertFalse(bitmap.contains(Integer.MAX_VALUE));
+  }
+}
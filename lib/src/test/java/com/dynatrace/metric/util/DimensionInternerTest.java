@@ -0,0 +1,112 @@
+/**
+ * Copyright 2023 Dynatrace LLC
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dynatrace.metric.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class DimensionInternerTest {
+
+  @Test
+  void testAdmittedPairIsInterned() {
+    DimensionInterner interner = new DimensionInterner(10, 10);
+    assertNull(interner.get("key", "value"));
+
+    DimensionInterner.Segment segment = interner.admit("key", "value", "key", "value");
+    assertNotNull(segment);
+    assertEquals("key", segment.key());
+    assertEquals("value", segment.value());
+    assertEquals(",key=value", segment.serialized());
+
+    assertSame(segment, interner.get("key", "value"));
+    assertSame(segment, interner.admit("key", "value", "key", "value"));
+    assertNull(interner.get("key", "other"));
+    assertNull(interner.get("other", "value"));
+    assertEquals(1, interner.size());
+  }
+
+  @Test
+  void testNullAndEmptyValuesAreNotInterned() {
+    DimensionInterner interner = new DimensionInterner(10, 10);
+    assertNull(interner.admit("key", null, "key", null));
+    assertNull(interner.admit("key", "", "key", ""));
+    assertNull(interner.get("key", null));
+    assertNull(interner.get("key", ""));
+    assertEquals(0, interner.size());
+  }
+
+  @Test
+  void testHighCardinalityKeyIsDisabled() {
+    DimensionInterner interner = new DimensionInterner(10, 3);
+    interner.admit("stable", "value", "stable", "value");
+    for (int i = 0; i < 3; i++) {
+      assertNotNull(interner.admit("request_id", "id" + i, "request_id", "id" + i));
+    }
+    assertEquals(4, interner.size());
+
+    // the fourth distinct value exceeds the limit and drops all values of the key
+    assertNull(interner.admit("request_id", "id3", "request_id", "id3"));
+    assertNull(interner.get("request_id", "id0"));
+    assertNull(interner.admit("request_id", "id0", "request_id", "id0"));
+    assertEquals(1, interner.size());
+
+    // other keys are not affected
+    assertNotNull(interner.get("stable", "value"));
+  }
+
+  @Test
+  void testKeyLimit() {
+    DimensionInterner interner = new DimensionInterner(2, 10);
+    assertNotNull(interner.admit("key1", "value", "key1", "value"));
+    assertNotNull(interner.admit("key2", "value", "key2", "value"));
+    assertNull(interner.admit("key3", "value", "key3", "value"));
+    assertNull(interner.get("key3", "value"));
+
+    // known keys can still admit new values
+    assertNotNull(interner.admit("key1", "other", "key1", "other"));
+    assertEquals(3, interner.size());
+  }
+
+  @Test
+  void testResetClearsLimits() {
+    DimensionInterner interner = new DimensionInterner(1, 1);
+    assertNotNull(interner.admit("request_id", "id0", "request_id", "id0"));
+    assertNull(interner.admit("request_id", "id1", "request_id", "id1"));
+    assertNull(interner.admit("other", "value", "other", "value"));
+
+    interner.reset();
+    assertEquals(0, interner.size());
+    assertNotNull(interner.admit("other", "value", "other", "value"));
+  }
+
+  @Test
+  void testPeriodicReset() {
+    AtomicLong nanoTime = new AtomicLong();
+    DimensionInterner interner = new DimensionInterner(10, 1, Duration.ofMinutes(1), nanoTime::get);
+    assertNotNull(interner.admit("request_id", "id0", "request_id", "id0"));
+    assertNull(interner.admit("request_id", "id1", "request_id", "id1"));
+
+    nanoTime.addAndGet(Duration.ofSeconds(59).toNanos());
+    assertNull(interner.admit("request_id", "id1", "request_id", "id1"));
+
+    // once the interval has elapsed, the key is no longer considered high cardinality
+    nanoTime.addAndGet(Duration.ofSeconds(1).toNanos());
+    assertNotNull(interner.admit("request_id", "id1", "request_id", "id1"));
+    assertEquals(1, interner.size());
+    assertNull(interner.get("request_id", "id0"));
+  }
+}
@@ -13,6 +13,7 @@
  */
 package com.dynatrace.metric.util;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -36,6 +37,29 @@ public class DimensionKeyValidatorTest {
     assertTrue(DimensionKeyValidator.normalizationRequired(input));
   }
 
+  @ParameterizedTest(name = "{index}: {0}, input: {1}, expected: {2}")
+  @MethodSource("provideDimensionKeys_firstNormalizationIndex")
+  void testFirstNormalizationIndex(String name, String input, int expected) {
+    assertEquals(expected, DimensionKeyValidator.firstNormalizationIndex(input));
+    assertEquals(
+        expected,
+        DimensionKeyValidator.firstNormalizationIndex(
+            input == null ? null : new StringBuilder(input)));
+  }
+
+  private static Stream<Arguments> provideDimensionKeys_firstNormalizationIndex() {
+    return Stream.of(
+        Arguments.of("valid", "dim.key:a-b", -1),
+        Arguments.of("null", null, 0),
+        Arguments.of("empty", "", 0),
+        Arguments.of("uppercase first char", "Dim", 0),
+        Arguments.of("uppercase char in section", "dim.kEy", 5),
+        Arguments.of("empty section", "dim..key", 4),
+        Arguments.of("trailing dot", "dim.key.", 7),
+        Arguments.of("non-ASCII char", "dim.k\u00E4y", 5),
+        Arguments.of("too long", TestUtils.repeatStringNTimes("a", 110), 100));
+  }
+
   private static Stream<Arguments> provideDimensionKeys_shouldNotNormalize() {
     return Stream.of(
         Arguments.of("valid value", "value"),
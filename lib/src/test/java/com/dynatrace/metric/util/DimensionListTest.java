@@ -0,0 +1,72 @@
+/**
+ * Copyright 2023 Dynatrace LLC
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dynatrace.metric.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class DimensionListTest {
+
+  @Test
+  void testKeepsInsertionOrder() {
+    DimensionList dimensions = new DimensionList();
+    dimensions.put("c", "1");
+    dimensions.put("a", "2");
+    dimensions.put("b", "3");
+
+    assertEquals(3, dimensions.size());
+    assertEquals("c", dimensions.keyAt(0));
+    assertEquals("a", dimensions.keyAt(1));
+    assertEquals("b", dimensions.keyAt(2));
+    assertEquals("1", dimensions.valueAt(0));
+    assertEquals("2", dimensions.valueAt(1));
+    assertEquals("3", dimensions.valueAt(2));
+  }
+
+  @Test
+  void testPutExistingKeyReplacesValueInPlace() {
+    DimensionList dimensions = new DimensionList();
+    dimensions.put("a", "1");
+    dimensions.put("b", "2");
+    dimensions.put("a", "3");
+
+    assertEquals(2, dimensions.size());
+    assertEquals(0, dimensions.indexOf("a"));
+    assertEquals("3", dimensions.valueAt(0));
+    assertTrue(dimensions.containsKey("b"));
+    assertFalse(dimensions.containsKey("c"));
+    assertEquals(-1, dimensions.indexOf("c"));
+  }
+
+  @Test
+  void testGrowsAndClears() {
+    DimensionList dimensions = new DimensionList();
+    for (int i = 0; i < MetricLineConstants.Limits.MAX_DIMENSIONS_COUNT; i++) {
+      dimensions.put("key" + i, "value" + i);
+    }
+
+    assertEquals(MetricLineConstants.Limits.MAX_DIMENSIONS_COUNT, dimensions.size());
+    assertEquals("key49", dimensions.keyAt(49));
+    assertEquals("value49", dimensions.valueAt(49));
+
+    dimensions.clear();
+    assertEquals(0, dimensions.size());
+    assertFalse(dimensions.containsKey("key0"));
+
+    dimensions.put("key", "value");
+    assertEquals(1, dimensions.size());
+    assertEquals("key", dimensions.keyAt(0));
+  }
+}
@@ -0,0 +1,58 @@
+/**
+ * Copyright 2023 Dynatrace LLC
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dynatrace.metric.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class DimensionTest {
+
+  @Test
+  void testValidDimension() throws MetricException {
+    Dimension dimension = Dimension.of("dim", "value");
+
+    assertEquals("dim", dimension.getKey());
+    assertEquals("value", dimension.getValue());
+    assertEquals(9, dimension.length());
+    assertEquals("dim=value", dimension.toString());
+  }
+
+  @Test
+  void testDimensionIsNormalized() throws MetricException {
+    Dimension dimension = Dimension.of("Dim Key", "a=b c");
+
+    assertEquals("dim_key", dimension.getKey());
+    assertEquals("a\\=b\\ c", dimension.getValue());
+  }
+
+  @Test
+  void testNullValueBecomesEmpty() throws MetricException {
+    assertEquals("", Dimension.of("dim", null).getValue());
+  }
+
+  @Test
+  void testInvalidKeys() {
+    assertThrows(MetricException.class, () -> Dimension.of(null, "value"));
+    assertThrows(MetricException.class, () -> Dimension.of("", "value"));
+  }
+
+  @Test
+  void testEquality() throws MetricException {
+    assertEquals(Dimension.of("dim", "value"), Dimension.of("dim", "value"));
+    assertEquals(Dimension.of("dim", "value").hashCode(), Dimension.of("dim", "value").hashCode());
+    assertNotEquals(Dimension.of("dim", "value"), Dimension.of("dim", "other"));
+    assertNotEquals(Dimension.of("dim", "value"), Dimension.of("other", "value"));
+  }
+}
@@ -0,0 +1,102 @@
+/**
+ * Copyright 2023 Dynatrace LLC
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dynatrace.metric.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+class DoubleFormatterTest {
+
+  @ParameterizedTest(name = "{index}: {0}")
+  @MethodSource("provideDoubles")
+  void testAppend(String expected, double value) {
+    assertEquals(expected, format(value));
+  }
+
+  @Test
+  void testAppendsToExistingContent() {
+    StringBuilder sb = new StringBuilder("min=");
+    DoubleFormatter.append(sb, 1.5).append(",max=");
+    DoubleFormatter.append(sb, 2);
+
+    assertEquals("min=1.5,max=2", sb.toString());
+  }
+
+  @Test
+  void testRandomValuesRoundTrip() {
+    Random random = new Random(42);
+    boolean shortestToString = javaVersion() >= 19;
+
+    for (int i = 0; i < 100_000; i++) {
+      double value = Double.longBitsToDouble(random.nextLong());
+      if (Double.isNaN(value) || Double.isInfinite(value) || value == (long) value) {
+        continue;
+      }
+
+      String formatted = format(value);
+      assertEquals(value, Double.parseDouble(formatted), formatted);
+      // Double.toString only produces the shortest decimal since Java 19, before that, it
+      // occasionally produces one more digit than necessary.
+      if (shortestToString) {
+        assertEquals(Double.toString(value), formatted);
+      } else {
+        assertTrue(formatted.length() <= Double.toString(value).length(), formatted);
+      }
+    }
+  }
+
+  private static String format(double value) {
+    return DoubleFormatter.append(new StringBuilder(), value).toString();
+  }
+
+  private static int javaVersion() {
+    String version = System.getProperty("java.specification.version");
+    return version.startsWith("1.") ? 8 : Integer.parseInt(version);
+  }
+
+  private static Stream<Arguments> provideDoubles() {
+    return Stream.of(
+        Arguments.of("0", 0.0),
+        Arguments.of("0", -0.0),
+        Arguments.of("-3", -3.0),
+        Arguments.of("9223372036854775807", 9.223372036854776E18),
+        Arguments.of("1.5", 1.5),
+        Arguments.of("-1.5", -1.5),
+        Arguments.of("0.1", 0.1),
+        Arguments.of("0.3", 0.3),
+        Arguments.of("0.30000000000000004", 0.1 + 0.2),
+        Arguments.of("1234567.5", 1234567.5),
+        Arguments.of("1.23456785E7", 12345678.5),
+        Arguments.of("0.001", 0.001),
+        Arguments.of("1.0E-4", 0.0001),
+        Arguments.of("1.25E-5", 0.0000125),
+        Arguments.of("0.0012345", 0.0012345),
+        Arguments.of("1.0E19", 1e19),
+        Arguments.of("1.0E23", 1e23),
+        Arguments.of("2.0E23", 2e23),
+        Arguments.of("1.7976931348623157E308", Double.MAX_VALUE),
+        Arguments.of("2.2250738585072014E-308", Double.MIN_NORMAL),
+        Arguments.of("4.9E-324", Double.MIN_VALUE),
+        Arguments.of("9.9E-324", 2 * Double.MIN_VALUE),
+        Arguments.of("NaN", Double.NaN),
+        Arguments.of("Infinity", Double.POSITIVE_INFINITY),
+        Arguments.of("-Infinity", Double.NEGATIVE_INFINITY));
+  }
+}
@@ -0,0 +1,109 @@
+/**
+ * Copyright 2023 Dynatrace LLC
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dynatrace.metric.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import org.junit.jupiter.api.Test;
+
+class GzipEncoderTest {
+
+  private static byte[] encode(GzipEncoder encoder, byte[] input, int offset, int length)
+      throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    assertEquals(encoder.encode(input, offset, length), encoder.length());
+    encoder.writeTo(out);
+    assertEquals(encoder.length(), out.size());
+    return out.toByteArray();
+  }
+
+  private static byte[] decode(byte[] encoded) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(encoded))) {
+      byte[] buffer = new byte[4096];
+      for (int read; (read = in.read(buffer)) >= 0; ) {
+        out.write(buffer, 0, read);
+      }
+    }
+    return out.toByteArray();
+  }
+
+  @Test
+  void testRoundTrip() throws IOException {
+    StringBuilder payload = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      payload
+          .append("my.prefix.metric,dt.entity.host=HOST-1234,dim=")
+          .append(i)
+          .append(" gauge,1\n");
+    }
+    byte[] input = payload.toString().getBytes(StandardCharsets.UTF_8);
+
+    GzipEncoder encoder = GzipEncoder.acquire(Deflater.DEFAULT_COMPRESSION);
+    try {
+      byte[] encoded = encode(encoder, input, 0, input.length);
+      assertTrue(encoded.length < input.length / 5);
+      assertArrayEquals(input, decode(encoded));
+
+      // the encoder can be used again, and encodes ranges of arrays
+      encoded = encode(encoder, input, 10, 100);
+      assertEquals(payload.substring(10, 110), new String(decode(encoded), StandardCharsets.UTF_8));
+    } finally {
+      encoder.release();
+    }
+  }
+
+  @Test
+  void testGrowsOutputForIncompressibleInput() throws IOException {
+    byte[] input = new byte[100_000];
+    new Random(42).nextBytes(input);
+
+    GzipEncoder encoder = GzipEncoder.acquire(Deflater.BEST_SPEED);
+    try {
+      assertArrayEquals(input, decode(encode(encoder, input, 0, input.length)));
+    } finally {
+      encoder.release();
+    }
+  }
+
+  @Test
+  void testEmptyInput() throws IOException {
+    GzipEncoder encoder = GzipEncoder.acquire(Deflater.BEST_COMPRESSION);
+    try {
+      assertEquals(0, decode(encode(encoder, new byte[0], 0, 0)).length);
+    } finally {
+      encoder.release();
+    }
+  }
+
+  @Test
+  void testPoolsEncodersPerLevel() {
+    GzipEncoder encoder = GzipEncoder.acquire(5);
+    encoder.release();
+    assertSame(encoder, GzipEncoder.acquire(5));
+    assertNotSame(encoder, GzipEncoder.acquire(6));
+    encoder.release();
+
+    assertThrows(IllegalArgumentException.class, () -> GzipEncoder.acquire(-2));
+    assertThrows(IllegalArgumentException.class, () -> GzipEncoder.acquire(10));
+  }
+}
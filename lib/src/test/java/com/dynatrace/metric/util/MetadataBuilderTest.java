@@ -14,10 +14,20 @@
 package com.dynatrace.metric.util;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import com.dynatrace.testutils.Tuple;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Stream;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
@@ -28,6 +38,104 @@ class MetadataBuilderTest {
   private static final String METRIC_NAME = "my.metric";
   private static final String GAUGE_TYPE = MetricLineConstants.PayloadGauge.GAUGE;
 
+  @Test
+  void testMetadataRegistry() throws MetricException, IOException {
+    MetricLinePreConfiguration preConfig =
+        MetricLinePreConfiguration.builder()
+            .metadataRegistry(MetadataRegistry.create(Duration.ofHours(1)))
+            .build();
+    MetricLineBuilder.ReusableMetricKeyStep builder = MetricLineBuilder.createReusable(preConfig);
+
+    String expected = createExpectedLine("description", "unit", null);
+    assertEquals(
+        expected,
+        builder
+            .reset()
+            .metricKey(METRIC_NAME)
+            .gauge()
+            .metadata()
+            .description("description")
+            .unit("unit")
+            .build());
+    // unchanged metadata is not emitted again within the refresh period
+    assertNull(
+        builder
+            .reset()
+            .metricKey(METRIC_NAME)
+            .gauge()
+            .metadata()
+            .description("description")
+            .unit("unit")
+            .build());
+    assertNull(
+        builder
+            .reset()
+            .metricKey(METRIC_NAME)
+            .gauge()
+            .metadata()
+            .description("description")
+            .unit("unit")
+            .buildUtf8());
+
+    // changed metadata is emitted
+    StringBuilder target = new StringBuilder();
+    assertTrue(
+        builder
+            .reset()
+            .metricKey(METRIC_NAME)
+            .gauge()
+            .metadata()
+            .description("changed")
+            .unit("unit")
+            .build(target));
+    assertEquals(createExpectedLine("changed", "unit", null), target.toString());
+
+    // without a registry, metadata lines are always built
+    assertEquals(
+        expected,
+        MetricLineBuilder.create()
+            .metricKey(METRIC_NAME)
+            .gauge()
+            .metadata()
+            .description("description")
+            .unit("unit")
+            .build());
+  }
+
+  @Test
+  void testMetadataRegistryRetriesAfterOverflow() throws MetricException {
+    AtomicLong nanoTime = new AtomicLong();
+    MetricLinePreConfiguration preConfig =
+        MetricLinePreConfiguration.builder()
+            .metadataRegistry(new MetadataRegistry(Duration.ofHours(1), nanoTime::get, 16))
+            .build();
+    MetricLineBuilder.ReusableMetricKeyStep builder = MetricLineBuilder.createReusable(preConfig);
+    String expected = createExpectedLine("description", null, null);
+
+    // nothing is written, so the line is emitted again by the retry
+    assertThrows(
+        BufferOverflowException.class, () -> metadata(builder).writeUtf8(ByteBuffer.allocate(4)));
+    ByteBuffer bytes = ByteBuffer.allocate(1024);
+    assertEquals(expected.length(), metadata(builder).writeUtf8(bytes));
+    assertEquals(expected, new String(bytes.array(), 0, bytes.position(), StandardCharsets.UTF_8));
+    assertEquals(0, metadata(builder).writeUtf8(ByteBuffer.allocate(1024)));
+
+    // the same applies when the refresh period elapsed
+    nanoTime.addAndGet(Duration.ofHours(1).toNanos());
+    assertThrows(
+        BufferOverflowException.class, () -> metadata(builder).writeTo(CharBuffer.allocate(4)));
+    CharBuffer chars = CharBuffer.allocate(1024);
+    assertEquals(expected.length(), metadata(builder).writeTo(chars));
+    chars.flip();
+    assertEquals(expected, chars.toString());
+    assertEquals(0, metadata(builder).writeTo(CharBuffer.allocate(1024)));
+  }
+
+  private static MetricLineBuilder.MetadataStep metadata(
+      MetricLineBuilder.ReusableMetricKeyStep builder) throws MetricException {
+    return builder.reset().metricKey(METRIC_NAME).gauge().metadata().description("description");
+  }
+
   @Test
   void testSetDescriptionTwice() throws MetricException {
     String expected = createExpectedLine("description2", null, null);
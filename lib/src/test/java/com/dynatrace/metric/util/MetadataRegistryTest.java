@@ -0,0 +1,139 @@
+/**
+ * Copyright 2023 Dynatrace LLC
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dynatrace.metric.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.Test;
+
+class MetadataRegistryTest {
+  private static final String GAUGE = MetricLineConstants.PayloadGauge.GAUGE;
+  private static final String COUNT = MetricLineConstants.PayloadCount.COUNT;
+
+  private final AtomicLong nanoTime = new AtomicLong();
+  private final AtomicInteger serializations = new AtomicInteger();
+  private final MetadataRegistry registry =
+      new MetadataRegistry(Duration.ofMinutes(10), nanoTime::get, 3);
+
+  private Supplier<StringBuilder> serializer(String line) {
+    return () -> {
+      serializations.incrementAndGet();
+      return line == null ? null : new StringBuilder(line);
+    };
+  }
+
+  private MetadataRegistry.Emission emission(String key, String type, String description) {
+    return registry.emission(key, type, description, "Byte", null, serializer(description));
+  }
+
+  /** @return The line to emit, after committing it. */
+  private String lineToEmit(String key, String type, String description) {
+    MetadataRegistry.Emission emission = emission(key, type, description);
+    if (emission == null) {
+      return null;
+    }
+    emission.commit();
+    return emission.line().toString();
+  }
+
+  @Test
+  void testEmitsUnchangedLineOnlyOnce() {
+    assertEquals("line", lineToEmit("key", GAUGE, "line"));
+    assertNull(lineToEmit("key", GAUGE, "line"));
+    assertNull(lineToEmit("key", GAUGE, "line"));
+
+    assertEquals(1, serializations.get());
+    assertEquals(1, registry.size());
+  }
+
+  @Test
+  void testEmitsChangedLine() {
+    assertEquals("line", lineToEmit("key", GAUGE, "line"));
+    assertEquals("changed", lineToEmit("key", GAUGE, "changed"));
+    assertEquals("changed", lineToEmit("key", COUNT, "changed"));
+    assertEquals("changed", lineToEmit("other", COUNT, "changed"));
+    assertNull(lineToEmit("key", COUNT, "changed"));
+
+    assertEquals(4, serializations.get());
+  }
+
+  @Test
+  void testEmitsAgainAfterRefreshPeriod() {
+    assertEquals("line", lineToEmit("key", GAUGE, "line"));
+    nanoTime.addAndGet(Duration.ofMinutes(10).toNanos() - 1);
+    assertNull(lineToEmit("key", GAUGE, "line"));
+    nanoTime.incrementAndGet();
+    assertEquals("line", lineToEmit("key", GAUGE, "line"));
+    assertNull(lineToEmit("key", GAUGE, "line"));
+
+    // the previously serialized line is emitted again
+    assertEquals(1, serializations.get());
+  }
+
+  @Test
+  void testDoesNotRegisterEmptyLines() {
+    assertNull(lineToEmit("key", GAUGE, null));
+    assertNull(lineToEmit("key", GAUGE, null));
+
+    assertEquals(2, serializations.get());
+    assertEquals(0, registry.size());
+  }
+
+  @Test
+  void testEvictsWhenFull() {
+    for (int i = 0; i < 10; i++) {
+      assertEquals("line", lineToEmit("key" + i, GAUGE, "line"));
+    }
+    assertEquals(3, registry.size());
+  }
+
+  @Test
+  void testEmitsAgainAfterRollback() {
+    // a new line is only registered when committed
+    assertEquals("line", emission("key", GAUGE, "line").line().toString());
+    assertEquals(0, registry.size());
+    emission("key", GAUGE, "line").rollback();
+    assertEquals("line", lineToEmit("key", GAUGE, "line"));
+    assertNull(lineToEmit("key", GAUGE, "line"));
+
+    // a refreshed line is claimed until it is rolled back
+    nanoTime.addAndGet(Duration.ofMinutes(10).toNanos());
+    MetadataRegistry.Emission refresh = emission("key", GAUGE, "line");
+    assertEquals("line", refresh.line().toString());
+    assertNull(emission("key", GAUGE, "line"));
+    refresh.rollback();
+    assertEquals("line", lineToEmit("key", GAUGE, "line"));
+    assertNull(lineToEmit("key", GAUGE, "line"));
+  }
+
+  @Test
+  void testClear() {
+    assertEquals("line", lineToEmit("key", GAUGE, "line"));
+    registry.clear();
+    assertEquals("line", lineToEmit("key", GAUGE, "line"));
+  }
+
+  @Test
+  void testCreate() {
+    assertThrows(IllegalArgumentException.class, () -> MetadataRegistry.create(null));
+    assertThrows(
+        IllegalArgumentException.class, () -> MetadataRegistry.create(Duration.ofSeconds(-1)));
+    assertNotNull(MetadataRegistry.create());
+    assertNotNull(MetadataRegistry.create(Duration.ofSeconds(Long.MAX_VALUE)));
+  }
+}
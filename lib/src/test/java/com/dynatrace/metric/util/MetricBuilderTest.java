@@ -15,6 +15,12 @@ package com.dynatrace.metric.util;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.*;
 import java.util.stream.Stream;
@@ -240,6 +246,146 @@ class MetricBuilderTest {
     assertEquals(expected, actual);
   }
 
+  @Test
+  void testDimensionsAreSerializedInInsertionOrder() throws MetricException {
+    String expected = "name,dim3=val3,dim1=overridden,dim2=val2 count,delta=1";
+    String actual =
+        MetricLineBuilder.create()
+            .metricKey("name")
+            .dimension("dim3", "val3")
+            .dimension("dim1", "val1")
+            .dimension("dim2", "val2")
+            .dimension("dim1", "overridden")
+            .count()
+            .delta(1)
+            .build();
+
+    assertEquals(expected, actual);
+  }
+
+  @Test
+  void testNormalizedMetricKeyAndDimension() throws MetricException {
+    MetricLinePreConfiguration preConfig =
+        MetricLinePreConfiguration.builder()
+            .prefix("prefix")
+            .defaultDimensions(Collections.singletonMap("default", "val"))
+            .build();
+    MetricKey key = MetricKey.of("my key");
+    Dimension dimension = Dimension.of("Dim", "a b");
+
+    assertEquals(
+        MetricLineBuilder.create(preConfig)
+            .metricKey("my key")
+            .dimension("Dim", "a b")
+            .dimension("default", "overridden")
+            .gauge()
+            .value(1)
+            .build(),
+        MetricLineBuilder.create(preConfig)
+            .normalizedMetricKey(key)
+            .dimension(dimension)
+            .dimension(Dimension.of("default", "overridden"))
+            .gauge()
+            .value(1)
+            .build());
+    assertEquals(
+        "my_key,dim=a\\ b gauge,1",
+        MetricLineBuilder.create()
+            .normalizedMetricKey(key)
+            .dimension(dimension)
+            .gauge()
+            .value(1)
+            .build());
+  }
+
+  @Test
+  void testNormalizedMetricKeyWithPrefixThatNeedsNormalization() throws MetricException {
+    MetricLinePreConfiguration preConfig =
+        MetricLinePreConfiguration.builder().prefix("my prefix").build();
+
+    assertEquals(
+        "my_prefix.key count,delta=1",
+        MetricLineBuilder.create(preConfig)
+            .normalizedMetricKey(MetricKey.of("key"))
+            .count()
+            .delta(1)
+            .build());
+  }
+
+  @Test
+  void testNormalizedMetricKeyIsTruncatedTogetherWithPrefix() throws MetricException {
+    MetricLinePreConfiguration preConfig =
+        MetricLinePreConfiguration.builder().prefix("prefix").build();
+    StringBuilder longKey = new StringBuilder();
+    for (int i = 0; i < MetricLineConstants.Limits.MAX_METRIC_KEY_LENGTH; i++) {
+      longKey.append('a');
+    }
+
+    String line =
+        MetricLineBuilder.create(preConfig)
+            .normalizedMetricKey(MetricKey.of(longKey.toString()))
+            .count()
+            .delta(1)
+            .build();
+
+    assertEquals(MetricLineConstants.Limits.MAX_METRIC_KEY_LENGTH, line.indexOf(' '));
+  }
+
+  @Test
+  void testNullNormalizedMetricKeyAndDimension() throws MetricException {
+    assertThrows(MetricException.class, () -> MetricLineBuilder.create().normalizedMetricKey(null));
+    assertEquals(
+        "name gauge,1",
+        MetricLineBuilder.create()
+            .metricKey("name")
+            .dimension((Dimension) null)
+            .gauge()
+            .value(1)
+            .build());
+  }
+
+  @Test
+  void testSetEpochMillisTimestamp() throws MetricException {
+    String expected = "prefix.name count,delta=1 1616580000123";
+    String actual =
+        MetricLineBuilder.create(MetricLinePreConfiguration.builder().prefix("prefix").build())
+            .metricKey("name")
+            .count()
+            .delta(1)
+            .timestamp(1616580000123L)
+            .build();
+
+    assertEquals(expected, actual);
+  }
+
+  @ParameterizedTest(name = "{index}: {0}")
+  @MethodSource("provideTimestampBounds")
+  void testTimestampBounds(String name, Instant timestamp, boolean expectSet)
+      throws MetricException {
+    String expected = "name count,delta=1" + (expectSet ? " " + timestamp.toEpochMilli() : "");
+
+    assertEquals(
+        expected,
+        MetricLineBuilder.create()
+            .metricKey("name")
+            .count()
+            .delta(1)
+            .timestamp(timestamp)
+            .build());
+
+    if (timestamp.getEpochSecond() > Long.MIN_VALUE / 1000
+        && timestamp.getEpochSecond() < Long.MAX_VALUE / 1000) {
+      assertEquals(
+          expected,
+          MetricLineBuilder.create()
+              .metricKey("name")
+              .count()
+              .delta(1)
+              .timestamp(timestamp.toEpochMilli())
+              .build());
+    }
+  }
+
   @Test
   void testSetDimensions() throws MetricException {
     String expected = "prefix.name,dim1=val1 count,delta=1";
@@ -701,11 +847,338 @@ class MetricBuilderTest {
             .build());
   }
 
+  @Test
+  void testReusableBuilderCreatesSameLinesAsNewBuilders() throws MetricException {
+    MetricLinePreConfiguration preConfig =
+        MetricLinePreConfiguration.builder()
+            .prefix("prefix")
+            .defaultDimensions(Collections.singletonMap("default", "value"))
+            .build();
+    MetricLineBuilder.ReusableMetricKeyStep reusableBuilder =
+        MetricLineBuilder.createReusable(preConfig);
+
+    for (int i = 0; i < 3; i++) {
+      Instant timestamp = Instant.ofEpochMilli(1656000000000L + i);
+      String expected =
+          MetricLineBuilder.create(preConfig)
+              .metricKey("name")
+              .dimension("dim" + i, "val" + i)
+              .gauge()
+              .value(i)
+              .timestamp(timestamp)
+              .build();
+      String actual =
+          reusableBuilder
+              .reset()
+              .metricKey("name")
+              .dimension("dim" + i, "val" + i)
+              .gauge()
+              .value(i)
+              .timestamp(timestamp)
+              .build();
+
+      assertEquals(expected, actual);
+    }
+  }
+
+  @Test
+  void testResetDiscardsPreviousLine() throws MetricException {
+    MetricLineBuilder.ReusableMetricKeyStep reusableBuilder = MetricLineBuilder.createReusable();
+
+    assertEquals(
+        "first,dim1=val1 gauge,min=1,max=2,sum=3,count=2 1656000000000",
+        reusableBuilder
+            .metricKey("first")
+            .dimension("dim1", "val1")
+            .gauge()
+            .summary(1, 2, 3, 2)
+            .timestamp(Instant.ofEpochMilli(1656000000000L))
+            .build());
+    assertEquals(
+        "second count,delta=4",
+        reusableBuilder.reset().metricKey("second").count().delta(4).build());
+  }
+
+  @Test
+  void testResetRestoresDimensionLimit() throws MetricException {
+    MetricLineBuilder.ReusableMetricKeyStep reusableBuilder = MetricLineBuilder.createReusable();
+
+    for (int line = 0; line < 2; line++) {
+      MetricLineBuilder.TypeStep typeStep = reusableBuilder.reset().metricKey("name");
+      for (int i = 0; i < MetricLineConstants.Limits.MAX_DIMENSIONS_COUNT; i++) {
+        typeStep.dimension("dim" + i, "val");
+      }
+      assertThrows(MetricException.class, () -> typeStep.dimension("onetoomany", "val"));
+    }
+  }
+
+  @Test
+  void testBuildToAppendable() throws MetricException, IOException {
+    MetricLineBuilder.TimestampOrBuildStep buildStep =
+        MetricLineBuilder.create().metricKey("name").dimension("dim1", "val1").gauge().value(1.5);
+
+    StringBuilder sb = new StringBuilder("existing\n");
+    buildStep.build(sb);
+    assertEquals("existing\nname,dim1=val1 gauge,1.5", sb.toString());
+
+    StringWriter writer = new StringWriter();
+    buildStep.build(writer);
+    assertEquals("name,dim1=val1 gauge,1.5", writer.toString());
+  }
+
+  @Test
+  void testWriteToCharBuffer() throws MetricException {
+    CharBuffer buffer = CharBuffer.allocate(64);
+    buffer.put('>');
+
+    int written = MetricLineBuilder.create().metricKey("name").count().delta(3).writeTo(buffer);
+
+    assertEquals("name count,delta=3".length(), written);
+    buffer.flip();
+    assertEquals(">name count,delta=3", buffer.toString());
+  }
+
+  @Test
+  void testWriteToCharBufferWithoutEnoughSpace() throws MetricException {
+    MetricLineBuilder.TimestampOrBuildStep buildStep =
+        MetricLineBuilder.create().metricKey("name").count().delta(3);
+    CharBuffer buffer = CharBuffer.allocate(10);
+
+    assertThrows(BufferOverflowException.class, () -> buildStep.writeTo(buffer));
+    assertEquals(0, buffer.position());
+  }
+
+  @Test
+  void testBuildMetadataToAppendableAndCharBuffer() throws MetricException, IOException {
+    MetricLineBuilder.GaugeStep gaugeStep = MetricLineBuilder.create().metricKey("name").gauge();
+
+    StringBuilder sb = new StringBuilder();
+    assertTrue(gaugeStep.metadata().unit("unit").build(sb));
+    assertEquals("#name gauge dt.meta.unit=unit", sb.toString());
+
+    CharBuffer buffer = CharBuffer.allocate(64);
+    assertEquals(29, gaugeStep.metadata().unit("unit").writeTo(buffer));
+    buffer.flip();
+    assertEquals("#name gauge dt.meta.unit=unit", buffer.toString());
+
+    // nothing is written if no metadata is set
+    sb.setLength(0);
+    assertFalse(gaugeStep.metadata().build(sb));
+    assertEquals(0, sb.length());
+    assertEquals(0, gaugeStep.metadata().writeTo(CharBuffer.allocate(64)));
+  }
+
+  @Test
+  void testBuildUtf8() throws MetricException {
+    MetricLineBuilder.TimestampOrBuildStep buildStep =
+        MetricLineBuilder.create()
+            .metricKey("name")
+            .dimension("dim1", "\u65E5\u672C")
+            .dimension("dim2", "\uD83E\uDD20")
+            .gauge()
+            .summary(1, 2, 3, 2);
+
+    assertArrayEquals(buildStep.build().getBytes(StandardCharsets.UTF_8), buildStep.buildUtf8());
+  }
+
+  @Test
+  void testWriteUtf8() throws MetricException {
+    MetricLineBuilder.BuildStep buildStep =
+        MetricLineBuilder.create()
+            .metricKey("name")
+            .dimension("dim1", "\u00E4\u00F6\u00FC")
+            .count()
+            .delta(3)
+            .timestamp(Instant.ofEpochMilli(1656000000000L));
+    byte[] expected = buildStep.build().getBytes(StandardCharsets.UTF_8);
+
+    for (ByteBuffer buffer :
+        Arrays.asList(ByteBuffer.allocate(128), ByteBuffer.allocateDirect(128))) {
+      buffer.put((byte) '>');
+      assertEquals(expected.length, buildStep.writeUtf8(buffer));
+      assertEquals(expected.length + 1, buffer.position());
+
+      byte[] actual = new byte[expected.length];
+      buffer.flip();
+      buffer.position(1);
+      buffer.get(actual);
+      assertArrayEquals(expected, actual);
+    }
+  }
+
+  @Test
+  void testWriteUtf8WithoutEnoughSpace() throws MetricException {
+    MetricLineBuilder.TimestampOrBuildStep buildStep =
+        MetricLineBuilder.create().metricKey("name").dimension("dim1", "\u00E4").gauge().value(1);
+    // enough space for the chars, but not for the encoded bytes
+    ByteBuffer buffer = ByteBuffer.allocate(buildStep.build().length());
+
+    assertThrows(BufferOverflowException.class, () -> buildStep.writeUtf8(buffer));
+    assertEquals(0, buffer.position());
+  }
+
+  @Test
+  void testBuildMetadataUtf8() throws MetricException {
+    MetricLineBuilder.GaugeStep gaugeStep = MetricLineBuilder.create().metricKey("name").gauge();
+    String expected = "#name gauge dt.meta.description=\"\u65E5\u672C \u8A9E\"";
+
+    assertArrayEquals(
+        expected.getBytes(StandardCharsets.UTF_8),
+        gaugeStep.metadata().description("\u65E5\u672C \u8A9E").buildUtf8());
+
+    ByteBuffer buffer = ByteBuffer.allocate(64);
+    assertEquals(
+        expected.getBytes(StandardCharsets.UTF_8).length,
+        gaugeStep.metadata().description("\u65E5\u672C \u8A9E").writeUtf8(buffer));
+
+    assertNull(gaugeStep.metadata().buildUtf8());
+    assertEquals(0, gaugeStep.metadata().writeUtf8(buffer));
+  }
+
+  @Test
+  void testInternedDimensions() throws MetricException {
+    MetricLineBuilder.ReusableMetricKeyStep builder =
+        MetricLineBuilder.createReusable(
+            MetricLinePreConfiguration.builder()
+                .defaultDimensions(Collections.singletonMap("default", "value"))
+                .build());
+
+    // the second line uses the segments interned while building the first one
+    for (int i = 0; i < 2; i++) {
+      MetricLineBuilder.BuildStep buildStep =
+          builder
+              .reset()
+              .metricKey("name")
+              .dimension("interned_dim", "interned_value")
+              .dimension("Other Dim", "needs escaping")
+              .dimension("default", "overridden")
+              .gauge()
+              .value(1);
+      assertEquals(
+          "name,interned_dim=interned_value,other_dim=needs\\ escaping,default=overridden gauge,1",
+          buildStep.build());
+      assertArrayEquals(
+          buildStep.build().getBytes(StandardCharsets.UTF_8), buildStep.buildUtf8());
+    }
+
+    assertNotNull(DimensionInterner.SHARED.get("interned_dim", "interned_value"));
+    assertNull(DimensionInterner.SHARED.get("Other Dim", "needs escaping"));
+  }
+
+  @Test
+  void testCharSequenceDimensions() throws MetricException {
+    char[] buffer = "xxdimension_valuexx".toCharArray();
+    StringBuilder escaped = new StringBuilder("needs escaping");
+    String line =
+        MetricLineBuilder.create()
+            .metricKey("name")
+            .dimension(new StringBuilder("dim1"), CharBuffer.wrap(buffer, 2, 15))
+            .dimension(CharBuffer.wrap("Dim 2"), escaped)
+            .dimension(new StringBuilder("dim3"), "value3")
+            .dimension(new StringBuilder("dim4"), new StringBuilder())
+            .dimension(new StringBuilder(), new StringBuilder("dropped"))
+            .gauge()
+            .value(1)
+            .build();
+    assertEquals(
+        "name,dim1=dimension_value,dim_2=needs\\ escaping,dim3=value3 gauge,1", line);
+  }
+
+  @Test
+  void testCharSequenceMetricKey() throws MetricException {
+    char[] buffer = "xxmy.metricxx".toCharArray();
+    assertEquals(
+        "my.metric gauge,1",
+        MetricLineBuilder.create()
+            .metricKey(CharBuffer.wrap(buffer, 2, 9))
+            .gauge()
+            .value(1)
+            .build());
+    assertEquals(
+        "prefix.my_metric gauge,1",
+        MetricLineBuilder.create(MetricLinePreConfiguration.builder().prefix("prefix").build())
+            .metricKey(new StringBuilder("my metric"))
+            .gauge()
+            .value(1)
+            .build());
+    assertThrows(
+        MetricException.class,
+        () -> MetricLineBuilder.create().metricKey(new StringBuilder()).gauge().value(1).build());
+    assertThrows(
+        MetricException.class,
+        () -> MetricLineBuilder.create().metricKey((CharSequence) null).gauge().value(1).build());
+  }
+
+  @Test
+  void testPreConfiguredDimensionsWithAndWithoutOverride() throws MetricException {
+    Map<String, String> defaultDimensions = new HashMap<>();
+    defaultDimensions.put("default1", "\u00E4");
+    defaultDimensions.put("default2", "val2");
+    defaultDimensions.put("empty", "");
+
+    try (MockedStatic<DynatraceMetadataEnricher> mockEnricher =
+        Mockito.mockStatic(DynatraceMetadataEnricher.class)) {
+      mockEnricher
+          .when(DynatraceMetadataEnricher::getDynatraceMetadata)
+          .thenReturn(Collections.singletonMap("meta", "\u65E5\u672C"));
+
+      MetricLineBuilder.ReusableMetricKeyStep builder =
+          MetricLineBuilder.createReusable(
+              MetricLinePreConfiguration.builder()
+                  .defaultDimensions(defaultDimensions)
+                  .dynatraceMetadataDimensions()
+                  .build());
+
+      List<String> expectedDefaults =
+          Arrays.asList("name", "default1=\u00E4", "default2=val2", "meta=\u65E5\u672C");
+      List<String> expectedOverridden =
+          Arrays.asList(
+              "name", "default1=overridden", "default2=val2", "dim=val", "meta=\u65E5\u672C");
+
+      MetricLineBuilder.BuildStep buildStep = builder.metricKey("name").gauge().value(1);
+      assertListsEqualIgnoreOrder(expectedDefaults, splitDescriptor(buildStep.build()));
+      assertArrayEquals(
+          buildStep.build().getBytes(StandardCharsets.UTF_8), buildStep.buildUtf8());
+
+      buildStep =
+          builder
+              .reset()
+              .metricKey("name")
+              .dimension("dim", "val")
+              .dimension("default1", "overridden")
+              .gauge()
+              .value(1);
+      assertListsEqualIgnoreOrder(expectedOverridden, splitDescriptor(buildStep.build()));
+      assertArrayEquals(
+          buildStep.build().getBytes(StandardCharsets.UTF_8), buildStep.buildUtf8());
+
+      buildStep = builder.reset().metricKey("name").gauge().value(1);
+      assertListsEqualIgnoreOrder(expectedDefaults, splitDescriptor(buildStep.build()));
+      assertArrayEquals(
+          buildStep.build().getBytes(StandardCharsets.UTF_8), buildStep.buildUtf8());
+    }
+  }
+
+  private static List<String> splitDescriptor(String line) {
+    return Arrays.asList(line.substring(0, line.indexOf(' ')).split(","));
+  }
+
   private void assertListsEqualIgnoreOrder(List<String> expected, List<String> actual) {
     assertEquals(expected.size(), actual.size());
     assertTrue(expected.containsAll(actual) && actual.containsAll(expected));
   }
 
+  private static Stream<Arguments> provideTimestampBounds() {
+    return Stream.of(
+        Arguments.of("before 2000", Instant.parse("1999-12-31T23:59:59.999Z"), false),
+        Arguments.of("start of 2000", Instant.parse("2000-01-01T00:00:00Z"), true),
+        Arguments.of("end of 3000", Instant.parse("3000-12-31T23:59:59.999Z"), true),
+        Arguments.of("start of 3001", Instant.parse("3001-01-01T00:00:00Z"), false),
+        Arguments.of("epoch", Instant.EPOCH, false),
+        Arguments.of("max instant", Instant.MAX, false),
+        Arguments.of("min instant", Instant.MIN, false));
+  }
+
   private static Stream<Arguments> provideNullOrEmptyDimensions() {
     return Stream.of(
         Arguments.of("empty key - empty value", "", ""),
@@ -0,0 +1,59 @@
+/**
+ * Copyright 2023 Dynatrace LLC
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dynatrace.metric.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class MetricKeyTest {
+
+  @Test
+  void testValidKey() throws MetricException {
+    MetricKey key = MetricKey.of("my.metric-key_1");
+
+    assertEquals("my.metric-key_1", key.toString());
+    assertEquals(15, key.length());
+  }
+
+  @Test
+  void testKeyIsNormalized() throws MetricException {
+    assertEquals("my.metric_key", MetricKey.of("my.metric key").toString());
+    assertEquals(
+        MetricLineConstants.Limits.MAX_METRIC_KEY_LENGTH,
+        MetricKey.of(repeat('a', MetricLineConstants.Limits.MAX_METRIC_KEY_LENGTH + 10)).length());
+  }
+
+  @Test
+  void testInvalidKeys() {
+    assertThrows(MetricException.class, () -> MetricKey.of(null));
+    assertThrows(MetricException.class, () -> MetricKey.of(""));
+    assertThrows(MetricException.class, () -> MetricKey.of("."));
+  }
+
+  @Test
+  void testEquality() throws MetricException {
+    assertEquals(MetricKey.of("my.key"), MetricKey.of("my.key"));
+    assertEquals(MetricKey.of("my.key").hashCode(), MetricKey.of("my.key").hashCode());
+    assertNotEquals(MetricKey.of("my.key"), MetricKey.of("my.other.key"));
+  }
+
+  private static String repeat(char c, int times) {
+    StringBuilder sb = new StringBuilder(times);
+    for (int i = 0; i < times; i++) {
+      sb.append(c);
+    }
+    return sb.toString();
+  }
+}
@@ -13,6 +13,7 @@
  */
 package com.dynatrace.metric.util;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -35,6 +36,30 @@ public class MetricKeyValidatorTest {
     assertTrue(MetricKeyValidator.normalizationRequired(input));
   }
 
+  @ParameterizedTest(name = "{index}: {0}, input: {1}, expected: {2}")
+  @MethodSource("provideMetricKeys_firstNormalizationIndex")
+  void testFirstNormalizationIndex(String name, String input, int expected) {
+    assertEquals(expected, MetricKeyValidator.firstNormalizationIndex(input));
+    assertEquals(
+        expected,
+        MetricKeyValidator.firstNormalizationIndex(
+            input == null ? null : new StringBuilder(input)));
+  }
+
+  private static Stream<Arguments> provideMetricKeys_firstNormalizationIndex() {
+    return Stream.of(
+        Arguments.of("valid", "just.a.normal.key", -1),
+        Arguments.of("null", null, 0),
+        Arguments.of("empty", "", 0),
+        Arguments.of("invalid first char", "~key", 0),
+        Arguments.of("invalid char in section", "key.na~me", 6),
+        Arguments.of("invalid section start", "key.-name", 4),
+        Arguments.of("empty section", "key..name", 4),
+        Arguments.of("trailing dot", "key.name.", 8),
+        Arguments.of("non-ASCII char", "key.n\u00E4me", 5),
+        Arguments.of("too long", TestUtils.repeatStringNTimes("a", 260), 255));
+  }
+
   private static Stream<Arguments> provideMetricKeys_shouldNotNormalize() {
     return Stream.of(
         Arguments.of("valid base case", "basecase"),
@@ -0,0 +1,237 @@
+/**
+ * Copyright 2023 Dynatrace LLC
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dynatrace.metric.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class MetricLineExporterTest {
+  private final List<Request> requests = new CopyOnWriteArrayList<>();
+  private final AtomicInteger status = new AtomicInteger(202);
+  private final AtomicReference<String> endpoint = new AtomicReference<>();
+  private final AtomicReference<String> token = new AtomicReference<>("my-token");
+  private HttpServer server;
+
+  /** The parts of a request received by the stand-in ingest endpoint. */
+  private static final class Request {
+    private final String path;
+    private final String authorization;
+    private final String contentType;
+    private final String contentEncoding;
+    private final String body;
+    private final int remotePort;
+
+    private Request(HttpExchange exchange, String body) {
+      this.path = exchange.getRequestURI().getPath();
+      this.authorization = exchange.getRequestHeaders().getFirst("Authorization");
+      this.contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+      this.contentEncoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+      this.body = body;
+      this.remotePort = exchange.getRemoteAddress().getPort();
+    }
+  }
+
+  @BeforeEach
+  void startServer() throws IOException {
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    server.createContext(
+        "/",
+        exchange -> {
+          ByteArrayOutputStream body = new ByteArrayOutputStream();
+          InputStream requestBody = exchange.getRequestBody();
+          if ("gzip".equals(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+            requestBody = new GZIPInputStream(requestBody);
+          }
+          try (InputStream in = requestBody) {
+            byte[] buffer = new byte[1024];
+            for (int read; (read = in.read(buffer)) >= 0; ) {
+              body.write(buffer, 0, read);
+            }
+          }
+          requests.add(
+              new Request(exchange, new String(body.toByteArray(), StandardCharsets.UTF_8)));
+
+          byte[] response = "{\"linesOk\":1}".getBytes(StandardCharsets.UTF_8);
+          exchange.sendResponseHeaders(status.get(), response.length);
+          try (OutputStream out = exchange.getResponseBody()) {
+            out.write(response);
+          }
+        });
+    server.start();
+    endpoint.set(endpoint("/metrics/ingest"));
+  }
+
+  @AfterEach
+  void stopServer() {
+    server.stop(0);
+  }
+
+  private String endpoint(String path) {
+    return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+  }
+
+  private MetricLineExporter exporter() {
+    return MetricLineExporter.create(endpoint::get, token::get);
+  }
+
+  private static MetricLinePayloadBatcher batcher(int lines) throws MetricException {
+    MetricLinePayloadBatcher batcher = MetricLinePayloadBatcher.create(2, 1024);
+    MetricLineBuilder.ReusableMetricKeyStep builder = MetricLineBuilder.createReusable();
+    for (int i = 0; i < lines; i++) {
+      batcher.add(builder.reset().metricKey("my.metric").gauge().value(i));
+    }
+    return batcher;
+  }
+
+  @Test
+  void testExportsPayloads() throws MetricException, IOException {
+    assertEquals(2, exporter().export(batcher(3)));
+
+    assertEquals(2, requests.size());
+    Request first = requests.get(0);
+    assertEquals("/metrics/ingest", first.path);
+    assertEquals("Api-Token my-token", first.authorization);
+    assertEquals("text/plain; charset=utf-8", first.contentType);
+    assertEquals("my.metric gauge,0\nmy.metric gauge,1\n", first.body);
+    assertEquals("my.metric gauge,2\n", requests.get(1).body);
+  }
+
+  @Test
+  void testReusesConnection() throws MetricException, IOException {
+    MetricLineExporter exporter = exporter();
+    exporter.export(batcher(2));
+    exporter.export(batcher(2));
+    exporter.export(batcher(2));
+
+    assertEquals(3, requests.size());
+    assertEquals(requests.get(0).remotePort, requests.get(1).remotePort);
+    assertEquals(requests.get(0).remotePort, requests.get(2).remotePort);
+  }
+
+  @Test
+  void testPicksUpConfigurationChanges() throws MetricException, IOException {
+    MetricLineExporter exporter = exporter();
+    exporter.export(batcher(1));
+    token.set("");
+    endpoint.set(endpoint("/other"));
+    exporter.export(batcher(1));
+    token.set("new-token");
+    exporter.export(batcher(1));
+
+    assertEquals("Api-Token my-token", requests.get(0).authorization);
+    assertEquals("/other", requests.get(1).path);
+    assertNull(requests.get(1).authorization);
+    assertEquals("Api-Token new-token", requests.get(2).authorization);
+  }
+
+  @Test
+  void testRejectedPayloads() throws MetricException, IOException {
+    status.set(400);
+    MetricLinePayloadBatcher batcher = batcher(3);
+    MetricLineExporter exporter = exporter();
+    assertEquals(0, exporter.export(batcher));
+    // rejected payloads are dropped
+    assertNull(batcher.poll());
+    assertEquals(2, requests.size());
+
+    // a single payload is sent, but not released
+    MetricLinePayloadBatcher.Payload payload = batcher(2).poll();
+    assertEquals(400, exporter.send(payload));
+    assertEquals(2, payload.lineCount());
+    payload.release();
+  }
+
+  @Test
+  void testGzip() throws MetricException, IOException {
+    MetricLineExporter exporter = exporter().withGzip(Deflater.BEST_SPEED, 30);
+    assertEquals(2, exporter.export(batcher(3)));
+
+    assertEquals("gzip", requests.get(0).contentEncoding);
+    assertEquals("my.metric gauge,0\nmy.metric gauge,1\n", requests.get(0).body);
+    // below the threshold
+    assertNull(requests.get(1).contentEncoding);
+    assertEquals("my.metric gauge,2\n", requests.get(1).body);
+
+    assertThrows(IllegalArgumentException.class, () -> exporter.withGzip(10, 0));
+    assertThrows(IllegalArgumentException.class, () -> exporter.withGzip(1, -1));
+  }
+
+  @Test
+  void testSpool() throws MetricException, IOException {
+    Path directory = Files.createTempDirectory("spool");
+    try (MetricLinePayloadSpool spool = MetricLinePayloadSpool.open(directory, 1024, 2)) {
+      MetricLineExporter exporter = exporter().withSpool(spool);
+
+      // the endpoint is unavailable, so the second payload is spooled without sending it
+      status.set(503);
+      assertEquals(0, exporter.export(batcher(3)));
+      assertEquals(1, requests.size());
+      assertEquals(2, spool.size());
+
+      // requests fail
+      endpoint.set("");
+      assertThrows(IOException.class, () -> exporter.export(batcher(1)));
+      assertEquals(3, spool.size());
+
+      // spooled payloads are sent first
+      endpoint.set(endpoint("/metrics/ingest"));
+      status.set(202);
+      MetricLinePayloadBatcher batcher = MetricLinePayloadBatcher.create(2, 1024);
+      batcher.add("my.metric gauge,3");
+      assertEquals(4, exporter.export(batcher));
+      assertTrue(spool.isEmpty());
+      assertEquals(5, requests.size());
+      assertEquals("my.metric gauge,0\nmy.metric gauge,1\n", requests.get(1).body);
+      assertEquals("my.metric gauge,2\n", requests.get(2).body);
+      assertEquals("my.metric gauge,0\n", requests.get(3).body);
+      assertEquals("my.metric gauge,3\n", requests.get(4).body);
+
+      // rejected payloads are not spooled
+      status.set(400);
+      assertEquals(0, exporter.export(batcher(1)));
+      assertTrue(spool.isEmpty());
+
+      assertThrows(IllegalArgumentException.class, () -> exporter.withSpool(null));
+    } finally {
+      MetricLinePayloadSpoolTest.delete(directory);
+    }
+  }
+
+  @Test
+  void testFailsWithoutEndpoint() {
+    endpoint.set("");
+    assertThrows(IOException.class, () -> exporter().export(batcher(1)));
+    assertThrows(IllegalArgumentException.class, () -> MetricLineExporter.create(null, token::get));
+  }
+}
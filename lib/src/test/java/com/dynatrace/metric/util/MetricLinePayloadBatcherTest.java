@@ -0,0 +1,144 @@
+/**
+ * Copyright 2023 Dynatrace LLC
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dynatrace.metric.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+class MetricLinePayloadBatcherTest {
+  private final MetricLineBuilder.ReusableMetricKeyStep builder =
+      MetricLineBuilder.createReusable();
+
+  private MetricLineBuilder.BuildStep line(int value) throws MetricException {
+    return builder.reset().metricKey("my.metric").gauge().value(value);
+  }
+
+  private static String content(MetricLinePayloadBatcher.Payload payload) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    payload.writeTo(out);
+    assertEquals(payload.size(), out.size());
+    return new String(out.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+  @Test
+  void testSealsAtLineLimit() throws MetricException, IOException {
+    MetricLinePayloadBatcher batcher = MetricLinePayloadBatcher.create(2, 1024);
+    for (int i = 0; i < 5; i++) {
+      batcher.add(line(i));
+    }
+    assertEquals(2, batcher.sealedCount());
+    batcher.flush();
+    batcher.flush();
+    assertEquals(3, batcher.sealedCount());
+
+    MetricLinePayloadBatcher.Payload payload = batcher.poll();
+    assertEquals(2, payload.lineCount());
+    assertEquals("my.metric gauge,0\nmy.metric gauge,1\n", content(payload));
+    assertEquals("my.metric gauge,2\nmy.metric gauge,3\n", content(batcher.poll()));
+    assertEquals("my.metric gauge,4\n", content(batcher.poll()));
+    assertNull(batcher.poll());
+  }
+
+  @Test
+  void testSealsAtByteLimit() throws MetricException, IOException {
+    // each line takes 18 bytes including the line separator
+    MetricLinePayloadBatcher batcher = MetricLinePayloadBatcher.create(1000, 40);
+    batcher.add(line(1));
+    batcher.add("my.metric gauge,2");
+    batcher.add(line(3));
+    batcher.add((CharSequence) null);
+    batcher.flush();
+
+    MetricLinePayloadBatcher.Payload payload = batcher.poll();
+    assertEquals(2, payload.lineCount());
+    assertEquals("my.metric gauge,1\nmy.metric gauge,2\n", content(payload));
+    assertEquals("my.metric gauge,3\n", content(batcher.poll()));
+  }
+
+  @Test
+  void testExactFit() throws MetricException, IOException {
+    MetricLinePayloadBatcher batcher = MetricLinePayloadBatcher.create(1000, 36);
+    batcher.add(line(1));
+    batcher.add(line(2));
+    batcher.add(line(3));
+    batcher.flush();
+
+    assertEquals("my.metric gauge,1\nmy.metric gauge,2\n", content(batcher.poll()));
+    assertEquals("my.metric gauge,3\n", content(batcher.poll()));
+  }
+
+  @Test
+  void testGrowsBuffer() throws MetricException {
+    MetricLinePayloadBatcher batcher = MetricLinePayloadBatcher.create(1000, 1024 * 1024);
+    for (int i = 0; i < 1000; i++) {
+      batcher.add(
+          builder
+              .reset()
+              .metricKey("my.metric")
+              .dimension("dim", "some.longer.dimension.value." + i)
+              .gauge()
+              .value(i)
+              .timestamp(1656000000000L));
+    }
+    assertEquals(1, batcher.sealedCount());
+
+    MetricLinePayloadBatcher.Payload payload = batcher.poll();
+    assertEquals(1000, payload.lineCount());
+    assertTrue(payload.size() > 64 * 1024);
+    assertEquals(payload.size(), payload.buffer().remaining());
+  }
+
+  @Test
+  void testLineExceedingLimit() {
+    MetricLinePayloadBatcher batcher = MetricLinePayloadBatcher.create(1000, 10);
+    assertThrows(MetricException.class, () -> batcher.add(line(1)));
+    assertThrows(MetricException.class, () -> batcher.add("my.metric gauge,1"));
+    batcher.flush();
+    assertNull(batcher.poll());
+  }
+
+  @Test
+  void testRecyclesReleasedPayloads() throws MetricException, IOException {
+    MetricLinePayloadBatcher batcher = MetricLinePayloadBatcher.create(1, 1024);
+    batcher.add(line(1));
+    MetricLinePayloadBatcher.Payload first = batcher.poll();
+    first.release();
+    first.release();
+
+    batcher.add(line(2));
+    batcher.add(line(3));
+    MetricLinePayloadBatcher.Payload second = batcher.poll();
+    MetricLinePayloadBatcher.Payload third = batcher.poll();
+    assertSame(first, second);
+    assertNotSame(second, third);
+    assertEquals("my.metric gauge,2\n", content(second));
+    assertEquals("my.metric gauge,3\n", content(third));
+  }
+
+  @Test
+  void testCreate() {
+    assertThrows(IllegalArgumentException.class, () -> MetricLinePayloadBatcher.create(0, 1024));
+    assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            MetricLinePayloadBatcher.create(
+                DynatraceMetricApiConstants.getPayloadLinesLimit() + 1, 1024));
+    assertThrows(IllegalArgumentException.class, () -> MetricLinePayloadBatcher.create(1, 1));
+    assertNotNull(MetricLinePayloadBatcher.create());
+  }
+}
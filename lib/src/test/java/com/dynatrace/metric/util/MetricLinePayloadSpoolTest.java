@@ -0,0 +1,208 @@
+/**
+ * Copyright 2023 Dynatrace LLC
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dynatrace.metric.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class MetricLinePayloadSpoolTest {
+  // each payload takes 26 bytes in the spool, so that two of them fit into a segment
+  private static final int SEGMENT_SIZE = 8 + 2 * 26;
+
+  private final MetricLinePayloadBatcher batcher = MetricLinePayloadBatcher.create(1, 1024);
+  private Path directory;
+
+  @BeforeEach
+  void createDirectory() throws IOException {
+    directory = Files.createTempDirectory("spool");
+  }
+
+  @AfterEach
+  void deleteDirectory() throws IOException {
+    delete(directory);
+  }
+
+  static void delete(Path directory) throws IOException {
+    final List<Path> paths;
+    try (Stream<Path> walk = Files.walk(directory)) {
+      paths = walk.sorted(Comparator.reverseOrder()).collect(Collectors.toList());
+    }
+    for (Path path : paths) {
+      Files.deleteIfExists(path);
+    }
+  }
+
+  private MetricLinePayloadBatcher.Payload payload(int value) throws MetricException {
+    batcher.add("my.metric gauge," + value);
+    return batcher.poll();
+  }
+
+  private void append(MetricLinePayloadSpool spool, int value) throws MetricException {
+    MetricLinePayloadBatcher.Payload payload = payload(value);
+    assertTrue(spool.append(payload));
+    payload.release();
+  }
+
+  private static String content(MetricLinePayloadBatcher.Payload payload) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    payload.writeTo(out);
+    return new String(out.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+  /** Removes the oldest payload and asserts its content. */
+  private static void assertNext(MetricLinePayloadSpool spool, int value) throws IOException {
+    MetricLinePayloadBatcher.Payload payload = spool.peek();
+    assertNotNull(payload);
+    assertEquals(1, payload.lineCount());
+    assertEquals("my.metric gauge," + value + "\n", content(payload));
+    spool.remove();
+  }
+
+  @Test
+  void testOpen() throws IOException {
+    assertThrows(IllegalArgumentException.class, () -> MetricLinePayloadSpool.open(null));
+    assertThrows(
+        IllegalArgumentException.class, () -> MetricLinePayloadSpool.open(directory, 16, 1));
+    assertThrows(
+        IllegalArgumentException.class, () -> MetricLinePayloadSpool.open(directory, 1024, 0));
+    assertThrows(
+        IllegalArgumentException.class, () -> MetricLinePayloadSpool.open(directory, 1024, 1025));
+
+    try (MetricLinePayloadSpool spool = MetricLinePayloadSpool.open(directory, SEGMENT_SIZE, 3)) {
+      assertTrue(spool.isEmpty());
+      assertNull(spool.peek());
+      // the disk space is allocated up front
+      for (int i = 0; i < 3; i++) {
+        assertEquals(SEGMENT_SIZE, Files.size(directory.resolve("segment-" + i + ".spool")));
+      }
+    }
+  }
+
+  @Test
+  void testReplaysInOrder() throws MetricException, IOException {
+    try (MetricLinePayloadSpool spool = MetricLinePayloadSpool.open(directory, SEGMENT_SIZE, 3)) {
+      for (int i = 0; i < 5; i++) {
+        append(spool, i);
+      }
+      assertEquals(5, spool.size());
+
+      // a payload stays in the spool until it is removed
+      assertEquals("my.metric gauge,0\n", content(spool.peek()));
+      for (int i = 0; i < 5; i++) {
+        assertNext(spool, i);
+      }
+      assertTrue(spool.isEmpty());
+      assertNull(spool.peek());
+      assertEquals(0, spool.droppedCount());
+    }
+  }
+
+  @Test
+  void testReusesSegments() throws MetricException, IOException {
+    try (MetricLinePayloadSpool spool = MetricLinePayloadSpool.open(directory, SEGMENT_SIZE, 2)) {
+      for (int i = 0; i < 20; i++) {
+        append(spool, i % 10);
+        append(spool, (i + 1) % 10);
+        assertNext(spool, i % 10);
+        assertNext(spool, (i + 1) % 10);
+      }
+      assertEquals(0, spool.droppedCount());
+    }
+  }
+
+  @Test
+  void testDropsOldestSegmentWhenFull() throws MetricException, IOException {
+    try (MetricLinePayloadSpool spool = MetricLinePayloadSpool.open(directory, SEGMENT_SIZE, 3)) {
+      for (int i = 0; i < 7; i++) {
+        append(spool, i);
+      }
+      assertEquals(5, spool.size());
+      assertEquals(2, spool.droppedCount());
+      for (int i = 2; i < 7; i++) {
+        assertNext(spool, i);
+      }
+      assertTrue(spool.isEmpty());
+    }
+    try (Stream<Path> files = Files.list(directory)) {
+      // three segments and the lock file
+      assertEquals(4, files.count());
+    }
+  }
+
+  @Test
+  void testDropsPayloadsLargerThanSegment() throws MetricException, IOException {
+    try (MetricLinePayloadSpool spool = MetricLinePayloadSpool.open(directory, SEGMENT_SIZE, 3)) {
+      batcher.add("my.metric.with.a.long.key.that.does.not.fit.into.a.segment gauge,1");
+      MetricLinePayloadBatcher.Payload payload = batcher.poll();
+      assertFalse(spool.append(payload));
+      payload.release();
+      assertEquals(1, spool.droppedCount());
+      assertTrue(spool.isEmpty());
+    }
+  }
+
+  @Test
+  void testRecoversAfterReopen() throws MetricException, IOException {
+    try (MetricLinePayloadSpool spool = MetricLinePayloadSpool.open(directory, SEGMENT_SIZE, 3)) {
+      for (int i = 0; i < 7; i++) {
+        append(spool, i);
+      }
+      assertNext(spool, 2);
+    }
+
+    try (MetricLinePayloadSpool spool = MetricLinePayloadSpool.open(directory, SEGMENT_SIZE, 3)) {
+      assertEquals(4, spool.size());
+      append(spool, 7);
+      for (int i = 3; i < 8; i++) {
+        assertNext(spool, i);
+      }
+      assertTrue(spool.isEmpty());
+    }
+
+    try (MetricLinePayloadSpool spool = MetricLinePayloadSpool.open(directory, SEGMENT_SIZE, 3)) {
+      assertTrue(spool.isEmpty());
+    }
+
+    // segments of a different size are cleared
+    try (MetricLinePayloadSpool spool = MetricLinePayloadSpool.open(directory, SEGMENT_SIZE, 3)) {
+      append(spool, 1);
+    }
+    try (MetricLinePayloadSpool spool = MetricLinePayloadSpool.open(directory, 1024, 3)) {
+      assertTrue(spool.isEmpty());
+    }
+  }
+
+  @Test
+  void testLocksDirectory() throws MetricException, IOException {
+    MetricLinePayloadSpool spool = MetricLinePayloadSpool.open(directory, SEGMENT_SIZE, 3);
+    assertThrows(IOException.class, () -> MetricLinePayloadSpool.open(directory, SEGMENT_SIZE, 3));
+    spool.close();
+    spool.close();
+    assertThrows(IllegalStateException.class, () -> append(spool, 1));
+
+    MetricLinePayloadSpool.open(directory, SEGMENT_SIZE, 3).close();
+  }
+}
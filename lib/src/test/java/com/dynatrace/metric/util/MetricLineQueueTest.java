@@ -0,0 +1,310 @@
+/**
+ * Copyright 2023 Dynatrace LLC
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dynatrace.metric.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import org.junit.jupiter.api.Test;
+
+class MetricLineQueueTest {
+  private final MetricLineBuilder.ReusableMetricKeyStep builder =
+      MetricLineBuilder.createReusable();
+
+  private MetricLineBuilder.BuildStep line(int value) throws MetricException {
+    return builder.reset().metricKey("my.metric").gauge().value(value);
+  }
+
+  private static String drain(MetricLineQueue queue) throws MetricException, IOException {
+    MetricLinePayloadBatcher batcher = MetricLinePayloadBatcher.create();
+    queue.drainTo(batcher, Integer.MAX_VALUE);
+    batcher.flush();
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    for (MetricLinePayloadBatcher.Payload payload = batcher.poll();
+        payload != null;
+        payload = batcher.poll()) {
+      payload.writeTo(out);
+      payload.release();
+    }
+    return new String(out.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+  @Test
+  void testCreate() {
+    MetricLineQueue.OverflowPolicy dropNewest = MetricLineQueue.OverflowPolicy.dropNewest();
+    assertEquals(2, MetricLineQueue.create(1, dropNewest).capacity());
+    assertEquals(8, MetricLineQueue.create(5, dropNewest).capacity());
+    assertEquals(8, MetricLineQueue.create(8, dropNewest).capacity());
+    assertThrows(IllegalArgumentException.class, () -> MetricLineQueue.create(0, dropNewest));
+    assertThrows(
+        IllegalArgumentException.class, () -> MetricLineQueue.create((1 << 30) + 1, dropNewest));
+    assertThrows(IllegalArgumentException.class, () -> MetricLineQueue.create(8, null));
+    assertThrows(IllegalArgumentException.class, () -> MetricLineQueue.OverflowPolicy.block(null));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> MetricLineQueue.OverflowPolicy.block(Duration.ofMillis(-1)));
+  }
+
+  @Test
+  void testOfferAndDrain() throws MetricException, IOException {
+    MetricLineQueue queue = MetricLineQueue.create(4, MetricLineQueue.OverflowPolicy.dropNewest());
+    assertTrue(queue.offer(line(1)));
+    assertTrue(queue.offer("my.metric gauge,2"));
+    assertTrue(queue.offer((CharSequence) null));
+    assertEquals(2, queue.size());
+
+    assertEquals("my.metric gauge,1\nmy.metric gauge,2\n", drain(queue));
+    assertEquals(0, queue.size());
+    assertEquals("", drain(queue));
+  }
+
+  @Test
+  void testDrainMaxLines() throws MetricException, IOException {
+    MetricLineQueue queue = MetricLineQueue.create(4, MetricLineQueue.OverflowPolicy.dropNewest());
+    queue.offer(line(1));
+    queue.offer(line(2));
+    queue.offer(line(3));
+
+    MetricLinePayloadBatcher batcher = MetricLinePayloadBatcher.create();
+    assertEquals(2, queue.drainTo(batcher, 2));
+    assertEquals(1, queue.size());
+    assertEquals("my.metric gauge,3\n", drain(queue));
+  }
+
+  @Test
+  void testWrapsAround() throws MetricException, IOException {
+    MetricLineQueue queue = MetricLineQueue.create(2, MetricLineQueue.OverflowPolicy.dropNewest());
+    for (int i = 0; i < 10; i++) {
+      assertTrue(queue.offer(line(i)));
+      assertEquals("my.metric gauge," + i + "\n", drain(queue));
+    }
+    assertEquals(0, queue.droppedCount());
+  }
+
+  @Test
+  void testDropNewest() throws MetricException, IOException {
+    MetricLineQueue queue = MetricLineQueue.create(2, MetricLineQueue.OverflowPolicy.dropNewest());
+    assertTrue(queue.offer(line(1)));
+    assertTrue(queue.offer(line(2)));
+    assertFalse(queue.offer(line(3)));
+    assertFalse(queue.offer("my.metric gauge,4"));
+    assertEquals(2, queue.droppedCount());
+    assertEquals("my.metric gauge,1\nmy.metric gauge,2\n", drain(queue));
+  }
+
+  @Test
+  void testDropOldest() throws MetricException, IOException {
+    MetricLineQueue queue = MetricLineQueue.create(2, MetricLineQueue.OverflowPolicy.dropOldest());
+    for (int i = 1; i <= 5; i++) {
+      assertTrue(queue.offer(line(i)));
+    }
+    assertEquals(3, queue.droppedCount());
+    assertEquals(2, queue.size());
+    assertEquals("my.metric gauge,4\nmy.metric gauge,5\n", drain(queue));
+  }
+
+  @Test
+  void testBlockTimesOut() throws MetricException, IOException {
+    MetricLineQueue queue =
+        MetricLineQueue.create(2, MetricLineQueue.OverflowPolicy.block(Duration.ofMillis(10)));
+    assertTrue(queue.offer(line(1)));
+    assertTrue(queue.offer(line(2)));
+    assertFalse(queue.offer(line(3)));
+    assertEquals(1, queue.droppedCount());
+    assertEquals("my.metric gauge,1\nmy.metric gauge,2\n", drain(queue));
+  }
+
+  @Test
+  void testBlockWaitsForConsumer() throws Exception {
+    MetricLineQueue queue =
+        MetricLineQueue.create(2, MetricLineQueue.OverflowPolicy.block(Duration.ofSeconds(30)));
+    assertTrue(queue.offer(line(1)));
+    assertTrue(queue.offer(line(2)));
+
+    StringBuilder drained = new StringBuilder();
+    Thread consumer =
+        new Thread(
+            () -> {
+              try {
+                Thread.sleep(20);
+                drained.append(drain(queue));
+              } catch (Exception e) {
+                throw new RuntimeException(e);
+              }
+            });
+    consumer.start();
+    assertTrue(queue.offer(line(3)));
+    consumer.join();
+
+    assertEquals("my.metric gauge,1\nmy.metric gauge,2\n", drained.toString());
+    assertEquals("my.metric gauge,3\n", drain(queue));
+    assertEquals(0, queue.droppedCount());
+  }
+
+  @Test
+  void testGrowsSlots() throws MetricException, IOException {
+    StringBuilder value = new StringBuilder();
+    for (int i = 0; i < 80; i++) {
+      value.append("\u00e4bc");
+    }
+    MetricLineQueue queue = MetricLineQueue.create(2, MetricLineQueue.OverflowPolicy.dropNewest());
+    queue.offer(
+        builder.reset().metricKey("my.metric").dimension("dim", value.toString()).count().delta(1));
+    queue.offer("my.metric,dim=" + value + " gauge,2");
+    queue.offer(line(3));
+    assertEquals(
+        "my.metric,dim=" + value + " count,delta=1\nmy.metric,dim=" + value + " gauge,2\n",
+        drain(queue));
+    queue.offer(line(4));
+    assertEquals("my.metric gauge,4\n", drain(queue));
+  }
+
+  @Test
+  void testSerializationErrorKeepsQueueUsable() throws MetricException, IOException {
+    MetricLineQueue queue = MetricLineQueue.create(2, MetricLineQueue.OverflowPolicy.dropNewest());
+    MetricLineBuilder.BuildStep invalid =
+        new MetricLineBuilder.BuildStep() {
+          @Override
+          public String build() throws MetricException {
+            throw new MetricException("invalid");
+          }
+
+          @Override
+          public void build(Appendable target) throws MetricException {
+            throw new MetricException("invalid");
+          }
+
+          @Override
+          public int writeTo(CharBuffer target) throws MetricException {
+            throw new MetricException("invalid");
+          }
+
+          @Override
+          public int writeUtf8(ByteBuffer target) throws MetricException {
+            throw new MetricException("invalid");
+          }
+
+          @Override
+          public byte[] buildUtf8() throws MetricException {
+            throw new MetricException("invalid");
+          }
+        };
+    assertThrows(MetricException.class, () -> queue.offer(invalid));
+    queue.offer(line(1));
+    assertEquals("my.metric gauge,1\n", drain(queue));
+    assertEquals(0, queue.droppedCount());
+  }
+
+  @Test
+  void testConcurrentProducers() throws Exception {
+    final int producers = 4;
+    final int linesPerProducer = 5_000;
+    MetricLineQueue queue =
+        MetricLineQueue.create(64, MetricLineQueue.OverflowPolicy.block(Duration.ofSeconds(30)));
+
+    CountDownLatch start = new CountDownLatch(1);
+    Thread[] threads = new Thread[producers];
+    for (int p = 0; p < producers; p++) {
+      final int producer = p;
+      threads[p] =
+          new Thread(
+              () -> {
+                MetricLineBuilder.ReusableMetricKeyStep threadBuilder =
+                    MetricLineBuilder.createReusable();
+                try {
+                  start.await();
+                  for (int i = 0; i < linesPerProducer; i++) {
+                    queue.offer(
+                        threadBuilder
+                            .reset()
+                            .metricKey("my.metric")
+                            .gauge()
+                            .value(producer * linesPerProducer + i));
+                  }
+                } catch (Exception e) {
+                  throw new RuntimeException(e);
+                }
+              });
+      threads[p].start();
+    }
+    start.countDown();
+
+    Set<String> lines = new HashSet<>();
+    MetricLinePayloadBatcher batcher = MetricLinePayloadBatcher.create();
+    while (lines.size() < producers * linesPerProducer) {
+      queue.drainTo(batcher, Integer.MAX_VALUE);
+      batcher.flush();
+      for (MetricLinePayloadBatcher.Payload payload = batcher.poll();
+          payload != null;
+          payload = batcher.poll()) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        payload.writeTo(out);
+        payload.release();
+        for (String line : new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n")) {
+          assertTrue(lines.add(line), line);
+        }
+      }
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(0, queue.droppedCount());
+    assertTrue(lines.contains("my.metric gauge,0"));
+    assertTrue(lines.contains("my.metric gauge,19999"));
+  }
+
+  @Test
+  void testConcurrentDropOldest() throws Exception {
+    final int producers = 4;
+    final int linesPerProducer = 5_000;
+    MetricLineQueue queue = MetricLineQueue.create(16, MetricLineQueue.OverflowPolicy.dropOldest());
+
+    Thread[] threads = new Thread[producers];
+    for (int p = 0; p < producers; p++) {
+      threads[p] =
+          new Thread(
+              () -> {
+                for (int i = 0; i < linesPerProducer; i++) {
+                  assertTrue(queue.offer("my.metric gauge,1"));
+                }
+              });
+      threads[p].start();
+    }
+
+    int drained = 0;
+    MetricLinePayloadBatcher batcher = MetricLinePayloadBatcher.create();
+    for (Thread thread : threads) {
+      while (thread.isAlive()) {
+        drained += queue.drainTo(batcher, Integer.MAX_VALUE);
+        batcher.flush();
+        for (MetricLinePayloadBatcher.Payload payload = batcher.poll();
+            payload != null;
+            payload = batcher.poll()) {
+          payload.release();
+        }
+      }
+      thread.join();
+    }
+    drained += queue.drainTo(batcher, Integer.MAX_VALUE);
+    assertEquals(producers * linesPerProducer, drained + queue.droppedCount());
+  }
+}
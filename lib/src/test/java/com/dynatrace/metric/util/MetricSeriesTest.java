@@ -0,0 +1,133 @@
+/**
+ * Copyright 2023 Dynatrace LLC
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dynatrace.metric.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class MetricSeriesTest {
+
+  @Test
+  void testSeriesLineEqualsBuilderLine() throws MetricException {
+    MetricLinePreConfiguration preConfig =
+        MetricLinePreConfiguration.builder()
+            .prefix("prefix")
+            .defaultDimensions(Collections.singletonMap("default", "ä"))
+            .build();
+    Map<String, String> dimensions = new HashMap<>();
+    dimensions.put("dim1", "val1");
+    dimensions.put("Dim 2", "val 2");
+
+    MetricSeries series = MetricSeries.create(preConfig, "my metric", dimensions);
+
+    assertEquals("prefix.my_metric", series.getMetricKey());
+    assertEquals(
+        MetricLineBuilder.create(preConfig)
+            .metricKey("my metric")
+            .dimensions(dimensions)
+            .gauge()
+            .value(1.5)
+            .timestamp(1656000000000L)
+            .build(),
+        MetricLineBuilder.create()
+            .series(series)
+            .gauge()
+            .value(1.5)
+            .timestamp(1656000000000L)
+            .build());
+    assertEquals(
+        MetricLineBuilder.create(preConfig)
+            .metricKey("my metric")
+            .dimensions(dimensions)
+            .count()
+            .delta(3)
+            .build(),
+        MetricLineBuilder.create().series(series).count().delta(3).build());
+  }
+
+  @Test
+  void testSeriesUsesItsOwnPreConfiguration() throws MetricException {
+    MetricSeries series = MetricSeries.create(MetricLinePreConfiguration.empty(), "name");
+    MetricLinePreConfiguration otherPreConfig =
+        MetricLinePreConfiguration.builder()
+            .prefix("prefix")
+            .defaultDimensions(Collections.singletonMap("default", "val"))
+            .build();
+
+    assertEquals(
+        "name gauge,1",
+        MetricLineBuilder.create(otherPreConfig).series(series).gauge().value(1).build());
+  }
+
+  @Test
+  void testReusableBuilderWithSeries() throws MetricException {
+    MetricSeries series1 =
+        MetricSeries.create(
+            MetricLinePreConfiguration.empty(), "name1", Collections.singletonMap("dim", "日"));
+    MetricSeries series2 = MetricSeries.create(MetricLinePreConfiguration.empty(), "name2");
+    MetricLineBuilder.ReusableMetricKeyStep builder = MetricLineBuilder.createReusable();
+
+    MetricLineBuilder.BuildStep buildStep = builder.series(series1).gauge().value(1);
+    assertEquals("name1,dim=日 gauge,1", buildStep.build());
+    assertArrayEquals(
+        "name1,dim=日 gauge,1".getBytes(StandardCharsets.UTF_8), buildStep.buildUtf8());
+
+    buildStep = builder.reset().series(series2).count().delta(2);
+    assertEquals("name2 count,delta=2", buildStep.build());
+    assertArrayEquals(
+        "name2 count,delta=2".getBytes(StandardCharsets.UTF_8), buildStep.buildUtf8());
+
+    // after a reset, the builder can be used without series again
+    assertEquals(
+        "name3,dim=val gauge,3",
+        builder.reset().metricKey("name3").dimension("dim", "val").gauge().value(3).build());
+  }
+
+  @Test
+  void testSeriesMetadata() throws MetricException {
+    MetricSeries series = MetricSeries.create(MetricLinePreConfiguration.empty(), "name");
+
+    assertEquals(
+        "#name gauge dt.meta.unit=unit",
+        MetricLineBuilder.create().series(series).gauge().metadata().unit("unit").build());
+  }
+
+  @Test
+  void testInvalidSeries() {
+    assertThrows(
+        MetricException.class,
+        () -> MetricSeries.create(MetricLinePreConfiguration.empty(), ""));
+    assertThrows(
+        MetricException.class,
+        () -> MetricSeries.create(MetricLinePreConfiguration.empty(), "."));
+    assertThrows(MetricException.class, () -> MetricLineBuilder.create().series(null));
+  }
+
+  @Test
+  void testSeriesExceedsDimensionLimit() {
+    Map<String, String> dimensions = new HashMap<>();
+    for (int i = 0; i <= MetricLineConstants.Limits.MAX_DIMENSIONS_COUNT; i++) {
+      dimensions.put("dim" + i, "val" + i);
+    }
+
+    assertThrows(
+        MetricException.class,
+        () -> MetricSeries.create(MetricLinePreConfiguration.empty(), "name", dimensions));
+  }
+}
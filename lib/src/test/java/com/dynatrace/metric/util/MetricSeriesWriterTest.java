@@ -0,0 +1,201 @@
+/**
+ * Copyright 2023 Dynatrace LLC
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dynatrace.metric.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class MetricSeriesWriterTest {
+  private static final long TIMESTAMP = 1656000000000L;
+
+  private static MetricSeries series() throws MetricException {
+    return MetricSeries.create(
+        MetricLinePreConfiguration.builder().prefix("prefix").build(),
+        "name",
+        Collections.singletonMap("dim", "val"));
+  }
+
+  @Test
+  void testWriteGauges() throws MetricException, IOException {
+    StringBuilder sb = new StringBuilder("existing\n");
+
+    double[] values = {1, 2.5, -3};
+    long[] timestamps = {TIMESTAMP, TIMESTAMP + 1, TIMESTAMP + 2};
+
+    int written = series().writeGauges(values, timestamps, sb);
+
+    assertEquals(3, written);
+    assertEquals(
+        "existing\n"
+            + "prefix.name,dim=val gauge,1 1656000000000\n"
+            + "prefix.name,dim=val gauge,2.5 1656000000001\n"
+            + "prefix.name,dim=val gauge,-3 1656000000002\n",
+        sb.toString());
+  }
+
+  @Test
+  void testWriteGaugesMatchesBuilder() throws MetricException, IOException {
+    MetricSeries series = series();
+    StringBuilder sb = new StringBuilder();
+
+    series.writeGauges(new double[] {0.1}, new long[] {TIMESTAMP}, sb);
+
+    assertEquals(
+        MetricLineBuilder.create().series(series).gauge().value(0.1).timestamp(TIMESTAMP).build()
+            + "\n",
+        sb.toString());
+  }
+
+  @Test
+  void testWriteCountsWithoutTimestamps() throws MetricException, IOException {
+    StringBuilder sb = new StringBuilder();
+
+    int written = series().writeCounts(new double[] {1, 0.5}, null, sb);
+
+    assertEquals(2, written);
+    assertEquals(
+        "prefix.name,dim=val count,delta=1\nprefix.name,dim=val count,delta=0.5\n",
+        sb.toString());
+  }
+
+  @Test
+  void testWriteSummaries() throws MetricException, IOException {
+    StringBuilder sb = new StringBuilder();
+
+    int written =
+        series()
+            .writeSummaries(
+                new double[] {1, 3},
+                new double[] {3, 1},
+                new double[] {6, 4},
+                new long[] {3, 2},
+                new long[] {TIMESTAMP, TIMESTAMP},
+                sb);
+
+    // the second summary is invalid (max < min) and skipped
+    assertEquals(1, written);
+    assertEquals(
+        "prefix.name,dim=val gauge,min=1,max=3,sum=6,count=3 1656000000000\n", sb.toString());
+  }
+
+  @Test
+  void testInvalidValuesAndTimestampsAreSkipped() throws MetricException, IOException {
+    StringBuilder sb = new StringBuilder();
+
+    int written =
+        series()
+            .writeGauges(
+                new double[] {Double.NaN, 1, Double.POSITIVE_INFINITY, 2},
+                new long[] {TIMESTAMP, TIMESTAMP, TIMESTAMP, 1000},
+                sb);
+
+    assertEquals(2, written);
+    assertEquals(
+        "prefix.name,dim=val gauge,1 1656000000000\nprefix.name,dim=val gauge,2\n",
+        sb.toString());
+  }
+
+  @Test
+  void testWriteToWriter() throws MetricException, IOException {
+    StringWriter writer = new StringWriter();
+
+    int written = series().writeCounts(new double[] {1, 2}, null, writer);
+
+    assertEquals(2, written);
+    assertEquals(
+        "prefix.name,dim=val count,delta=1\nprefix.name,dim=val count,delta=2\n",
+        writer.toString());
+  }
+
+  @Test
+  void testAppendsLineByLineToOtherTargets() throws MetricException, IOException {
+    List<String> appended = new ArrayList<>();
+    StringWriter writer =
+        new StringWriter() {
+          @Override
+          public void write(char[] chars, int offset, int length) {
+            appended.add(new String(chars, offset, length));
+          }
+        };
+
+    int written = series().writeGauges(new double[] {1, Double.NaN, 3}, null, writer);
+
+    assertEquals(2, written);
+    assertEquals(
+        Arrays.asList("prefix.name,dim=val gauge,1\n", "prefix.name,dim=val gauge,3\n"), appended);
+  }
+
+  @Test
+  void testOtherTargetsMatchStringBuilder() throws MetricException, IOException {
+    MetricSeries series = series();
+    double[] values = new double[100];
+    long[] timestamps = new long[values.length];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = i % 10 == 0 ? Double.NaN : i * 1.5;
+      timestamps[i] = TIMESTAMP + i;
+    }
+    StringBuilder expected = new StringBuilder();
+    series.writeGauges(values, timestamps, expected);
+
+    StringWriter writer = new StringWriter();
+    assertEquals(90, series.writeGauges(values, timestamps, writer));
+    assertEquals(expected.toString(), writer.toString());
+
+    CharBuffer buffer = CharBuffer.allocate(expected.length() + 10);
+    buffer.put("xx");
+    assertEquals(90, series.writeGauges(values, timestamps, buffer));
+    buffer.flip();
+    assertEquals("xx" + expected, buffer.toString());
+
+    // a slice of a larger array, which does not start at array offset 0
+    CharBuffer array = CharBuffer.allocate(expected.length() + 10);
+    array.position(5);
+    CharBuffer slice = array.slice();
+    assertEquals(90, series.writeGauges(values, timestamps, slice));
+    slice.flip();
+    assertEquals(expected.toString(), slice.toString());
+  }
+
+  @Test
+  void testEmptyArrays() throws MetricException, IOException {
+    StringBuilder sb = new StringBuilder();
+
+    assertEquals(0, series().writeGauges(new double[0], new long[0], sb));
+    assertEquals(0, sb.length());
+  }
+
+  @Test
+  void testArrayLengthMismatch() throws MetricException {
+    MetricSeries series = series();
+    StringBuilder sb = new StringBuilder();
+
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> series.writeGauges(new double[] {1, 2}, new long[] {TIMESTAMP}, sb));
+    assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            series.writeSummaries(
+                new double[] {1}, new double[] {1}, new double[] {1}, new long[0], null, sb));
+    assertEquals(0, sb.length());
+  }
+}
@@ -0,0 +1,61 @@
+/**
+ * Copyright 2023 Dynatrace LLC
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dynatrace.metric.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class NormalizationCacheStatisticsTest {
+
+  @Test
+  void testSnapshotOfCache() {
+    NormalizationCache cache = new NormalizationCache(1, Normalizer::normalizeDimensionKey);
+    cache.normalize("Key1");
+    cache.normalize("Key1");
+    cache.normalize("Key2");
+
+    NormalizationCacheStatistics statistics = cache.statistics();
+    assertEquals(1, statistics.getHitCount());
+    assertEquals(2, statistics.getMissCount());
+    assertEquals(1, statistics.getEvictionCount());
+    assertEquals(1, statistics.getSize());
+    assertEquals(
+        "NormalizationCacheStatistics{hitCount=1, missCount=2, evictionCount=1, size=1}",
+        statistics.toString());
+
+    // the snapshot does not change with the cache
+    cache.normalize("Key2");
+    assertEquals(1, statistics.getHitCount());
+    assertEquals(2, cache.statistics().getHitCount());
+  }
+
+  @Test
+  void testSharedCaches() throws MetricException {
+    long metricKeyMisses = NormalizationCacheStatistics.metricKeys().getMissCount();
+    long dimensionKeyMisses = NormalizationCacheStatistics.dimensionKeys().getMissCount();
+
+    MetricLineBuilder.create()
+        .metricKey("NormalizationCacheStatisticsTest Name")
+        .dimension("NormalizationCacheStatisticsTest Key", "val")
+        .gauge()
+        .value(1)
+        .build();
+
+    // other tests might use the shared caches concurrently, so only check the lower bounds
+    assertTrue(NormalizationCacheStatistics.metricKeys().getMissCount() >= metricKeyMisses + 1);
+    assertTrue(
+        NormalizationCacheStatistics.dimensionKeys().getMissCount() >= dimensionKeyMisses + 1);
+  }
+}
@@ -0,0 +1,98 @@
+/**
+ * Copyright 2023 Dynatrace LLC
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dynatrace.metric.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class NormalizationCacheTest {
+
+  @Test
+  void testNormalizesEachKeyOnce() {
+    AtomicInteger normalizations = new AtomicInteger();
+    NormalizationCache cache =
+        new NormalizationCache(
+            10,
+            key -> {
+              normalizations.incrementAndGet();
+              return Normalizer.normalizeDimensionKey(key);
+            });
+
+    assertEquals("dim_key", cache.normalize("Dim Key").getResult());
+    assertEquals("dim_key", cache.normalize("Dim Key").getResult());
+    assertEquals("other", cache.normalize("Other").getResult());
+
+    assertEquals(2, normalizations.get());
+    assertEquals(1, cache.hitCount());
+    assertEquals(2, cache.missCount());
+    assertEquals(2, cache.size());
+  }
+
+  @Test
+  void testCachesInvalidResults() {
+    NormalizationCache cache = new NormalizationCache(10, Normalizer::normalizeMetricKey);
+
+    assertEquals(NormalizationResult.MessageType.ERROR, cache.normalize(".").messageType());
+    assertEquals(NormalizationResult.MessageType.ERROR, cache.normalize(".").messageType());
+    assertEquals(1, cache.hitCount());
+  }
+
+  @Test
+  void testEvictsWhenFull() {
+    NormalizationCache cache = new NormalizationCache(3, Normalizer::normalizeDimensionKey);
+
+    for (int i = 0; i < 10; i++) {
+      assertEquals("key" + i, cache.normalize("Key" + i).getResult());
+    }
+
+    assertEquals(3, cache.size());
+    assertEquals(7, cache.evictionCount());
+    assertEquals(10, cache.missCount());
+  }
+
+  @Test
+  void testClear() {
+    NormalizationCache cache = new NormalizationCache(3, Normalizer::normalizeDimensionKey);
+    cache.normalize("Key");
+
+    cache.clear();
+
+    assertEquals(0, cache.size());
+    assertEquals(1, cache.missCount());
+  }
+
+  @Test
+  void testBuilderUsesSharedCache() throws MetricException {
+    long misses = NormalizationCache.DIMENSION_KEYS.missCount();
+    long hits = NormalizationCache.DIMENSION_KEYS.hitCount();
+    String key = "NormalizationCacheTest Key";
+
+    for (int i = 0; i < 3; i++) {
+      assertEquals(
+          "name,normalizationcachetest_key=val gauge,1",
+          MetricLineBuilder.create()
+              .metricKey("name")
+              .dimension(key, "val")
+              .gauge()
+              .value(1)
+              .build());
+    }
+
+    // other tests might use the shared cache concurrently, so only check the lower bounds
+    assertTrue(NormalizationCache.DIMENSION_KEYS.missCount() >= misses + 1);
+    assertTrue(NormalizationCache.DIMENSION_KEYS.hitCount() >= hits + 2);
+  }
+}
@@ -22,9 +22,9 @@ import org.junit.jupiter.api.Test;
 
 class NormalizationWarnThenDebugLoggerTest {
   private static final NormalizationResult RESULT_1 =
-      NormalizationResult.newWarning("result1", () -> "first warning message");
+      NormalizationResult.newWarning("result1", "first warning message", "input1");
   private static final NormalizationResult RESULT_2 =
-      NormalizationResult.newWarning("result2", () -> "second warning message");
+      NormalizationResult.newWarning("result2", "second warning message", "input2");
   private static final String METRIC_KEY_1 = "metric.key.first";
   private static final String METRIC_KEY_2 = "metric.key.second";
   private static final String DIMENSION_KEY_1 = "dimension.key.first";
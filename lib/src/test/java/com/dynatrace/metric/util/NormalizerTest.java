@@ -14,8 +14,11 @@
 package com.dynatrace.metric.util;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
 import com.dynatrace.testutils.TestUtils;
+import java.nio.CharBuffer;
 import java.time.Instant;
 import java.util.Collections;
 import java.util.stream.Stream;
@@ -71,6 +74,75 @@ public class NormalizerTest {
         expected, Normalizer.normalizeDimensionValue(input, MAX_TEST_STRING_LENGTH).getResult());
   }
 
+  @ParameterizedTest(name = "{index}: {0}, input: {1}, expected: {2}")
+  @MethodSource("provideMetricKeys")
+  void testMetricKeyCharSequence(String name, String input, String expected) {
+    assertEquals(expected, Normalizer.normalizeMetricKey(charRange(input)).getResult());
+  }
+
+  @ParameterizedTest(name = "{index}: {0}, input: {1}, expected: {2}")
+  @MethodSource("provideDimensionKeys")
+  void testDimensionKeyCharSequence(String name, String input, String expected) {
+    assertEquals(expected, Normalizer.normalizeDimensionKey(charRange(input)).getResult());
+  }
+
+  @ParameterizedTest(name = "{index}: {0}, input: {1}, expected: {2}")
+  @MethodSource("provideDimensionValues")
+  void testDimensionValueCharSequence(String name, String input, String expected) {
+    assertEquals(
+        expected,
+        Normalizer.normalizeDimensionValue(
+                charRange(input), MetricLineConstants.Limits.MAX_DIMENSION_VALUE_LENGTH)
+            .getResult());
+  }
+
+  @Test
+  void testCleanCharSequenceIsNotCopied() {
+    CharSequence value = new StringBuilder("clean_value");
+    assertSame(
+        value,
+        Normalizer.normalizeDimensionValue(value, MAX_TEST_STRING_LENGTH)
+            .getResultCharSequence());
+  }
+
+  @Test
+  void testReusableResultHolder() {
+    NormalizationResult holder = new NormalizationResult();
+    assertSame(holder, Normalizer.normalizeDimensionValue("a\u0000b", 10, holder));
+    assertEquals("a_b", holder.getResult());
+    assertEquals(NormalizationResult.MessageType.WARNING, holder.messageType());
+    assertEquals("Dimension value normalized from 'a\u0000b' to 'a_b'", holder.getMessage());
+
+    // the holder is overwritten by the next normalization
+    assertSame(holder, Normalizer.normalizeDimensionValue("valid", 10, holder));
+    assertEquals("valid", holder.getResult());
+    assertEquals(NormalizationResult.MessageType.NONE, holder.messageType());
+    assertNull(holder.getMessage());
+  }
+
+  @Test
+  void testMessagesAreFormattedFromInputs() {
+    assertEquals(
+        "Metric key normalized from 'a..b' to 'a.b'",
+        Normalizer.normalizeMetricKey("a..b").getMessage());
+    assertEquals(
+        "Dimension key normalized from '.' to ''",
+        Normalizer.normalizeDimensionKey(".").getMessage());
+    assertEquals(
+        "no valid characters after normalization (input: \u0000)",
+        Normalizer.normalizeMetadataString("\u0000", MAX_TEST_STRING_LENGTH).getMessage());
+    assertNull(Normalizer.normalizeMetricKey("").getMessage());
+  }
+
+  /** Wraps the input as a range in the middle of a larger {@code char[]}. */
+  private static CharSequence charRange(String input) {
+    if (input == null) {
+      return null;
+    }
+    char[] buffer = ("\"\\" + input + "\"\\").toCharArray();
+    return CharBuffer.wrap(buffer, 2, input.length());
+  }
+
   @ParameterizedTest(name = "{index}: {0}, input: {1}, expected: {2}")
   @MethodSource("provideMetadataValues")
   void testMetadataNormalization(String name, String input, String expected) {
@@ -13,9 +13,13 @@
  */
 package com.dynatrace.metric.util;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import com.dynatrace.metric.util.MetricLineConstants.ValidationMessages;
 import java.util.Arrays;
 import java.util.List;
 import org.junit.jupiter.api.Test;
@@ -31,6 +35,26 @@ public class NumberValueValidatorTest {
     assertFalse(NumberValueValidator.isValueValid(Double.POSITIVE_INFINITY).isValid());
   }
 
+  @Test
+  void testMessagesAreFormattedFromInputs() {
+    BooleanResultMessage infinite = NumberValueValidator.isValueValid(Double.POSITIVE_INFINITY);
+    // invalid results do not hold the inputs, so they can be shared
+    assertSame(infinite, NumberValueValidator.isValueValid(Double.NEGATIVE_INFINITY));
+    assertEquals(
+        String.format(ValidationMessages.VALUE_INFINITE_MESSAGE, Double.NEGATIVE_INFINITY),
+        NumberValueValidator.valueMessage(infinite, Double.NEGATIVE_INFINITY));
+    assertEquals(
+        ValidationMessages.VALUE_NAN_MESSAGE,
+        NumberValueValidator.valueMessage(NumberValueValidator.isValueValid(Double.NaN), 0));
+
+    BooleanResultMessage inconsistent = NumberValueValidator.isSummaryValid(2.5, 3, 6, 3);
+    assertEquals(
+        String.format(
+            ValidationMessages.GAUGE_INCONSISTENT_FIELDS_MESSAGE, 2.5, 3d, 6d, 3L, 2d, 1e-6),
+        NumberValueValidator.summaryMessage(inconsistent, 2.5, 3, 6, 3));
+    assertNull(NumberValueValidator.valueMessage(NumberValueValidator.isValueValid(1), 1));
+  }
+
   @Test
   void testInconsistentGaugeFields() {
     // min > avg
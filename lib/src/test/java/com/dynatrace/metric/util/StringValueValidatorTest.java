@@ -54,6 +54,51 @@ class StringValueValidatorTest {
         StringValueValidator.normalizationRequiredQuotedStringValue(value, MAX_TEST_STRING_LENGTH));
   }
 
+  @ParameterizedTest(name = "{index}: {0}, input: {1}, max length: {2}, expected: {3}")
+  @MethodSource("provideFirstNormalizationIndexStringValues")
+  void testFirstNormalizationIndexStringValue(
+      String name, String value, int maxLength, int expected) {
+    assertEquals(
+        expected,
+        StringValueValidator.firstNormalizationIndexUnquotedStringValue(value, maxLength));
+    assertEquals(
+        expected,
+        StringValueValidator.firstNormalizationIndexUnquotedStringValue(
+            value == null ? null : new StringBuilder(value), maxLength));
+  }
+
+  @ParameterizedTest(name = "{index}: {0}, input: {1}, max length: {2}, expected: {3}")
+  @MethodSource("provideFirstNormalizationIndexQuotedValues")
+  void testFirstNormalizationIndexQuotedStringValue(
+      String name, String value, int maxLength, int expected) {
+    assertEquals(
+        expected, StringValueValidator.firstNormalizationIndexQuotedStringValue(value, maxLength));
+    assertEquals(
+        expected,
+        StringValueValidator.firstNormalizationIndexQuotedStringValue(
+            value == null ? null : new StringBuilder(value), maxLength));
+  }
+
+  private static Stream<Arguments> provideFirstNormalizationIndexStringValues() {
+    return Stream.of(
+        Arguments.of("valid", "value", 10, -1),
+        Arguments.of("valid non-ASCII", "v\u00E4lue", 10, -1),
+        Arguments.of("escaped char", "my value", 10, 2),
+        Arguments.of("control char", "my\u0000value", 10, 2),
+        Arguments.of("invalid char after non-ASCII", "\u00E4\u0000", 10, 1),
+        Arguments.of("too long", "value", 3, 3),
+        Arguments.of("surrogate pair does not fit", "ab\uD83D\uDE00", 3, 2));
+  }
+
+  private static Stream<Arguments> provideFirstNormalizationIndexQuotedValues() {
+    return Stream.of(
+        Arguments.of("valid", "\"my value\"", 20, -1),
+        Arguments.of("escaped quote", "\"my\"value\"", 20, 3),
+        Arguments.of("control char", "\"my\u0000value\"", 20, 3),
+        Arguments.of("too long", "\"value\"", 5, 4),
+        Arguments.of("empty too long", "\"\"", 1, 1));
+  }
+
   @ParameterizedTest(name = "{index}: {0}, input: {1}, expected: {2}")
   @MethodSource("provideNeedToEscapeDimensionValue")
   public void testNeedToEscapeDimensionValue(String name, String input, boolean expected) {
@@ -0,0 +1,106 @@
+/**
+ * Copyright 2023 Dynatrace LLC
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dynatrace.metric.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+class Utf8Test {
+
+  @ParameterizedTest(name = "{index}: {0}, input: {1}")
+  @MethodSource("provideStrings")
+  void testEncodedLengthMatchesStringGetBytes(String name, String input) {
+    assertEquals(
+        input.getBytes(StandardCharsets.UTF_8).length,
+        Utf8.encodedLength(input, 0, input.length()));
+  }
+
+  @ParameterizedTest(name = "{index}: {0}, input: {1}")
+  @MethodSource("provideStrings")
+  void testEncodeToHeapBufferMatchesStringGetBytes(String name, String input) {
+    byte[] expected = input.getBytes(StandardCharsets.UTF_8);
+    // position the buffer, so that offsets are taken into account
+    ByteBuffer buffer = ByteBuffer.allocate(expected.length + 2);
+    buffer.put((byte) '>');
+    ByteBuffer slice = buffer.slice();
+
+    Utf8.encode(input, 0, input.length(), slice);
+
+    assertEquals(expected.length, slice.position());
+    assertArrayEquals(expected, Arrays.copyOfRange(buffer.array(), 1, expected.length + 1));
+  }
+
+  @ParameterizedTest(name = "{index}: {0}, input: {1}")
+  @MethodSource("provideStrings")
+  void testEncodeToDirectBufferMatchesStringGetBytes(String name, String input) {
+    byte[] expected = input.getBytes(StandardCharsets.UTF_8);
+    ByteBuffer buffer = ByteBuffer.allocateDirect(expected.length);
+
+    Utf8.encode(input, 0, input.length(), buffer);
+
+    assertEquals(expected.length, buffer.position());
+    byte[] actual = new byte[expected.length];
+    buffer.flip();
+    buffer.get(actual);
+    assertArrayEquals(expected, actual);
+  }
+
+  @Test
+  void testEncodeRange() {
+    String input = "prefix日本suffix";
+    ByteBuffer buffer = ByteBuffer.allocate(16);
+
+    Utf8.encode(input, 6, 8, buffer);
+
+    buffer.flip();
+    assertEquals("日本", StandardCharsets.UTF_8.decode(buffer).toString());
+    assertEquals(6, Utf8.encodedLength(input, 6, 8));
+  }
+
+  @Test
+  void testEncodeAscii() {
+    StringBuilder ascii = new StringBuilder("min=1,max=2.5");
+    ByteBuffer heap = ByteBuffer.allocate(ascii.length());
+    ByteBuffer direct = ByteBuffer.allocateDirect(ascii.length());
+
+    Utf8.encodeAscii(ascii, heap);
+    Utf8.encodeAscii(ascii, direct);
+
+    heap.flip();
+    direct.flip();
+    assertEquals("min=1,max=2.5", StandardCharsets.UTF_8.decode(heap).toString());
+    assertEquals("min=1,max=2.5", StandardCharsets.UTF_8.decode(direct).toString());
+  }
+
+  private static Stream<Arguments> provideStrings() {
+    return Stream.of(
+        Arguments.of("empty", ""),
+        Arguments.of("ascii", "my.metric,dim=value gauge,1.5"),
+        Arguments.of("two byte chars", "äöüß"),
+        Arguments.of("three byte chars", "日本語 Жук"),
+        Arguments.of("surrogate pair", "emoji 🤠!"),
+        Arguments.of("unpaired high surrogate", "a\uD83Eb"),
+        Arguments.of("unpaired low surrogate", "a\uDD20b"),
+        Arguments.of("trailing high surrogate", "a\uD83E"),
+        Arguments.of("reversed surrogates", "\uDD20\uD83E"));
+  }
+}
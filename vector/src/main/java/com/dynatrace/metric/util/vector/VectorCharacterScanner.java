@@ -0,0 +1,94 @@
+/**
+ * Copyright 2023 Dynatrace LLC
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dynatrace.metric.util.vector;
+
+import com.dynatrace.metric.util.spi.BulkCharacterScanner;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Scans strings for special characters with the incubating Vector API. Each vector holds as many
+ * chars as the CPU's preferred vector size allows (e.g. 16 with AVX2), which are all classified
+ * with a few lane-wise comparisons.
+ */
+final class VectorCharacterScanner implements BulkCharacterScanner {
+  private static final VectorSpecies<Short> SPECIES = ShortVector.SPECIES_PREFERRED;
+  private static final int CHUNK_LENGTH = 1024;
+  private static final char ASCII_LIMIT = 128;
+  private static final short NON_ASCII_BITS = (short) 0xFF80;
+  private static final short FIRST_PRINTABLE = 0x20;
+  // shared by the scanners of all character sets
+  private static final ThreadLocal<char[]> CHUNKS =
+      ThreadLocal.withInitial(() -> new char[CHUNK_LENGTH]);
+
+  private final boolean[] forbidden;
+  // whether all control characters below the first printable char are forbidden
+  private final boolean control;
+  // the other forbidden ASCII chars
+  private final short[] singleChars;
+
+  VectorCharacterScanner(boolean[] forbidden, boolean control, short[] singleChars) {
+    this.forbidden = forbidden;
+    this.control = control;
+    this.singleChars = singleChars;
+  }
+
+  @Override
+  public int indexOfNonCleanAscii(CharSequence value, int from, int to) {
+    final char[] chunk = CHUNKS.get();
+    final int vectorLength = SPECIES.length();
+
+    for (int chunkStart = from; chunkStart < to; chunkStart += CHUNK_LENGTH) {
+      final int chunkLength = Math.min(CHUNK_LENGTH, to - chunkStart);
+      copy(value, chunkStart, chunkStart + chunkLength, chunk);
+
+      int i = 0;
+      for (; i + vectorLength <= chunkLength; i += vectorLength) {
+        final ShortVector vector = ShortVector.fromCharArray(SPECIES, chunk, i);
+        VectorMask<Short> special =
+            vector.and(NON_ASCII_BITS).compare(VectorOperators.NE, (short) 0);
+        if (control) {
+          special = special.or(vector.compare(VectorOperators.LT, FIRST_PRINTABLE));
+        }
+        for (short c : singleChars) {
+          special = special.or(vector.eq(c));
+        }
+        if (special.anyTrue()) {
+          return chunkStart + i + special.firstTrue();
+        }
+      }
+
+      // the chars that do not fill a whole vector
+      for (; i < chunkLength; i++) {
+        final char c = chunk[i];
+        if (c >= ASCII_LIMIT || forbidden[c]) {
+          return chunkStart + i;
+        }
+      }
+    }
+    return to;
+  }
+
+  private static void copy(CharSequence value, int from, int to, char[] target) {
+    if (value instanceof String) {
+      ((String) value).getChars(from, to, target, 0);
+      return;
+    }
+    for (int i = from; i < to; i++) {
+      target[i - from] = value.charAt(i);
+    }
+  }
+}
@@ -0,0 +1,51 @@
+/**
+ * Copyright 2023 Dynatrace LLC
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dynatrace.metric.util.vector;
+
+import com.dynatrace.metric.util.spi.BulkCharacterScanner;
+import com.dynatrace.metric.util.spi.BulkCharacterScannerProvider;
+import java.util.Arrays;
+
+/**
+ * Creates {@link VectorCharacterScanner vector scanners}. This provider is loaded by the library
+ * when this artifact is on the class or module path and the JVM is started with {@code
+ * --add-modules jdk.incubator.vector}. Otherwise, the scalar scan is used.
+ */
+public final class VectorCharacterScannerProvider implements BulkCharacterScannerProvider {
+  private static final int ASCII_LIMIT = 128;
+  private static final int FIRST_PRINTABLE = 0x20;
+  // more single characters than this are not worth comparing lane-wise
+  private static final int MAX_SINGLE_CHARS = 8;
+
+  @Override
+  public BulkCharacterScanner create(boolean[] forbiddenAscii) {
+    boolean control = true;
+    for (int c = 0; c < FIRST_PRINTABLE; c++) {
+      control &= forbiddenAscii[c];
+    }
+
+    final short[] chars = new short[MAX_SINGLE_CHARS];
+    int count = 0;
+    for (int c = control ? FIRST_PRINTABLE : 0; c < ASCII_LIMIT; c++) {
+      if (forbiddenAscii[c]) {
+        if (count == MAX_SINGLE_CHARS) {
+          // too many forbidden chars, those are scanned by the scalar scan
+          return null;
+        }
+        chars[count++] = (short) c;
+      }
+    }
+    return new VectorCharacterScanner(forbiddenAscii.clone(), control, Arrays.copyOf(chars, count));
+  }
+}
@@ -0,0 +1,127 @@
+/**
+ * Copyright 2023 Dynatrace LLC
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dynatrace.metric.util.vector;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.dynatrace.metric.util.spi.BulkCharacterScanner;
+import com.dynatrace.metric.util.spi.BulkCharacterScannerProvider;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.ServiceLoader;
+import org.junit.jupiter.api.Test;
+
+class VectorCharacterScannerTest {
+  // the sets of forbidden chars used for dimension values: escaped chars and control chars
+  private static final boolean[][] FORBIDDEN_SETS = {
+    forbidden(",= \\\"", true), forbidden("\\\"", true), forbidden("", true), forbidden("", false)
+  };
+
+  private final VectorCharacterScannerProvider provider = new VectorCharacterScannerProvider();
+
+  private static boolean[] forbidden(String chars, boolean control) {
+    boolean[] forbidden = new boolean[128];
+    for (char c : chars.toCharArray()) {
+      forbidden[c] = true;
+    }
+    if (control) {
+      for (int c = 0; c < 0x20; c++) {
+        forbidden[c] = true;
+      }
+      forbidden[0x7F] = true;
+    }
+    return forbidden;
+  }
+
+  /** The scalar scan the vector scanner has to match. */
+  private static int scalarIndexOfNonCleanAscii(
+      CharSequence value, int from, int to, boolean[] forbidden) {
+    for (int i = from; i < to; i++) {
+      char c = value.charAt(i);
+      if (c >= 128 || forbidden[c]) {
+        return i;
+      }
+    }
+    return to;
+  }
+
+  private void assertMatchesScalarScan(String value, int from, int to) {
+    for (boolean[] forbidden : FORBIDDEN_SETS) {
+      BulkCharacterScanner scanner = provider.create(forbidden);
+      assertEquals(
+          scalarIndexOfNonCleanAscii(value, from, to, forbidden),
+          scanner.indexOfNonCleanAscii(value, from, to),
+          value);
+    }
+  }
+
+  @Test
+  void testIsLoadedAsProvider() {
+    Iterator<BulkCharacterScannerProvider> providers =
+        ServiceLoader.load(BulkCharacterScannerProvider.class).iterator();
+    assertTrue(providers.hasNext());
+    assertTrue(providers.next() instanceof VectorCharacterScannerProvider);
+  }
+
+  @Test
+  void testTooManyForbiddenChars() {
+    assertNull(provider.create(forbidden("abcdefghi", false)));
+    assertNotNull(provider.create(forbidden("abcdefg", true)));
+  }
+
+  @Test
+  void testCleanStrings() {
+    for (int length = 0; length < 3000; length += 7) {
+      StringBuilder sb = new StringBuilder();
+      for (int i = 0; i < length; i++) {
+        sb.append((char) ('a' + i % 26));
+      }
+      assertMatchesScalarScan(sb.toString(), 0, length);
+    }
+  }
+
+  @Test
+  void testSpecialCharAtEveryPosition() {
+    StringBuilder letters = new StringBuilder();
+    for (int i = 0; i < 200; i++) {
+      letters.append((char) ('a' + i % 26));
+    }
+    String clean = letters.toString();
+    for (int position = 0; position < clean.length(); position++) {
+      for (char special : new char[] {',', '"', '\n', '\u007F', '\u00E4', '\uD83D', '\uFFFF'}) {
+        StringBuilder sb = new StringBuilder(clean);
+        sb.setCharAt(position, special);
+        String value = sb.toString();
+        for (int from : new int[] {0, 3, position}) {
+          assertMatchesScalarScan(value, from, value.length());
+        }
+      }
+    }
+  }
+
+  @Test
+  void testMatchesScalarScanOnRandomStrings() {
+    Random random = new Random(42);
+    for (int n = 0; n < 20_000; n++) {
+      char[] chars = new char[random.nextInt(2500)];
+      for (int i = 0; i < chars.length; i++) {
+        chars[i] = random.nextInt(500) == 0 ? (char) random.nextInt(0x10000) : 'a';
+      }
+      String value = new String(chars);
+      int from = chars.length == 0 ? 0 : random.nextInt(chars.length);
+      int to = from + random.nextInt(chars.length - from + 1);
+      assertMatchesScalarScan(value, from, to);
+    }
+  }
+}